@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,14 +17,33 @@ package org.traccar;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.metrics.Histogram;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.Position;
 
+import jakarta.inject.Inject;
+
 public abstract class BaseDataHandler extends ChannelInboundHandlerAdapter {
 
+    private Histogram histogram;
+
+    @Inject
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        histogram = metricsRegistry.getHistogram(
+                MetricsRegistry.HANDLER_DURATION, "handler", getClass().getSimpleName());
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         if (msg instanceof Position) {
-            Position position = handlePosition((Position) msg);
+            Position position;
+            if (histogram != null) {
+                long startTime = System.nanoTime();
+                position = handlePosition((Position) msg);
+                histogram.recordSince(startTime);
+            } else {
+                position = handlePosition((Position) msg);
+            }
             if (position != null) {
                 ctx.fireChannelRead(position);
             }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -57,7 +57,11 @@ import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MediaEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.metrics.Histogram;
+import org.traccar.metrics.MetricsRegistry;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
@@ -67,6 +71,8 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
     private final Config config;
     private final String protocol;
     private final int timeout;
+    private final ProcessingExecutor processingExecutor;
+    private final MetricsRegistry metricsRegistry;
 
     public BasePipelineFactory(TrackerConnector connector, Config config, String protocol) {
         this.injector = Main.getInjector();
@@ -79,17 +85,49 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
         } else {
             this.timeout = timeout;
         }
+        this.processingExecutor = injector.getInstance(ProcessingExecutor.class);
+        this.metricsRegistry = injector.getInstance(MetricsRegistry.class);
     }
 
     protected abstract void addTransportHandlers(PipelineBuilder pipeline);
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
+    /**
+     * Data handlers record their own time. Other handlers, including ones created by providers without member
+     * injection, are wrapped to record time in the same histogram family.
+     */
+    private ChannelInboundHandler instrument(ChannelInboundHandler handler) {
+        if (handler instanceof BaseDataHandler) {
+            return handler;
+        }
+        Histogram histogram = metricsRegistry.getHistogram(
+                MetricsRegistry.HANDLER_DURATION, "handler", handler.getClass().getSimpleName());
+        return histogram != null ? new WrapperInboundHandler(handler, histogram) : handler;
+    }
+
     @SafeVarargs
-    private void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
-        for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
-            if (handlerClass != null) {
-                pipeline.addLast(injector.getInstance(handlerClass));
+    private void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelInboundHandler>... handlerClasses) {
+        if (processingExecutor != null) {
+            List<ChannelInboundHandler> handlers = new ArrayList<>();
+            for (Class<? extends ChannelInboundHandler> handlerClass : handlerClasses) {
+                if (handlerClass != null) {
+                    ChannelInboundHandler handler = injector.getInstance(handlerClass);
+                    if (handler != null) {
+                        handlers.add(instrument(handler));
+                    }
+                }
+            }
+            pipeline.addLast(new ProcessingHandler(processingExecutor, handlers));
+            pipeline.addLast(injector.getInstance(MainEventHandler.class));
+        } else {
+            for (Class<? extends ChannelInboundHandler> handlerClass : handlerClasses) {
+                if (handlerClass != null) {
+                    ChannelInboundHandler handler = injector.getInstance(handlerClass);
+                    if (handler != null) {
+                        pipeline.addLast(instrument(handler));
+                    }
+                }
             }
         }
     }
@@ -140,7 +178,8 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
                 injector.injectMembers(handler);
             } else {
                 if (handler instanceof ChannelInboundHandler) {
-                    handler = new WrapperInboundHandler((ChannelInboundHandler) handler);
+                    handler = new WrapperInboundHandler((ChannelInboundHandler) handler, metricsRegistry.getHistogram(
+                            MetricsRegistry.HANDLER_DURATION, "handler", handler.getClass().getSimpleName()));
                 } else {
                     handler = new WrapperOutboundHandler((ChannelOutboundHandler) handler);
                 }
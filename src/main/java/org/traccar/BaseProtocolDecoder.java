@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,12 +17,14 @@ package org.traccar;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import org.traccar.config.ConfigKey;
 import org.traccar.config.Keys;
 import org.traccar.database.CommandsManager;
 import org.traccar.database.MediaManager;
 import org.traccar.database.StatisticsManager;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.helper.model.AttributeUtil;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.Command;
 import org.traccar.model.Device;
 import org.traccar.model.Position;
@@ -38,14 +40,20 @@ import java.net.SocketAddress;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     private static final String PROTOCOL_UNKNOWN = "unknown";
 
+    private static final Map<String, TimeZone> TIME_ZONES = new ConcurrentHashMap<>();
+
     private final Protocol protocol;
+    private final ConfigKey<String> serverKey;
+    private final String speedKey;
 
     private CacheManager cacheManager;
     private ConnectionManager connectionManager;
@@ -55,6 +63,9 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
 
     public BaseProtocolDecoder(Protocol protocol) {
         this.protocol = protocol;
+        String protocolName = protocol != null ? protocol.getName() : PROTOCOL_UNKNOWN;
+        serverKey = Keys.PROTOCOL_SERVER.withPrefix(protocolName);
+        speedKey = protocolName + ".speed";
     }
 
     public CacheManager getCacheManager() {
@@ -90,6 +101,11 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         return commandsManager;
     }
 
+    @Inject
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        setHistogram(metricsRegistry.getHistogram(MetricsRegistry.DECODER_DURATION, "protocol", getProtocolName()));
+    }
+
     public String writeMediaFile(String uniqueId, ByteBuf buf, String extension) {
         return mediaManager.writeFile(uniqueId, buf, extension);
     }
@@ -99,7 +115,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     }
 
     public String getServer(Channel channel, char delimiter) {
-        String server = getConfig().getString(Keys.PROTOCOL_SERVER.withPrefix(getProtocolName()));
+        String server = getConfig().getString(serverKey);
         if (server == null && channel != null) {
             InetSocketAddress address = (InetSocketAddress) channel.localAddress();
             server = address.getAddress().getHostAddress() + ":" + address.getPort();
@@ -108,7 +124,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     }
 
     protected double convertSpeed(double value, String defaultUnits) {
-        switch (getConfig().getString(getProtocolName() + ".speed", defaultUnits)) {
+        switch (getConfig().getString(speedKey, defaultUnits)) {
             case "kmh":
                 return UnitsConverter.knotsFromKph(value);
             case "mps":
@@ -125,12 +141,15 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         return getTimeZone(deviceId, "UTC");
     }
 
+    /**
+     * Returned time zone instances are shared and must not be modified.
+     */
     protected TimeZone getTimeZone(long deviceId, String defaultTimeZone) {
         String timeZoneName = AttributeUtil.lookup(cacheManager, Keys.DECODER_TIMEZONE, deviceId);
         if (timeZoneName != null) {
-            return TimeZone.getTimeZone(timeZoneName);
+            return TIME_ZONES.computeIfAbsent(timeZoneName, TimeZone::getTimeZone);
         } else if (defaultTimeZone != null) {
-            return TimeZone.getTimeZone(defaultTimeZone);
+            return TIME_ZONES.computeIfAbsent(defaultTimeZone, TimeZone::getTimeZone);
         }
         return null;
     }
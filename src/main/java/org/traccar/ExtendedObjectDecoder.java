@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.handler.AcknowledgementHandler;
 import org.traccar.helper.DataConverter;
+import org.traccar.metrics.Histogram;
 import org.traccar.model.Position;
 
 import jakarta.inject.Inject;
@@ -38,6 +39,7 @@ import java.util.List;
 public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter {
 
     private Config config;
+    private Histogram histogram;
 
     public Config getConfig() {
         return config;
@@ -49,6 +51,13 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
         init();
     }
 
+    /**
+     * Set histogram for recording decoding time.
+     */
+    protected void setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+    }
+
     /**
      * Method called when config is initialized.
      */
@@ -74,7 +83,14 @@ public abstract class ExtendedObjectDecoder extends ChannelInboundHandlerAdapter
         Object originalMessage = networkMessage.getMessage();
         ctx.writeAndFlush(new AcknowledgementHandler.EventReceived());
         try {
-            Object decodedMessage = decode(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
+            Object decodedMessage;
+            if (histogram != null) {
+                long startTime = System.nanoTime();
+                decodedMessage = decode(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
+                histogram.recordSince(startTime);
+            } else {
+                decodedMessage = decode(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
+            }
             onMessageEvent(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage, decodedMessage);
             if (decodedMessage == null) {
                 decodedMessage = handleEmptyMessage(ctx.channel(), networkMessage.getRemoteAddress(), originalMessage);
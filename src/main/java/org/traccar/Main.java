@@ -19,7 +19,14 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.api.AsyncSocketDispatcher;
 import org.traccar.broadcast.BroadcastService;
+import org.traccar.database.DeviceStateWriter;
+import org.traccar.database.PositionBatchWriter;
+import org.traccar.forward.EventForwarderSpool;
+import org.traccar.forward.PositionForwarderSpool;
+import org.traccar.geocoder.GeocoderCache;
+import org.traccar.notification.NotificationDispatcher;
 import org.traccar.schedule.ScheduleManager;
 import org.traccar.storage.DatabaseModule;
 import org.traccar.web.WebModule;
@@ -32,6 +39,7 @@ import java.lang.management.OperatingSystemMXBean;
 import java.lang.management.RuntimeMXBean;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
@@ -122,7 +130,10 @@ public final class Main {
 
             var services = new ArrayList<LifecycleObject>();
             for (var clazz : List.of(
-                    ScheduleManager.class, ServerManager.class, WebServer.class, BroadcastService.class)) {
+                    ScheduleManager.class, DeviceStateWriter.class, PositionBatchWriter.class,
+                    PositionForwarderSpool.class, EventForwarderSpool.class, ProcessingExecutor.class,
+                    GeocoderCache.class, NotificationDispatcher.class, AsyncSocketDispatcher.class, ServerManager.class,
+                    WebServer.class, BroadcastService.class)) {
                 var service = injector.getInstance(clazz);
                 if (service != null) {
                     service.start();
@@ -135,6 +146,7 @@ public final class Main {
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 LOGGER.info("Stopping server...");
 
+                Collections.reverse(services);
                 for (var service : services) {
                     try {
                         service.stop();
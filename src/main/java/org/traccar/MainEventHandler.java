@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
+import org.traccar.database.DeviceStateWriter;
 import org.traccar.database.StatisticsManager;
 import org.traccar.handler.AcknowledgementHandler;
 import org.traccar.helper.DateUtil;
@@ -41,6 +42,7 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.util.Arrays;
@@ -61,15 +63,17 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
     private final Storage storage;
     private final ConnectionManager connectionManager;
     private final StatisticsManager statisticsManager;
+    private final DeviceStateWriter deviceStateWriter;
 
     @Inject
     public MainEventHandler(
             Config config, CacheManager cacheManager, Storage storage, ConnectionManager connectionManager,
-            StatisticsManager statisticsManager) {
+            StatisticsManager statisticsManager, @Nullable DeviceStateWriter deviceStateWriter) {
         this.cacheManager = cacheManager;
         this.storage = storage;
         this.connectionManager = connectionManager;
         this.statisticsManager = statisticsManager;
+        this.deviceStateWriter = deviceStateWriter;
         String connectionlessProtocolList = config.getString(Keys.STATUS_IGNORE_OFFLINE);
         if (connectionlessProtocolList != null) {
             connectionlessProtocols.addAll(Arrays.asList(connectionlessProtocolList.split("[, ]")));
@@ -89,9 +93,13 @@ public class MainEventHandler extends ChannelInboundHandlerAdapter {
                     Device updatedDevice = new Device();
                     updatedDevice.setId(position.getDeviceId());
                     updatedDevice.setPositionId(position.getId());
-                    storage.updateObject(updatedDevice, new Request(
-                            new Columns.Include("positionId"),
-                            new Condition.Equals("id", updatedDevice.getId())));
+                    if (deviceStateWriter != null) {
+                        deviceStateWriter.update(updatedDevice, false, "positionId");
+                    } else {
+                        storage.updateObject(updatedDevice, new Request(
+                                new Columns.Include("positionId"),
+                                new Condition.Equals("id", updatedDevice.getId())));
+                    }
 
                     cacheManager.updatePosition(position);
                     connectionManager.updatePosition(true, position);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2018 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,28 +32,34 @@ import org.traccar.broadcast.RedisBroadcastService;
 import org.traccar.broadcast.NullBroadcastService;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
+import org.traccar.database.DeviceStateWriter;
 import org.traccar.database.LdapProvider;
 import org.traccar.database.OpenIdProvider;
+import org.traccar.database.PositionBatchWriter;
 import org.traccar.database.StatisticsManager;
 import org.traccar.forward.EventForwarder;
 import org.traccar.forward.EventForwarderJson;
 import org.traccar.forward.EventForwarderAmqp;
 import org.traccar.forward.EventForwarderKafka;
 import org.traccar.forward.EventForwarderMqtt;
+import org.traccar.forward.EventForwarderSpool;
 import org.traccar.forward.PositionForwarder;
 import org.traccar.forward.PositionForwarderJson;
 import org.traccar.forward.PositionForwarderAmqp;
 import org.traccar.forward.PositionForwarderKafka;
 import org.traccar.forward.PositionForwarderRedis;
+import org.traccar.forward.PositionForwarderSpool;
 import org.traccar.forward.PositionForwarderUrl;
 import org.traccar.geocoder.AddressFormat;
 import org.traccar.geocoder.BanGeocoder;
 import org.traccar.geocoder.BingMapsGeocoder;
+import org.traccar.geocoder.CachingGeocoder;
 import org.traccar.geocoder.FactualGeocoder;
 import org.traccar.geocoder.GeoapifyGeocoder;
 import org.traccar.geocoder.GeocodeFarmGeocoder;
 import org.traccar.geocoder.GeocodeXyzGeocoder;
 import org.traccar.geocoder.Geocoder;
+import org.traccar.geocoder.GeocoderCache;
 import org.traccar.geocoder.GisgraphyGeocoder;
 import org.traccar.geocoder.GoogleGeocoder;
 import org.traccar.geocoder.HereGeocoder;
@@ -66,6 +72,7 @@ import org.traccar.geocoder.NominatimGeocoder;
 import org.traccar.geocoder.OpenCageGeocoder;
 import org.traccar.geocoder.PositionStackGeocoder;
 import org.traccar.geocoder.TestGeocoder;
+import org.traccar.geocoder.ThrottledGeocoder;
 import org.traccar.geocoder.TomTomGeocoder;
 import org.traccar.geolocation.GeolocationProvider;
 import org.traccar.geolocation.GoogleGeolocationProvider;
@@ -81,6 +88,7 @@ import org.traccar.helper.WebHelper;
 import org.traccar.mail.LogMailManager;
 import org.traccar.mail.MailManager;
 import org.traccar.mail.SmtpMailManager;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.session.cache.CacheManager;
 import org.traccar.sms.HttpSmsClient;
 import org.traccar.sms.SmsManager;
@@ -100,7 +108,10 @@ import jakarta.ws.rs.client.ClientBuilder;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 public class MainModule extends AbstractModule {
 
@@ -127,6 +138,33 @@ public class MainModule extends AbstractModule {
         }
     }
 
+    @Singleton
+    @Provides
+    public static PositionBatchWriter providePositionBatchWriter(Config config, Storage storage) {
+        if (config.getBoolean(Keys.DATABASE_BATCH_ENABLE)) {
+            return new PositionBatchWriter(config, storage);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DeviceStateWriter provideDeviceStateWriter(Config config, Storage storage) {
+        if (config.getLong(Keys.DATABASE_DEVICE_UPDATE_DELAY) > 0) {
+            return new DeviceStateWriter(config, storage);
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static ProcessingExecutor provideProcessingExecutor(Config config) {
+        if (config.getBoolean(Keys.PROCESSING_EXECUTOR_ENABLE)) {
+            return new ProcessingExecutor(config);
+        }
+        return null;
+    }
+
     @Singleton
     @Provides
     public static ObjectMapper provideObjectMapper(Config config) {
@@ -196,77 +234,87 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static Geocoder provideGeocoder(Config config, Client client, StatisticsManager statisticsManager) {
+    public static GeocoderCache provideGeocoderCache(Config config) {
+        if (config.getBoolean(Keys.GEOCODER_ENABLE) && config.getInteger(Keys.GEOCODER_CACHE_SIZE) > 0) {
+            return new GeocoderCache(config);
+        }
+        return null;
+    }
+
+    private static Geocoder createGeocoder(
+            Client client, String type, String url, String key, String language, AddressFormat addressFormat) {
+        int cacheSize = 0; // caching is done by CachingGeocoder
+        switch (type) {
+            case "test":
+                return new TestGeocoder();
+            case "nominatim":
+                return new NominatimGeocoder(client, url, key, language, cacheSize, addressFormat);
+            case "locationiq":
+                return new LocationIqGeocoder(client, url, key, language, cacheSize, addressFormat);
+            case "gisgraphy":
+                return new GisgraphyGeocoder(client, url, cacheSize, addressFormat);
+            case "mapquest":
+                return new MapQuestGeocoder(client, url, key, cacheSize, addressFormat);
+            case "opencage":
+                return new OpenCageGeocoder(client, url, key, language, cacheSize, addressFormat);
+            case "bingmaps":
+                return new BingMapsGeocoder(client, url, key, cacheSize, addressFormat);
+            case "factual":
+                return new FactualGeocoder(client, url, key, cacheSize, addressFormat);
+            case "geocodefarm":
+                return new GeocodeFarmGeocoder(client, key, language, cacheSize, addressFormat);
+            case "geocodexyz":
+                return new GeocodeXyzGeocoder(client, key, cacheSize, addressFormat);
+            case "ban":
+                return new BanGeocoder(client, cacheSize, addressFormat);
+            case "here":
+                return new HereGeocoder(client, url, key, language, cacheSize, addressFormat);
+            case "mapmyindia":
+                return new MapmyIndiaGeocoder(client, url, key, cacheSize, addressFormat);
+            case "tomtom":
+                return new TomTomGeocoder(client, url, key, cacheSize, addressFormat);
+            case "positionstack":
+                return new PositionStackGeocoder(client, key, cacheSize, addressFormat);
+            case "mapbox":
+                return new MapboxGeocoder(client, key, cacheSize, addressFormat);
+            case "maptiler":
+                return new MapTilerGeocoder(client, key, cacheSize, addressFormat);
+            case "geoapify":
+                return new GeoapifyGeocoder(client, key, language, cacheSize, addressFormat);
+            default:
+                return new GoogleGeocoder(client, key, language, cacheSize, addressFormat);
+        }
+    }
+
+    @Singleton
+    @Provides
+    public static Geocoder provideGeocoder(
+            Config config, Client client, StatisticsManager statisticsManager, @Nullable GeocoderCache geocoderCache) {
         if (config.getBoolean(Keys.GEOCODER_ENABLE)) {
-            String type = config.getString(Keys.GEOCODER_TYPE, "google");
-            String url = config.getString(Keys.GEOCODER_URL);
-            String key = config.getString(Keys.GEOCODER_KEY);
             String language = config.getString(Keys.GEOCODER_LANGUAGE);
             String formatString = config.getString(Keys.GEOCODER_FORMAT);
             AddressFormat addressFormat = formatString != null ? new AddressFormat(formatString) : new AddressFormat();
 
-            int cacheSize = config.getInteger(Keys.GEOCODER_CACHE_SIZE);
-            Geocoder geocoder;
-            switch (type) {
-                case "test":
-                    geocoder = new TestGeocoder();
-                    break;
-                case "nominatim":
-                    geocoder = new NominatimGeocoder(client, url, key, language, cacheSize, addressFormat);
-                    break;
-                case "locationiq":
-                    geocoder = new LocationIqGeocoder(client, url, key, language, cacheSize, addressFormat);
-                    break;
-                case "gisgraphy":
-                    geocoder = new GisgraphyGeocoder(client, url, cacheSize, addressFormat);
-                    break;
-                case "mapquest":
-                    geocoder = new MapQuestGeocoder(client, url, key, cacheSize, addressFormat);
-                    break;
-                case "opencage":
-                    geocoder = new OpenCageGeocoder(client, url, key, language, cacheSize, addressFormat);
-                    break;
-                case "bingmaps":
-                    geocoder = new BingMapsGeocoder(client, url, key, cacheSize, addressFormat);
-                    break;
-                case "factual":
-                    geocoder = new FactualGeocoder(client, url, key, cacheSize, addressFormat);
-                    break;
-                case "geocodefarm":
-                    geocoder = new GeocodeFarmGeocoder(client, key, language, cacheSize, addressFormat);
-                    break;
-                case "geocodexyz":
-                    geocoder = new GeocodeXyzGeocoder(client, key, cacheSize, addressFormat);
-                    break;
-                case "ban":
-                    geocoder = new BanGeocoder(client, cacheSize, addressFormat);
-                    break;
-                case "here":
-                    geocoder = new HereGeocoder(client, url, key, language, cacheSize, addressFormat);
-                    break;
-                case "mapmyindia":
-                    geocoder = new MapmyIndiaGeocoder(client, url, key, cacheSize, addressFormat);
-                    break;
-                case "tomtom":
-                    geocoder = new TomTomGeocoder(client, url, key, cacheSize, addressFormat);
-                    break;
-                case "positionstack":
-                    geocoder = new PositionStackGeocoder(client, key, cacheSize, addressFormat);
-                    break;
-                case "mapbox":
-                    geocoder = new MapboxGeocoder(client, key, cacheSize, addressFormat);
-                    break;
-                case "maptiler":
-                    geocoder = new MapTilerGeocoder(client, key, cacheSize, addressFormat);
-                    break;
-                case "geoapify":
-                    geocoder = new GeoapifyGeocoder(client, key, language, cacheSize, addressFormat);
-                    break;
-                default:
-                    geocoder = new GoogleGeocoder(client, key, language, cacheSize, addressFormat);
-                    break;
+            Map<String, Geocoder> providers = new LinkedHashMap<>();
+            providers.put("geocoder", createGeocoder(
+                    client, config.getString(Keys.GEOCODER_TYPE, "google"), config.getString(Keys.GEOCODER_URL),
+                    config.getString(Keys.GEOCODER_KEY), language, addressFormat));
+            String fallback = config.getString(Keys.GEOCODER_FALLBACK);
+            if (fallback != null) {
+                for (String type : fallback.split(",")) {
+                    String prefix = "geocoder." + type.trim();
+                    providers.put(prefix, createGeocoder(
+                            client, type.trim(), config.getString(Keys.GEOCODER_PROVIDER_URL.withPrefix(prefix)),
+                            config.getString(Keys.GEOCODER_PROVIDER_KEY.withPrefix(prefix)), language, addressFormat));
+                }
             }
+
+            Geocoder geocoder = new ThrottledGeocoder(config, providers);
             geocoder.setStatisticsManager(statisticsManager);
+            if (geocoderCache != null) {
+                return new CachingGeocoder(
+                        geocoder, geocoderCache, TimeUnit.SECONDS.toMillis(config.getInteger(Keys.GEOCODER_TIMEOUT)));
+            }
             return geocoder;
         }
         return null;
@@ -312,9 +360,10 @@ public class MainModule extends AbstractModule {
     @Provides
     public static GeolocationHandler provideGeolocationHandler(
             Config config, @Nullable GeolocationProvider geolocationProvider, CacheManager cacheManager,
-            StatisticsManager statisticsManager) {
+            StatisticsManager statisticsManager, MetricsRegistry metricsRegistry) {
         if (geolocationProvider != null) {
-            return new GeolocationHandler(config, geolocationProvider, cacheManager, statisticsManager);
+            return new GeolocationHandler(
+                    config, geolocationProvider, cacheManager, statisticsManager, metricsRegistry);
         }
         return null;
     }
@@ -322,9 +371,9 @@ public class MainModule extends AbstractModule {
     @Singleton
     @Provides
     public static GeocoderHandler provideGeocoderHandler(
-            Config config, @Nullable Geocoder geocoder, CacheManager cacheManager) {
+            Config config, @Nullable Geocoder geocoder, CacheManager cacheManager, MetricsRegistry metricsRegistry) {
         if (geocoder != null) {
-            return new GeocoderHandler(config, geocoder, cacheManager);
+            return new GeocoderHandler(config, geocoder, cacheManager, metricsRegistry);
         }
         return null;
     }
@@ -355,43 +404,80 @@ public class MainModule extends AbstractModule {
         return new NullBroadcastService();
     }
 
+    private static EventForwarder createEventForwarder(Config config, Client client, ObjectMapper objectMapper) {
+        switch (config.getString(Keys.EVENT_FORWARD_TYPE)) {
+            case "amqp":
+                return new EventForwarderAmqp(config, objectMapper);
+            case "kafka":
+                return new EventForwarderKafka(config, objectMapper);
+            case "mqtt":
+                return new EventForwarderMqtt(config, objectMapper);
+            case "json":
+            default:
+                return new EventForwarderJson(config, client);
+        }
+    }
+
     @Singleton
     @Provides
-    public static EventForwarder provideEventForwarder(Config config, Client client, ObjectMapper objectMapper) {
+    public static EventForwarderSpool provideEventForwarderSpool(
+            Config config, Client client, ObjectMapper objectMapper) throws IOException {
+        if (config.hasKey(Keys.EVENT_FORWARD_URL) && config.hasKey(Keys.FORWARD_SPOOL_PATH)) {
+            return new EventForwarderSpool(config, objectMapper, createEventForwarder(config, client, objectMapper));
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static EventForwarder provideEventForwarder(
+            Config config, Client client, ObjectMapper objectMapper, @Nullable EventForwarderSpool spool) {
+        if (spool != null) {
+            return spool;
+        }
         if (config.hasKey(Keys.EVENT_FORWARD_URL)) {
-            String forwardType = config.getString(Keys.EVENT_FORWARD_TYPE);
-            switch (forwardType) {
-                case "amqp":
-                    return new EventForwarderAmqp(config, objectMapper);
-                case "kafka":
-                    return new EventForwarderKafka(config, objectMapper);
-                case "mqtt":
-                    return new EventForwarderMqtt(config, objectMapper);
-                case "json":
-                default:
-                    return new EventForwarderJson(config, client);
-            }
+            return createEventForwarder(config, client, objectMapper);
+        }
+        return null;
+    }
+
+    private static PositionForwarder createPositionForwarder(
+            Config config, Client client, ObjectMapper objectMapper) {
+        switch (config.getString(Keys.FORWARD_TYPE)) {
+            case "json":
+                return new PositionForwarderJson(config, client, objectMapper);
+            case "amqp":
+                return new PositionForwarderAmqp(config, objectMapper);
+            case "kafka":
+                return new PositionForwarderKafka(config, objectMapper);
+            case "redis":
+                return new PositionForwarderRedis(config, objectMapper);
+            case "url":
+            default:
+                return new PositionForwarderUrl(config, client, objectMapper);
+        }
+    }
+
+    @Singleton
+    @Provides
+    public static PositionForwarderSpool providePositionForwarderSpool(
+            Config config, Client client, ObjectMapper objectMapper) throws IOException {
+        if (config.hasKey(Keys.FORWARD_URL) && config.hasKey(Keys.FORWARD_SPOOL_PATH)) {
+            return new PositionForwarderSpool(
+                    config, objectMapper, createPositionForwarder(config, client, objectMapper));
         }
         return null;
     }
 
     @Singleton
     @Provides
-    public static PositionForwarder providePositionForwarder(Config config, Client client, ObjectMapper objectMapper) {
+    public static PositionForwarder providePositionForwarder(
+            Config config, Client client, ObjectMapper objectMapper, @Nullable PositionForwarderSpool spool) {
+        if (spool != null) {
+            return spool;
+        }
         if (config.hasKey(Keys.FORWARD_URL)) {
-            switch (config.getString(Keys.FORWARD_TYPE)) {
-                case "json":
-                    return new PositionForwarderJson(config, client, objectMapper);
-                case "amqp":
-                    return new PositionForwarderAmqp(config, objectMapper);
-                case "kafka":
-                    return new PositionForwarderKafka(config, objectMapper);
-                case "redis":
-                    return new PositionForwarderRedis(config, objectMapper);
-                case "url":
-                default:
-                    return new PositionForwarderUrl(config, client, objectMapper);
-            }
+            return createPositionForwarder(config, client, objectMapper);
         }
         return null;
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -26,6 +26,8 @@ import org.traccar.config.Keys;
 import org.traccar.forward.PositionData;
 import org.traccar.forward.PositionForwarder;
 import org.traccar.forward.ResultHandler;
+import org.traccar.metrics.Histogram;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.Device;
 import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
@@ -46,6 +48,7 @@ public class PositionForwardingHandler extends BaseDataHandler {
     private final Timer timer;
 
     private final PositionForwarder positionForwarder;
+    private final Histogram histogram;
 
     private final boolean retryEnabled;
     private final int retryDelay;
@@ -56,11 +59,13 @@ public class PositionForwardingHandler extends BaseDataHandler {
 
     @Inject
     public PositionForwardingHandler(
-            Config config, CacheManager cacheManager, Timer timer, @Nullable PositionForwarder positionForwarder) {
+            Config config, CacheManager cacheManager, Timer timer, @Nullable PositionForwarder positionForwarder,
+            MetricsRegistry metricsRegistry) {
 
         this.cacheManager = cacheManager;
         this.timer = timer;
         this.positionForwarder = positionForwarder;
+        this.histogram = metricsRegistry.getHistogram(MetricsRegistry.REQUEST_DURATION, "service", "forward");
 
         this.retryEnabled = config.getBoolean(Keys.FORWARD_RETRY_ENABLE);
         this.retryDelay = config.getInteger(Keys.FORWARD_RETRY_DELAY);
@@ -75,6 +80,7 @@ public class PositionForwardingHandler extends BaseDataHandler {
         private final PositionData positionData;
 
         private int retries = 0;
+        private long startTime;
 
         AsyncRequestAndCallback(PositionData positionData) {
             this.positionData = positionData;
@@ -82,6 +88,9 @@ public class PositionForwardingHandler extends BaseDataHandler {
         }
 
         private void send() {
+            if (histogram != null) {
+                startTime = System.nanoTime();
+            }
             positionForwarder.forward(positionData, this);
         }
 
@@ -104,6 +113,9 @@ public class PositionForwardingHandler extends BaseDataHandler {
 
         @Override
         public void onResult(boolean success, Throwable throwable) {
+            if (histogram != null) {
+                histogram.recordSince(startTime);
+            }
             if (success) {
                 deliveryPending.decrementAndGet();
             } else {
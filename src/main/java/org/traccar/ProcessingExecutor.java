@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.Channel;
+import io.netty.channel.socket.DatagramChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor sharded by device id. Each shard has a single thread, so tasks for the same device run in submission
+ * order, while different devices are processed in parallel. Shard queues are bounded and reading from connections
+ * is paused while their shard is close to full.
+ */
+public class ProcessingExecutor implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessingExecutor.class);
+
+    private final class Shard implements Runnable {
+
+        private final BlockingQueue<Runnable> queue;
+        private final Set<Channel> pausedChannels = ConcurrentHashMap.newKeySet();
+        private final Thread thread;
+
+        private Shard(int index, int capacity) {
+            queue = new LinkedBlockingQueue<>(capacity);
+            thread = new Thread(this, "processing-" + index);
+            thread.setDaemon(true);
+        }
+
+        private void pause(Channel channel) {
+            if (channel != null && !(channel instanceof DatagramChannel)
+                    && queue.size() >= pauseThreshold && pausedChannels.add(channel)) {
+                channel.config().setAutoRead(false);
+                resume(); // queue might have drained before the channel was added
+            }
+        }
+
+        private void resume() {
+            if (!pausedChannels.isEmpty() && queue.size() <= resumeThreshold) {
+                for (Channel channel : pausedChannels) {
+                    channel.config().setAutoRead(true);
+                    pausedChannels.remove(channel);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Runnable task = queue.poll(1, TimeUnit.SECONDS);
+                    if (task != null) {
+                        task.run();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Processing task error", e);
+                } finally {
+                    resume();
+                }
+            }
+            resume();
+        }
+
+    }
+
+    private final Shard[] shards;
+    private final int pauseThreshold;
+    private final int resumeThreshold;
+    private volatile boolean running;
+
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder taskTime = new LongAdder();
+    private final AtomicLong maxTaskTime = new AtomicLong();
+
+    public ProcessingExecutor(Config config) {
+        int threads = config.getInteger(Keys.PROCESSING_EXECUTOR_THREADS);
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors() * 2;
+        }
+        int queueSize = config.getInteger(Keys.PROCESSING_EXECUTOR_QUEUE_SIZE);
+        pauseThreshold = queueSize * 3 / 4;
+        resumeThreshold = queueSize / 4;
+        shards = new Shard[threads];
+        for (int i = 0; i < threads; i++) {
+            shards[i] = new Shard(i, queueSize);
+        }
+    }
+
+    private Shard getShard(long deviceId) {
+        return shards[(int) Math.floorMod(deviceId, (long) shards.length)];
+    }
+
+    public void execute(long deviceId, Runnable task) {
+        execute(null, deviceId, task);
+    }
+
+    /**
+     * Queue task for the device. When the shard is three quarters full, reading from the channel is paused. If it is
+     * full, the calling thread waits for room. When the executor is not running, the task is executed on the calling
+     * thread, so tasks submitted during shutdown are not lost.
+     */
+    public void execute(Channel channel, long deviceId, Runnable task) {
+        long submitTime = System.nanoTime();
+        Runnable wrapper = () -> {
+            try {
+                task.run();
+            } finally {
+                long duration = System.nanoTime() - submitTime;
+                taskCount.increment();
+                taskTime.add(duration);
+                maxTaskTime.accumulateAndGet(duration, Math::max);
+            }
+        };
+        if (!running) {
+            wrapper.run();
+            return;
+        }
+        Shard shard = getShard(deviceId);
+        try {
+            while (!shard.queue.offer(wrapper, 1, TimeUnit.SECONDS)) {
+                if (!running) {
+                    wrapper.run();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            wrapper.run();
+            return;
+        }
+        if (!running && shard.queue.remove(wrapper)) {
+            wrapper.run();
+            return;
+        }
+        shard.pause(channel);
+    }
+
+    /**
+     * Check if the current thread is the one processing tasks for the device.
+     */
+    public boolean inShard(long deviceId) {
+        return Thread.currentThread() == getShard(deviceId).thread;
+    }
+
+    public int[] getQueueSizes() {
+        int[] result = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            result[i] = shards[i].queue.size();
+        }
+        return result;
+    }
+
+    public long getTaskCount() {
+        return taskCount.sum();
+    }
+
+    /**
+     * Total time from submission to completion of all tasks in nanoseconds.
+     */
+    public long getTaskTime() {
+        return taskTime.sum();
+    }
+
+    /**
+     * Longest time from submission to completion of a task in nanoseconds since the last call.
+     */
+    public long resetMaxTaskTime() {
+        return maxTaskTime.getAndSet(0);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            shard.thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+}
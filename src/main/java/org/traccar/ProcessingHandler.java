@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import org.traccar.model.Position;
+
+import java.util.List;
+
+/**
+ * Hands decoded positions over to the processing executor, which runs the position handlers in order for each
+ * device without blocking the channel event loop.
+ */
+@ChannelHandler.Sharable
+public class ProcessingHandler extends ChannelInboundHandlerAdapter {
+
+    private final ProcessingExecutor executor;
+    private final List<ChannelInboundHandler> handlers;
+
+    public ProcessingHandler(ProcessingExecutor executor, List<ChannelInboundHandler> handlers) {
+        this.executor = executor;
+        this.handlers = handlers;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof Position) {
+            Position position = (Position) msg;
+            executor.execute(
+                    ctx.channel(), position.getDeviceId(),
+                    () -> ProcessingContext.invoke(handlers, 0, ctx, executor, position));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2018 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,10 +33,31 @@ public class WrapperContext implements ChannelHandlerContext {
 
     private ChannelHandlerContext context;
     private SocketAddress remoteAddress;
+    private boolean wrapMessages;
+    private boolean timed;
+    private long downstreamTime;
 
     public WrapperContext(ChannelHandlerContext context, SocketAddress remoteAddress) {
+        this(context, remoteAddress, true, false);
+    }
+
+    /**
+     * Create context that optionally passes messages unchanged and measures time spent in following handlers, so
+     * the caller can record its own processing time only.
+     */
+    public WrapperContext(
+            ChannelHandlerContext context, SocketAddress remoteAddress, boolean wrapMessages, boolean timed) {
         this.context = context;
         this.remoteAddress = remoteAddress;
+        this.wrapMessages = wrapMessages;
+        this.timed = timed;
+    }
+
+    /**
+     * Time in nanoseconds spent in following handlers called synchronously through this context.
+     */
+    public long getDownstreamTime() {
+        return downstreamTime;
     }
 
     @Override
@@ -96,9 +117,17 @@ public class WrapperContext implements ChannelHandlerContext {
 
     @Override
     public ChannelHandlerContext fireChannelRead(Object msg) {
-        if (!(msg instanceof NetworkMessage)) {
+        if (wrapMessages && !(msg instanceof NetworkMessage)) {
             msg = new NetworkMessage(msg, remoteAddress);
         }
+        if (timed) {
+            long startTime = System.nanoTime();
+            try {
+                return context.fireChannelRead(msg);
+            } finally {
+                downstreamTime += System.nanoTime() - startTime;
+            }
+        }
         return context.fireChannelRead(msg);
     }
 
@@ -184,7 +213,7 @@ public class WrapperContext implements ChannelHandlerContext {
 
     @Override
     public ChannelFuture write(Object msg, ChannelPromise promise) {
-        if (!(msg instanceof NetworkMessage)) {
+        if (wrapMessages && !(msg instanceof NetworkMessage)) {
             msg = new NetworkMessage(msg, remoteAddress);
         }
         return context.write(msg, promise);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2018 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,17 +17,28 @@ package org.traccar;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
+import org.traccar.metrics.Histogram;
 
 public class WrapperInboundHandler implements ChannelInboundHandler {
 
     private final ChannelInboundHandler handler;
+    private final Histogram histogram;
 
     public ChannelInboundHandler getWrappedHandler() {
         return handler;
     }
 
     public WrapperInboundHandler(ChannelInboundHandler handler) {
+        this(handler, null);
+    }
+
+    /**
+     * Wrap handler and record read time in the histogram. Time spent in following handlers that are called
+     * synchronously is excluded.
+     */
+    public WrapperInboundHandler(ChannelInboundHandler handler, Histogram histogram) {
         this.handler = handler;
+        this.histogram = histogram;
     }
 
     @Override
@@ -52,11 +63,29 @@ public class WrapperInboundHandler implements ChannelInboundHandler {
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (histogram == null) {
+            if (msg instanceof NetworkMessage) {
+                NetworkMessage nm = (NetworkMessage) msg;
+                handler.channelRead(new WrapperContext(ctx, nm.getRemoteAddress()), nm.getMessage());
+            } else {
+                handler.channelRead(ctx, msg);
+            }
+            return;
+        }
+
+        WrapperContext context;
         if (msg instanceof NetworkMessage) {
             NetworkMessage nm = (NetworkMessage) msg;
-            handler.channelRead(new WrapperContext(ctx, nm.getRemoteAddress()), nm.getMessage());
+            context = new WrapperContext(ctx, nm.getRemoteAddress(), true, true);
+            msg = nm.getMessage();
         } else {
-            handler.channelRead(ctx, msg);
+            context = new WrapperContext(ctx, null, false, true);
+        }
+        long startTime = System.nanoTime();
+        try {
+            handler.channelRead(context, msg);
+        } finally {
+            histogram.record(System.nanoTime() - startTime - context.getDownstreamTime());
         }
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,25 +16,45 @@
 package org.traccar.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.api.security.AccessGraph;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.LogRecord;
 import org.traccar.model.Position;
 import org.traccar.session.ConnectionManager;
-import org.traccar.storage.Storage;
+import org.traccar.session.UpdateSubscription;
+import org.traccar.session.cache.LatestPositionStore;
 import org.traccar.storage.StorageException;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+/**
+ * WebSocket connection for live updates. Updates are buffered and sent in batches by {@link AsyncSocketDispatcher},
+ * so only the latest device and position state is sent for each device. Clients that do not keep up with the writes
+ * are disconnected and receive a fresh snapshot after reconnecting.
+ * <p>
+ * Clients can limit updates by sending a subscription message, for example
+ * {@code {"devices": [1, 2], "area": {"minLatitude": 0, "minLongitude": 0, "maxLatitude": 1, "maxLongitude": 1},
+ * "interval": 5000}}. Omitted fields are not restricted and each subscription replaces the previous one.
+ */
 public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocket.class);
@@ -46,15 +66,44 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
     private final ObjectMapper objectMapper;
     private final ConnectionManager connectionManager;
-    private final Storage storage;
+    private final AsyncSocketDispatcher dispatcher;
+    private final AccessGraph accessGraph;
+    private final LatestPositionStore latestPositionStore;
     private final long userId;
 
-    private boolean includeLogs;
+    private volatile boolean includeLogs;
+    private volatile UpdateSubscription subscription = UpdateSubscription.ALL;
+
+    private Map<Long, Device> pendingDevices = new LinkedHashMap<>();
+    private Map<Long, Position> pendingPositions = new LinkedHashMap<>();
+    private List<Event> pendingEvents = new ArrayList<>();
+    private List<LogRecord> pendingLogs = new ArrayList<>();
+    private final Map<Long, Long> sentTimes = new HashMap<>();
+    private boolean flushScheduled;
+
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private final WriteCallback writeCallback = new WriteCallback() {
+        @Override
+        public void writeFailed(Throwable x) {
+            pendingWrites.decrementAndGet();
+            LOGGER.debug("Socket write error", x);
+        }
+
+        @Override
+        public void writeSuccess() {
+            pendingWrites.decrementAndGet();
+        }
+    };
 
-    public AsyncSocket(ObjectMapper objectMapper, ConnectionManager connectionManager, Storage storage, long userId) {
+    public AsyncSocket(
+            ObjectMapper objectMapper, ConnectionManager connectionManager, AsyncSocketDispatcher dispatcher,
+            AccessGraph accessGraph, LatestPositionStore latestPositionStore, long userId) {
         this.objectMapper = objectMapper;
         this.connectionManager = connectionManager;
-        this.storage = storage;
+        this.dispatcher = dispatcher;
+        this.accessGraph = accessGraph;
+        this.latestPositionStore = latestPositionStore;
         this.userId = userId;
     }
 
@@ -64,9 +113,10 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
         try {
             Map<String, Collection<?>> data = new HashMap<>();
-            data.put(KEY_POSITIONS, PositionUtil.getLatestPositions(storage, userId));
+            data.put(KEY_POSITIONS, PositionUtil.getLatestPositions(accessGraph, latestPositionStore, userId));
             sendData(data);
             connectionManager.addListener(userId, this);
+            dispatcher.register(this);
         } catch (StorageException e) {
             throw new RuntimeException(e);
         }
@@ -76,6 +126,7 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
     public void onWebSocketClose(int statusCode, String reason) {
         super.onWebSocketClose(statusCode, reason);
 
+        dispatcher.unregister(this);
         connectionManager.removeListener(userId, this);
     }
 
@@ -84,12 +135,61 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
         super.onWebSocketText(message);
 
         try {
-            includeLogs = objectMapper.readTree(message).get("logs").asBoolean();
+            JsonNode root = objectMapper.readTree(message);
+            if (root.has("logs")) {
+                includeLogs = root.get("logs").asBoolean();
+            }
+            if (root.has("devices") || root.has("area") || root.has("interval")) {
+                updateSubscription(root);
+            }
         } catch (JsonProcessingException e) {
             LOGGER.warn("Socket JSON parsing error", e);
         }
     }
 
+    private void updateSubscription(JsonNode root) {
+        Set<Long> deviceIds = null;
+        JsonNode devices = root.get("devices");
+        if (devices != null && devices.isArray()) {
+            deviceIds = new HashSet<>();
+            for (JsonNode node : devices) {
+                deviceIds.add(node.asLong());
+            }
+        }
+        long interval = root.path("interval").asLong();
+        UpdateSubscription subscription;
+        JsonNode area = root.get("area");
+        if (area != null && area.isObject()) {
+            subscription = new UpdateSubscription(
+                    deviceIds, interval,
+                    area.path("minLatitude").asDouble(-90), area.path("minLongitude").asDouble(-180),
+                    area.path("maxLatitude").asDouble(90), area.path("maxLongitude").asDouble(180));
+        } else {
+            subscription = new UpdateSubscription(deviceIds, interval);
+        }
+
+        this.subscription = subscription;
+        connectionManager.updateSubscription(userId, this, subscription);
+        synchronized (this) {
+            pendingPositions.values().removeIf(position -> !subscription.containsDevice(position.getDeviceId())
+                    || !subscription.contains(position));
+        }
+
+        try {
+            List<Position> positions = new ArrayList<>();
+            for (Position position : PositionUtil.getLatestPositions(accessGraph, latestPositionStore, userId)) {
+                if (subscription.containsDevice(position.getDeviceId()) && subscription.contains(position)) {
+                    positions.add(position);
+                }
+            }
+            Map<String, Collection<?>> data = new HashMap<>();
+            data.put(KEY_POSITIONS, positions);
+            sendData(data);
+        } catch (StorageException e) {
+            LOGGER.warn("Socket positions snapshot error", e);
+        }
+    }
+
     @Override
     public void onKeepalive() {
         sendData(new HashMap<>());
@@ -97,33 +197,153 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
     @Override
     public void onUpdateDevice(Device device) {
-        sendData(Map.of(KEY_DEVICES, List.of(device)));
+        synchronized (this) {
+            pendingDevices.put(device.getId(), device);
+        }
+        sendPending();
     }
 
     @Override
     public void onUpdatePosition(Position position) {
-        sendData(Map.of(KEY_POSITIONS, List.of(position)));
+        synchronized (this) {
+            pendingPositions.put(position.getDeviceId(), position);
+        }
+        sendPending();
     }
 
     @Override
     public void onUpdateEvent(Event event) {
-        sendData(Map.of(KEY_EVENTS, List.of(event)));
+        synchronized (this) {
+            pendingEvents.add(event);
+        }
+        sendPending();
     }
 
     @Override
     public void onUpdateLog(LogRecord record) {
         if (includeLogs) {
-            sendData(Map.of(KEY_LOGS, List.of(record)));
+            synchronized (this) {
+                pendingLogs.add(record);
+            }
+            sendPending();
         }
     }
 
+    private void sendPending() {
+        if (dispatcher.isImmediate()) {
+            flush(dispatcher.createSerializer());
+        }
+    }
+
+    private void flushDeferred() {
+        synchronized (this) {
+            flushScheduled = false;
+        }
+        flush(dispatcher.createSerializer());
+    }
+
+    /**
+     * Send all buffered updates as a single message. The serializer can be shared between connections.
+     */
+    public void flush(Function<Object, String> serializer) {
+        Collection<Device> devices;
+        Collection<Position> positions;
+        List<Event> events;
+        List<LogRecord> logs;
+        long flushDelay = 0;
+        synchronized (this) {
+            long interval = subscription.getInterval();
+            if (interval > 0) {
+                long currentTime = System.currentTimeMillis();
+                long nextTime = Long.MAX_VALUE;
+                Map<Long, Position> retained = new LinkedHashMap<>();
+                positions = new ArrayList<>();
+                for (Position position : pendingPositions.values()) {
+                    long deviceId = position.getDeviceId();
+                    long sentTime = sentTimes.getOrDefault(deviceId, 0L);
+                    if (currentTime - sentTime < interval) {
+                        retained.put(deviceId, position);
+                        nextTime = Math.min(nextTime, sentTime + interval);
+                    } else {
+                        positions.add(position);
+                        sentTimes.put(deviceId, currentTime);
+                    }
+                }
+                pendingPositions = retained;
+                if (!retained.isEmpty() && !flushScheduled && dispatcher.isImmediate()) {
+                    flushScheduled = true;
+                    flushDelay = nextTime - currentTime;
+                }
+            } else {
+                positions = pendingPositions.values();
+                pendingPositions = new LinkedHashMap<>();
+            }
+            devices = pendingDevices.values();
+            events = pendingEvents;
+            logs = pendingLogs;
+            pendingDevices = new LinkedHashMap<>();
+            pendingEvents = new ArrayList<>();
+            pendingLogs = new ArrayList<>();
+        }
+
+        if (flushDelay > 0) {
+            dispatcher.schedule(this::flushDeferred, flushDelay);
+        }
+
+        if (devices.isEmpty() && positions.isEmpty() && events.isEmpty() && logs.isEmpty()) {
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{");
+        appendData(json, KEY_DEVICES, devices, serializer);
+        appendData(json, KEY_POSITIONS, positions, serializer);
+        appendData(json, KEY_EVENTS, events, serializer);
+        appendData(json, KEY_LOGS, logs, serializer);
+        json.append('}');
+        sendString(json.toString());
+    }
+
+    private static void appendData(
+            StringBuilder json, String key, Collection<?> items, Function<Object, String> serializer) {
+        if (items.isEmpty()) {
+            return;
+        }
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        json.append('"').append(key).append("\":[");
+        boolean first = true;
+        for (Object item : items) {
+            String value = serializer.apply(item);
+            if (value != null) {
+                if (!first) {
+                    json.append(',');
+                }
+                json.append(value);
+                first = false;
+            }
+        }
+        json.append(']');
+    }
+
     private void sendData(Map<String, Collection<?>> data) {
+        try {
+            sendString(objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Socket JSON formatting error", e);
+        }
+    }
+
+    private void sendString(String message) {
         if (isConnected()) {
-            try {
-                getRemote().sendString(objectMapper.writeValueAsString(data), null);
-            } catch (JsonProcessingException e) {
-                LOGGER.warn("Socket JSON formatting error", e);
+            if (pendingWrites.incrementAndGet() > dispatcher.getMaxPending()) {
+                pendingWrites.decrementAndGet();
+                LOGGER.info("Closing slow socket for user {}", userId);
+                dispatcher.registerDropped();
+                getSession().close(StatusCode.POLICY_VIOLATION, "Slow consumer");
+                return;
             }
+            getRemote().sendString(message, writeCallback);
         }
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Periodically flushes batched updates of all WebSocket connections. Objects shared between connections, like a
+ * position visible to many users, are serialized once per flush.
+ */
+@Singleton
+public class AsyncSocketDispatcher implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocketDispatcher.class);
+
+    private final ObjectMapper objectMapper;
+    private final long flushInterval;
+    private final int maxPending;
+
+    private final Set<AsyncSocket> sockets = ConcurrentHashMap.newKeySet();
+
+    private volatile ScheduledExecutorService executor;
+
+    private final LongAdder dropped = new LongAdder();
+
+    @Inject
+    public AsyncSocketDispatcher(Config config, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        flushInterval = config.getLong(Keys.WEB_SOCKET_FLUSH_INTERVAL);
+        maxPending = config.getInteger(Keys.WEB_SOCKET_MAX_PENDING);
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        if (flushInterval > 0) {
+            executor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public boolean isImmediate() {
+        return flushInterval <= 0;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void register(AsyncSocket socket) {
+        sockets.add(socket);
+    }
+
+    public void unregister(AsyncSocket socket) {
+        sockets.remove(socket);
+    }
+
+    public void registerDropped() {
+        dropped.increment();
+    }
+
+    public int getSessionCount() {
+        return sockets.size();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Create serializer that caches JSON of each object, so the same object is only written once.
+     */
+    public Function<Object, String> createSerializer() {
+        Map<Object, String> cache = new IdentityHashMap<>();
+        return object -> cache.computeIfAbsent(object, key -> {
+            try {
+                return objectMapper.writeValueAsString(key);
+            } catch (JsonProcessingException e) {
+                LOGGER.warn("Socket JSON formatting error", e);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Run the task after the delay. Used in immediate mode to flush updates held back by the subscription interval,
+     * which would otherwise wait for the next update of the connection.
+     */
+    public void schedule(Runnable task, long delay) {
+        ScheduledExecutorService executor = this.executor;
+        if (executor != null) {
+            try {
+                executor.schedule(() -> {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Socket flush error", e);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Socket flush rejected", e);
+            }
+        }
+    }
+
+    public void flush() {
+        Function<Object, String> serializer = createSerializer();
+        for (AsyncSocket socket : sockets) {
+            try {
+                socket.flush(serializer);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Socket flush error", e);
+            }
+        }
+    }
+
+}
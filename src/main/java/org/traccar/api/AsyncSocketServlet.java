@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,10 +19,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServlet;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServletFactory;
 import org.traccar.api.resource.SessionResource;
+import org.traccar.api.security.AccessGraph;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.session.ConnectionManager;
-import org.traccar.storage.Storage;
+import org.traccar.session.cache.LatestPositionStore;
 
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -35,15 +36,20 @@ public class AsyncSocketServlet extends JettyWebSocketServlet {
     private final Config config;
     private final ObjectMapper objectMapper;
     private final ConnectionManager connectionManager;
-    private final Storage storage;
+    private final AsyncSocketDispatcher dispatcher;
+    private final AccessGraph accessGraph;
+    private final LatestPositionStore latestPositionStore;
 
     @Inject
     public AsyncSocketServlet(
-            Config config, ObjectMapper objectMapper, ConnectionManager connectionManager, Storage storage) {
+            Config config, ObjectMapper objectMapper, ConnectionManager connectionManager,
+            AsyncSocketDispatcher dispatcher, AccessGraph accessGraph, LatestPositionStore latestPositionStore) {
         this.config = config;
         this.objectMapper = objectMapper;
         this.connectionManager = connectionManager;
-        this.storage = storage;
+        this.dispatcher = dispatcher;
+        this.accessGraph = accessGraph;
+        this.latestPositionStore = latestPositionStore;
     }
 
     @Override
@@ -53,7 +59,8 @@ public class AsyncSocketServlet extends JettyWebSocketServlet {
             if (req.getSession() != null) {
                 Long userId = (Long) ((HttpSession) req.getSession()).getAttribute(SessionResource.USER_ID_KEY);
                 if (userId != null) {
-                    return new AsyncSocket(objectMapper, connectionManager, storage, userId);
+                    return new AsyncSocket(
+                            objectMapper, connectionManager, dispatcher, accessGraph, latestPositionStore, userId);
                 }
             }
             return null;
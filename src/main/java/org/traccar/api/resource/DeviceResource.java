@@ -285,6 +285,11 @@ public class DeviceResource extends BaseObjectResource<Device> {
             share.setId(storage.addObject(share, new Request(new Columns.Exclude("id"))));
 
             storage.addPermission(new Permission(User.class, share.getId(), Device.class, deviceId));
+            try {
+                cacheManager.invalidatePermission(true, User.class, share.getId(), Device.class, deviceId, true);
+            } catch (Exception e) {
+                throw new StorageException(e);
+            }
         }
 
         return tokenManager.generateToken(share.getId(), expiration);
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api.resource;
+
+import org.traccar.api.BaseResource;
+import org.traccar.database.MetricsManager;
+import org.traccar.metrics.MetricsRegistry;
+import org.traccar.storage.StorageException;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+@Path("metrics")
+@Produces(MediaType.TEXT_PLAIN)
+public class MetricsResource extends BaseResource {
+
+    @Inject
+    private MetricsManager metricsManager;
+
+    @Inject
+    private MetricsRegistry metricsRegistry;
+
+    @GET
+    public String get() throws StorageException {
+        permissionsService.checkAdmin(getUserId());
+        return metricsRegistry.format(metricsManager.getMetrics(), MetricsManager::isCounter);
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2021 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2021 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,8 +18,10 @@ package org.traccar.api.resource;
 import org.traccar.api.BaseResource;
 import org.traccar.api.signature.TokenManager;
 import org.traccar.mail.MailManager;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.User;
 import org.traccar.notification.TextTemplateFormatter;
+import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
@@ -52,6 +54,9 @@ public class PasswordResource extends BaseResource {
     @Inject
     private TextTemplateFormatter textTemplateFormatter;
 
+    @Inject
+    private CacheManager cacheManager;
+
     @Path("reset")
     @PermitAll
     @POST
@@ -83,6 +88,11 @@ public class PasswordResource extends BaseResource {
             storage.updateObject(user, new Request(
                     new Columns.Include("hashedPassword", "salt"),
                     new Condition.Equals("id", userId)));
+            try {
+                cacheManager.invalidateObject(true, User.class, userId, ObjectOperation.UPDATE);
+            } catch (Exception e) {
+                throw new StorageException(e);
+            }
             return Response.ok().build();
         }
         return Response.status(Response.Status.NOT_FOUND).build();
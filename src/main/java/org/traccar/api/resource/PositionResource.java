@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 package org.traccar.api.resource;
 
 import org.traccar.api.BaseResource;
+import org.traccar.api.security.AccessGraph;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Position;
@@ -23,6 +24,7 @@ import org.traccar.model.UserRestrictions;
 import org.traccar.reports.CsvExportProvider;
 import org.traccar.reports.GpxExportProvider;
 import org.traccar.reports.KmlExportProvider;
+import org.traccar.session.cache.LatestPositionStore;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
@@ -51,6 +53,12 @@ import java.util.LinkedList;
 @Consumes(MediaType.APPLICATION_JSON)
 public class PositionResource extends BaseResource {
 
+    @Inject
+    private AccessGraph accessGraph;
+
+    @Inject
+    private LatestPositionStore latestPositionStore;
+
     @Inject
     private KmlExportProvider kmlExportProvider;
 
@@ -80,11 +88,10 @@ public class PositionResource extends BaseResource {
                 permissionsService.checkRestriction(getUserId(), UserRestrictions::getDisableReports);
                 return PositionUtil.getPositions(storage, deviceId, from, to);
             } else {
-                return storage.getObjects(Position.class, new Request(
-                        new Columns.All(), new Condition.LatestPositions(deviceId)));
+                return latestPositionStore.getPositions(List.of(deviceId));
             }
         } else {
-            return PositionUtil.getLatestPositions(storage, getUserId());
+            return PositionUtil.getLatestPositions(accessGraph, latestPositionStore, getUserId());
         }
     }
 
@@ -100,6 +107,11 @@ public class PositionResource extends BaseResource {
         conditions.add(new Condition.Between("fixTime", "from", from, "to", to));
         storage.removeObject(Position.class, new Request(Condition.merge(conditions)));
 
+        Position latest = latestPositionStore.getPosition(deviceId);
+        if (latest != null && !latest.getFixTime().before(from) && !latest.getFixTime().after(to)) {
+            latestPositionStore.refresh(deviceId);
+        }
+
         return Response.status(Response.Status.NO_CONTENT).build();
     }
 
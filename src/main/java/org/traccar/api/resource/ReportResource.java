@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 - 2018 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -16,6 +16,10 @@
  */
 package org.traccar.api.resource;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.github.sbahmani.jalcal.util.DateException;
 import com.github.sbahmani.jalcal.util.JalaliDateHelper;
 import org.apache.kafka.common.protocol.types.Field;
@@ -29,6 +33,7 @@ import org.traccar.reports.RouteReportProvider;
 import org.traccar.reports.StopsReportProvider;
 import org.traccar.reports.SummaryReportProvider;
 import org.traccar.reports.TripsReportProvider;
+import org.traccar.reports.common.IgnitionAnalyzer;
 import org.traccar.reports.common.ReportExecutor;
 import org.traccar.reports.common.ReportMailer;
 import org.traccar.reports.model.CombinedReportItem;
@@ -53,6 +58,8 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.Calendar;
 import java.util.stream.Collectors;
@@ -85,6 +92,9 @@ public class ReportResource extends SimpleObjectResource<Report> {
     @Inject
     private ReportMailer reportMailer;
 
+    @Inject
+    private ObjectMapper objectMapper;
+
     public ReportResource() {
         super(Report.class);
     }
@@ -128,14 +138,32 @@ public class ReportResource extends SimpleObjectResource<Report> {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public Response getRoute(
             @QueryParam("deviceId") List<Long> deviceIds,
             @QueryParam("groupId") List<Long> groupIds,
             @QueryParam("from") Date from,
             @QueryParam("to") Date to) throws StorageException {
         permissionsService.checkRestriction(getUserId(), UserRestrictions::getDisableReports);
         LogAction.logReport(getUserId(), "route", from, to, deviceIds, groupIds);
-        return routeReportProvider.getObjects(getUserId(), deviceIds, groupIds, from, to);
+        long userId = getUserId();
+        // flushing after every row would send each position as a separate chunk
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                routeReportProvider.getObjects(userId, deviceIds, groupIds, from, to, position -> {
+                    try {
+                        writer.writeValue(generator, position);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (StorageException e) {
+                throw new WebApplicationException(e);
+            }
+        };
+        return Response.ok(stream).build();
     }
 
     @Path("route")
@@ -172,27 +200,11 @@ public class ReportResource extends SimpleObjectResource<Report> {
             @QueryParam("from") Date fromDate,
             @QueryParam("to") Date toDate)
             throws StorageException, DateException{
-//        var fromDate= JalaliDateHelper.extractDateFromJalaliDateTime(from.substring(0,8),from.substring(8,14));
-//        var toDate=JalaliDateHelper.extractDateFromJalaliDateTime(to.substring(0,8),to.substring(8,14));
         List<Map<String, Object>> resultList = new ArrayList<>();
-        java.util.Calendar calendar= java.util.Calendar.getInstance();
-        calendar.setTime(fromDate);
-        // Add one day to the current date
-        calendar.add(Calendar.DAY_OF_YEAR, 1);
-
-        // Get the new Date object
-        Date nextDay = calendar.getTime();
-
-        while(fromDate.compareTo(toDate) <= 0){
-            var dayReport=routeReportProvider.calculateIgnitionON(deviceId,fromDate,nextDay);
-            Map<String,Object> result=new HashMap<>();
-            result.put("deviceTime",fromDate);
-            result.put("ignition",dayReport);
-            fromDate=nextDay;
-            calendar.setTime(fromDate);
-            // Add one day to the current date
-            calendar.add(Calendar.DAY_OF_YEAR, 1);
-            nextDay=calendar.getTime();
+        for (var day : routeReportProvider.calculateIgnitionDays(deviceId, fromDate, toDate, 0)) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("deviceTime", day.getStartTime());
+            result.put("ignition", IgnitionAnalyzer.formatDuration(day.getOnTime()));
             resultList.add(result);
         }
         return resultList;
@@ -205,40 +217,19 @@ public class ReportResource extends SimpleObjectResource<Report> {
             @QueryParam("to") Date toDate,
             @QueryParam("threshold") Long threshold)
             throws StorageException, DateException{
-//        var fromDate= JalaliDateHelper.extractDateFromJalaliDateTime(from.substring(0,8),from.substring(8,14));
-//        var toDate=JalaliDateHelper.extractDateFromJalaliDateTime(to.substring(0,8),to.substring(8,14));
         List<Map<String, Object>> resultList = new ArrayList<>();
-        java.util.Calendar calendar= java.util.Calendar.getInstance();
-        calendar.setTime(fromDate);
-        // Add one day to the current date
-        calendar.add(Calendar.DAY_OF_YEAR, 1);
-
-        // Get the new Date object
-        Date nextDay = calendar.getTime();
-
-        while(fromDate.compareTo(toDate) <= 0){
-            var dayReport=routeReportProvider.calculateIgnitionOff(deviceId,fromDate,nextDay,threshold);
-            List<Map<String, Object>> dayResult = dayReport.stream()  // Convert to stream
-                    .flatMap(entry -> entry.entrySet().stream())  // Flatten the nested maps to entrySet stream
-                    .map(entryItem -> {
-                        Map<String, Object> result = new HashMap<>();
-                        result.put("deviceTime", entryItem.getKey());  // Map Date to deviceTime
-                        result.put("timeOff", entryItem.getValue());   // Map Long to timeOff
-                        return result;
-                    })
-                    .collect(Collectors.toList());
-            fromDate=nextDay;
-            calendar.setTime(fromDate);
-            // Add one day to the current date
-            calendar.add(Calendar.DAY_OF_YEAR, 1);
-            nextDay=calendar.getTime();
-            resultList.addAll(dayResult);
+        long minutes = threshold != null ? threshold : 0;
+        for (var day : routeReportProvider.calculateIgnitionDays(deviceId, fromDate, toDate, minutes)) {
+            for (var offPeriod : day.getOffPeriods()) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("deviceTime", offPeriod.getStartTime());
+                result.put("timeOff", offPeriod.getMinutes());
+                resultList.add(result);
+            }
         }
         return resultList;
     }
 
-
-
     @Path("route/{type:xlsx|mail}")
     @GET
     @Produces(EXCEL)
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -157,6 +157,15 @@ public class ServerResource extends BaseResource {
         return Response.ok().build();
     }
 
+    @Path("reload")
+    @POST
+    public Response reloadConfig() throws StorageException, IOException {
+        permissionsService.checkAdmin(getUserId());
+        config.reload();
+        LogAction.reloadConfig(getUserId());
+        return Response.noContent().build();
+    }
+
     @Path("cache")
     @GET
     public String cache() throws StorageException {
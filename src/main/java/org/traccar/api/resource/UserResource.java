@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import org.traccar.helper.model.UserUtil;
 import org.traccar.model.ManagedUser;
 import org.traccar.model.Permission;
 import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
@@ -53,6 +54,9 @@ public class UserResource extends BaseObjectResource<User> {
     @Inject
     private Config config;
 
+    @Inject
+    private CacheManager cacheManager;
+
     @Context
     private HttpServletRequest request;
 
@@ -79,7 +83,7 @@ public class UserResource extends BaseObjectResource<User> {
     @Override
     @PermitAll
     @POST
-    public Response add(User entity) throws StorageException {
+    public Response add(User entity) throws Exception {
         User currentUser = getUserId() > 0 ? permissionsService.getUser(getUserId()) : null;
         if (currentUser == null || !currentUser.getAdministrator()) {
             permissionsService.checkUserUpdate(getUserId(), new User(), entity);
@@ -119,6 +123,8 @@ public class UserResource extends BaseObjectResource<User> {
 
         if (currentUser != null && currentUser.getUserLimit() != 0) {
             storage.addPermission(new Permission(User.class, getUserId(), ManagedUser.class, entity.getId()));
+            cacheManager.invalidatePermission(
+                    true, User.class, getUserId(), ManagedUser.class, entity.getId(), true);
             LogAction.link(getUserId(), User.class, getUserId(), ManagedUser.class, entity.getId());
         }
         return Response.ok(entity).build();
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api.security;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.traccar.broadcast.BroadcastInterface;
+import org.traccar.model.BaseModel;
+import org.traccar.model.Device;
+import org.traccar.model.Group;
+import org.traccar.model.GroupedModel;
+import org.traccar.model.ManagedUser;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.Permission;
+import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
+import org.traccar.storage.ModelAccessors;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Request;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of user permission links and group hierarchy. Each link table is loaded on first use and then kept
+ * current by object and permission changes, so access checks are answered with set lookups. Group expansion matches
+ * the permission query, which covers two levels of nested groups.
+ */
+@Singleton
+public class AccessGraph implements BroadcastInterface {
+
+    private final Storage storage;
+
+    private final Map<Class<?>, Map<Long, Set<Long>>> links = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Map<Long, Long>> parents = new ConcurrentHashMap<>();
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+
+    @Inject
+    public AccessGraph(Storage storage, CacheManager cacheManager) {
+        this.storage = storage;
+        cacheManager.registerListener(this);
+    }
+
+    private Map<Long, Set<Long>> getLinks(Class<?> clazz) throws StorageException {
+        Map<Long, Set<Long>> result = links.get(clazz);
+        if (result == null) {
+            synchronized (this) {
+                result = links.get(clazz);
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    var permissions = storage.getPermissions(User.class, clazz.asSubclass(BaseModel.class));
+                    for (Permission permission : permissions) {
+                        result.computeIfAbsent(permission.getOwnerId(), k -> ConcurrentHashMap.newKeySet())
+                                .add(permission.getPropertyId());
+                    }
+                    links.put(clazz, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Map<Long, Long> getParents(Class<? extends GroupedModel> clazz) throws StorageException {
+        Map<Long, Long> result = parents.get(clazz);
+        if (result == null) {
+            synchronized (this) {
+                result = parents.get(clazz);
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    for (GroupedModel object : storage.getObjects(clazz, new Request(
+                            new Columns.Include("id", "groupId")))) {
+                        if (object.getGroupId() > 0) {
+                            result.put(object.getId(), object.getGroupId());
+                        }
+                    }
+                    parents.put(clazz, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get a copy of the cached user. Cached users are dropped on every user update or removal, so callers can't see
+     * stale flags or modify the shared instance.
+     */
+    public User getUser(long userId) throws StorageException {
+        User user = users.get(userId);
+        if (user == null) {
+            synchronized (this) {
+                user = users.get(userId);
+                if (user == null) {
+                    user = storage.getObject(
+                            User.class, new Request(new Columns.All(), new Condition.Equals("id", userId)));
+                    if (user == null) {
+                        return null;
+                    }
+                    users.put(userId, user);
+                }
+            }
+        }
+        User copy = new User();
+        ModelAccessors.copyProperties(User.class, user, copy);
+        copy.setAttributes(new HashMap<>(user.getAttributes()));
+        return copy;
+    }
+
+    public Set<Long> getObjectIds(long userId, Class<?> clazz) throws StorageException {
+        return getLinks(clazz).getOrDefault(userId, Collections.emptySet());
+    }
+
+    /**
+     * Get ids of devices the user has access to directly or through groups.
+     */
+    public Set<Long> getDeviceIds(long userId) throws StorageException {
+        Set<Long> result = new HashSet<>(getObjectIds(userId, Device.class));
+        Set<Long> userGroups = getObjectIds(userId, Group.class);
+        if (!userGroups.isEmpty()) {
+            for (var entry : getParents(Device.class).entrySet()) {
+                if (checkGroup(userGroups, entry.getValue())) {
+                    result.add(entry.getKey());
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean checkGroup(Set<Long> userGroups, long groupId) throws StorageException {
+        Map<Long, Long> groupParents = getParents(Group.class);
+        for (int level = 0; level < 3 && groupId > 0; level++) {
+            if (userGroups.contains(groupId)) {
+                return true;
+            }
+            groupId = groupParents.getOrDefault(groupId, 0L);
+        }
+        return false;
+    }
+
+    /**
+     * Check if user has access to the object directly or through groups. For users the class should be
+     * {@link ManagedUser}.
+     */
+    public boolean checkPermission(long userId, Class<?> clazz, long objectId) throws StorageException {
+        if (getObjectIds(userId, clazz).contains(objectId)) {
+            return true;
+        }
+        if (clazz.equals(Device.class) || clazz.equals(Group.class)) {
+            Set<Long> userGroups = getObjectIds(userId, Group.class);
+            if (!userGroups.isEmpty()) {
+                long groupId = clazz.equals(Device.class) ? getParents(Device.class).getOrDefault(objectId, 0L)
+                        : objectId;
+                return checkGroup(userGroups, groupId);
+            }
+        }
+        return false;
+    }
+
+    private void updateParent(Class<? extends GroupedModel> clazz, long id) throws StorageException {
+        Map<Long, Long> objectParents = parents.get(clazz);
+        if (objectParents != null) {
+            GroupedModel object = storage.getObject(clazz, new Request(
+                    new Columns.Include("id", "groupId"), new Condition.Equals("id", id)));
+            if (object != null && object.getGroupId() > 0) {
+                objectParents.put(id, object.getGroupId());
+            } else {
+                objectParents.remove(id);
+            }
+        }
+    }
+
+    private void removeObject(Class<?> clazz, long id) {
+        Map<Long, Set<Long>> classLinks = links.get(clazz);
+        if (classLinks != null) {
+            classLinks.values().forEach(ids -> ids.remove(id));
+        }
+        Map<Long, Long> objectParents = parents.get(clazz);
+        if (objectParents != null) {
+            objectParents.remove(id);
+        }
+    }
+
+    @Override
+    public synchronized <T extends BaseModel> void invalidateObject(
+            boolean local, Class<T> clazz, long id, ObjectOperation operation) throws StorageException {
+        if (clazz.equals(User.class)) {
+            users.remove(id);
+            if (operation == ObjectOperation.DELETE) {
+                links.values().forEach(classLinks -> classLinks.remove(id));
+                removeObject(ManagedUser.class, id);
+            }
+        } else if (operation == ObjectOperation.DELETE) {
+            removeObject(clazz, id);
+        } else if (clazz.equals(Device.class) || clazz.equals(Group.class)) {
+            updateParent(clazz.asSubclass(GroupedModel.class), id);
+        }
+    }
+
+    @Override
+    public synchronized <T1 extends BaseModel, T2 extends BaseModel> void invalidatePermission(
+            boolean local, Class<T1> clazz1, long id1, Class<T2> clazz2, long id2, boolean link) {
+        if (clazz1.equals(User.class)) {
+            Map<Long, Set<Long>> classLinks = links.get(clazz2);
+            if (classLinks != null) {
+                if (link) {
+                    classLinks.computeIfAbsent(id1, k -> ConcurrentHashMap.newKeySet()).add(id2);
+                } else {
+                    Set<Long> ids = classLinks.get(id1);
+                    if (ids != null) {
+                        ids.remove(id2);
+                    }
+                }
+            }
+        }
+    }
+
+}
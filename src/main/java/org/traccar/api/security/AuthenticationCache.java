@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api.security;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.traccar.broadcast.BroadcastInterface;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.helper.DataConverter;
+import org.traccar.model.BaseModel;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short lived cache of API authorization header results. Entries are keyed by the header digest, so credentials are
+ * not kept in memory, and are removed when the user changes.
+ */
+@Singleton
+public class AuthenticationCache implements BroadcastInterface {
+
+    private static final int CLEANUP_SIZE = 10000;
+
+    private static final class Entry {
+
+        private final LoginResult result;
+        private final long expiration;
+
+        private Entry(LoginResult result, long expiration) {
+            this.result = result;
+            this.expiration = expiration;
+        }
+
+    }
+
+    private final long timeout;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Inject
+    public AuthenticationCache(Config config, CacheManager cacheManager) {
+        timeout = TimeUnit.SECONDS.toMillis(config.getInteger(Keys.WEB_AUTHENTICATION_CACHE_TIMEOUT));
+        cacheManager.registerListener(this);
+    }
+
+    private static String digest(String authorization) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return DataConverter.printHex(messageDigest.digest(authorization.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new SecurityException(e);
+        }
+    }
+
+    public LoginResult get(String authorization) {
+        if (timeout <= 0) {
+            return null;
+        }
+        String key = digest(authorization);
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (System.currentTimeMillis() < entry.expiration) {
+                return entry.result;
+            }
+            entries.remove(key, entry);
+        }
+        return null;
+    }
+
+    public void put(String authorization, LoginResult result) {
+        if (timeout <= 0 || result == null || result.getUser() == null) {
+            return;
+        }
+        long currentTime = System.currentTimeMillis();
+        long expiration = currentTime + timeout;
+        if (result.getExpiration() != null) {
+            expiration = Math.min(expiration, result.getExpiration().getTime());
+        }
+        if (entries.size() >= CLEANUP_SIZE) {
+            entries.values().removeIf(entry -> entry.expiration <= currentTime);
+        }
+        entries.put(digest(authorization), new Entry(result, expiration));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public <T extends BaseModel> void invalidateObject(
+            boolean local, Class<T> clazz, long id, ObjectOperation operation) {
+        if (clazz.equals(User.class)) {
+            entries.values().removeIf(entry -> entry.result.getUser().getId() == id);
+        }
+    }
+
+}
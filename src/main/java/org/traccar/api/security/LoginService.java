@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,8 +38,6 @@ import jakarta.inject.Singleton;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.Date;
 
 @Singleton
@@ -81,6 +79,16 @@ public class LoginService {
 
 
     public LoginResult login(String email, String password, Integer code,HttpServletRequest request) throws StorageException {
+        return login(email, password, code, request, true);
+    }
+
+    /**
+     * Login with email and password. History is recorded only for interactive logins, not for API requests
+     * authorized with credentials in the header.
+     */
+    public LoginResult login(
+            String email, String password, Integer code, HttpServletRequest request, boolean recordHistory)
+            throws StorageException {
         if (forceOpenId) {
             return null;
         }
@@ -91,33 +99,40 @@ public class LoginService {
                 new Condition.Or(
                         new Condition.Equals("email", email),
                         new Condition.Equals("login", email))));
-        var loginStatus=user.isPasswordValid(password)?"success":"failed";
         if (user != null) {
+            boolean passwordValid = user.isPasswordValid(password);
+            String loginStatus = passwordValid ? "success" : "failed";
             if (ldapProvider != null && user.getLogin() != null && ldapProvider.login(user.getLogin(), password)
-                    || !forceLdap && user.isPasswordValid(password)) {
+                    || !forceLdap && passwordValid) {
                 checkUserCode(user, code);
                 checkUserEnabled(user);
-                loginHistory.setUserId(user.getId());
-                loginHistory.setLoginTime(Date.from( LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant()));
-                loginHistory.setLoginStatus(loginStatus);
-                loginHistory.setIpAddress(LoginService.getClientIp(request));
-                storage.addObjects(loginHistory,new Request(new  Columns.Exclude("id")));
+                if (recordHistory) {
+                    loginHistory.setUserId(user.getId());
+                    loginHistory.setLoginTime(new Date());
+                    loginHistory.setLoginStatus(loginStatus);
+                    loginHistory.setIpAddress(LoginService.getClientIp(request));
+                    storage.addObjects(loginHistory, new Request(new Columns.Exclude("id")));
+                }
                 return new LoginResult(user);
             }else {
-                loginHistory.setUserId(user.getId());
-                loginHistory.setLoginTime(Date.from( LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant()));
-                loginHistory.setLoginStatus(loginStatus);
+                if (recordHistory) {
+                    loginHistory.setUserId(user.getId());
+                    loginHistory.setLoginTime(new Date());
+                    loginHistory.setLoginStatus(loginStatus);
 
-                storage.addObjects(loginHistory,new Request(new  Columns.Exclude("id")));
+                    storage.addObjects(loginHistory, new Request(new Columns.Exclude("id")));
+                }
             }
         } else {
             if (ldapProvider != null && ldapProvider.login(email, password)) {
                 user = ldapProvider.getUser(email);
                 user.setId(storage.addObject(user, new Request(new Columns.Exclude("id"))));
                 checkUserEnabled(user);
-                loginHistory.setUserId(user.getId());
-//                loginHistory.setLoginTime(Timestamp.valueOf(LocalDateTime.now()));
-                storage.getObject(LoginHistory.class,new Request(new  Columns.All()));
+                if (recordHistory) {
+                    loginHistory.setUserId(user.getId());
+//                    loginHistory.setLoginTime(Timestamp.valueOf(LocalDateTime.now()));
+                    storage.getObject(LoginHistory.class,new Request(new  Columns.All()));
+                }
                 return new LoginResult(user);
             }
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,6 +28,7 @@ import org.traccar.model.Schedulable;
 import org.traccar.model.Server;
 import org.traccar.model.User;
 import org.traccar.model.UserRestrictions;
+import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
@@ -41,19 +42,22 @@ import java.util.Objects;
 public class PermissionsService {
 
     private final Storage storage;
+    private final CacheManager cacheManager;
+    private final AccessGraph accessGraph;
 
     private Server server;
     private User user;
 
     @Inject
-    public PermissionsService(Storage storage) {
+    public PermissionsService(Storage storage, CacheManager cacheManager, AccessGraph accessGraph) {
         this.storage = storage;
+        this.cacheManager = cacheManager;
+        this.accessGraph = accessGraph;
     }
 
     public Server getServer() throws StorageException {
         if (server == null) {
-            server = storage.getObject(
-                    Server.class, new Request(new Columns.All()));
+            server = cacheManager.getServer();
         }
         return server;
     }
@@ -63,8 +67,7 @@ public class PermissionsService {
             if (userId == ServiceAccountUser.ID) {
                 user = new ServiceAccountUser();
             } else {
-                user = storage.getObject(
-                        User.class, new Request(new Columns.All(), new Condition.Equals("id", userId)));
+                user = accessGraph.getUser(userId);
             }
         }
         return user;
@@ -169,7 +172,7 @@ public class PermissionsService {
     public void checkUser(long userId, long managedUserId) throws StorageException, SecurityException {
         if (userId != managedUserId && !getUser(userId).getAdministrator()) {
             if (!getUser(userId).getManager()
-                    || storage.getPermissions(User.class, userId, ManagedUser.class, managedUserId).isEmpty()) {
+                    || !accessGraph.checkPermission(userId, ManagedUser.class, managedUserId)) {
                 throw new SecurityException("User access denied");
             }
         }
@@ -210,13 +213,7 @@ public class PermissionsService {
     public <T extends BaseModel> void checkPermission(
             Class<T> clazz, long userId, long objectId) throws StorageException, SecurityException {
         if (!getUser(userId).getAdministrator() && !(clazz.equals(User.class) && userId == objectId)) {
-            var object = storage.getObject(clazz, new Request(
-                    new Columns.Include("id"),
-                    new Condition.And(
-                            new Condition.Equals("id", objectId),
-                            new Condition.Permission(
-                                    User.class, userId, clazz.equals(User.class) ? ManagedUser.class : clazz))));
-            if (object == null) {
+            if (!accessGraph.checkPermission(userId, clazz.equals(User.class) ? ManagedUser.class : clazz, objectId)) {
                 throw new SecurityException(clazz.getSimpleName() + " access denied");
             }
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -62,6 +62,9 @@ public class SecurityRequestFilter implements ContainerRequestFilter {
     @Inject
     private LoginService loginService;
 
+    @Inject
+    private AuthenticationCache authenticationCache;
+
     @Inject
     private StatisticsManager statisticsManager;
 
@@ -83,12 +86,17 @@ public class SecurityRequestFilter implements ContainerRequestFilter {
             if (authHeader != null) {
 
                 try {
-                    LoginResult loginResult;
-                    if (authHeader.startsWith("Bearer ")) {
-                        loginResult = loginService.login(authHeader.substring(7));
+                    LoginResult loginResult = authenticationCache.get(authHeader);
+                    if (loginResult != null) {
+                        loginResult.getUser().checkDisabled();
                     } else {
-                        String[] auth = decodeBasicAuth(authHeader);
-                        loginResult = loginService.login(auth[0], auth[1], null,request);
+                        if (authHeader.startsWith("Bearer ")) {
+                            loginResult = loginService.login(authHeader.substring(7));
+                        } else {
+                            String[] auth = decodeBasicAuth(authHeader);
+                            loginResult = loginService.login(auth[0], auth[1], null, request, false);
+                        }
+                        authenticationCache.put(authHeader, loginResult);
                     }
                     User user = loginResult.getUser();
                     if (user != null) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,40 +24,91 @@ import jakarta.inject.Singleton;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.InvalidPropertiesFormatException;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 
 @Singleton
 public class Config {
 
-    private final Properties properties = new Properties();
+    private static final Pattern DOT_PATTERN = Pattern.compile("\\.");
+    private static final Pattern UPPERCASE_PATTERN = Pattern.compile("(\\p{Lu})");
 
-    private boolean useEnvironmentVariables;
+    /**
+     * Resolved value of a single key. Parsed typed value is cached on first typed access.
+     */
+    private static final class Value {
+
+        private final boolean present;
+        private final String string;
+        private volatile Object parsed;
+
+        private Value(boolean present, String string) {
+            this.present = present;
+            this.string = string;
+        }
 
-    public Config() {
     }
 
-    @Inject
-    public Config(@Named("configFile") String file) throws IOException {
-        try {
-            Properties mainProperties = new Properties();
-            try (InputStream inputStream = new FileInputStream(file)) {
-                mainProperties.loadFromXML(inputStream);
+    /**
+     * Immutable view of the configuration. Keys are resolved against environment variables and properties once and
+     * memoized, so repeated lookups do not touch the environment or run any string conversions.
+     */
+    private static final class Snapshot {
+
+        private final Map<String, String> properties;
+        private final Map<String, String> environment;
+        private final Map<String, Value> values = new ConcurrentHashMap<>();
+
+        private Snapshot(Map<String, String> properties, Map<String, String> environment) {
+            this.properties = properties;
+            this.environment = environment;
+        }
+
+        private Value resolve(String key) {
+            Value value = values.get(key);
+            if (value == null) {
+                value = values.computeIfAbsent(key, this::lookup);
             }
+            return value;
+        }
 
-            String defaultConfigFile = mainProperties.getProperty("config.default");
-            if (defaultConfigFile != null) {
-                try (InputStream inputStream = new FileInputStream(defaultConfigFile)) {
-                    properties.loadFromXML(inputStream);
+        private Value lookup(String key) {
+            if (!environment.isEmpty()) {
+                String name = getEnvironmentVariableName(key);
+                String value = environment.get(name);
+                if (value != null && !value.isEmpty()) {
+                    return new Value(true, value);
+                }
+                if (value != null) {
+                    return new Value(true, properties.get(key));
                 }
             }
+            String value = properties.get(key);
+            return new Value(value != null, value);
+        }
+
+    }
 
-            properties.putAll(mainProperties); // override defaults
+    private final String file;
 
-            useEnvironmentVariables = Boolean.parseBoolean(System.getenv("CONFIG_USE_ENVIRONMENT_VARIABLES"))
-                    || Boolean.parseBoolean(properties.getProperty("config.useEnvironmentVariables"));
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap(), Collections.emptyMap());
 
+    public Config() {
+        file = null;
+    }
+
+    @Inject
+    public Config(@Named("configFile") String file) throws IOException {
+        this.file = file;
+        try {
+            reload();
             Log.setupLogger(this);
         } catch (InvalidPropertiesFormatException e) {
             Log.setupDefaultLogger();
@@ -68,13 +119,51 @@ public class Config {
         }
     }
 
+    /**
+     * Read configuration files again and atomically replace all values. Triggered by administrators through the
+     * server reload API. Values already copied by components during initialization are not updated.
+     */
+    public void reload() throws IOException {
+        if (file == null) {
+            return;
+        }
+
+        Properties properties = new Properties();
+        Properties mainProperties = new Properties();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            mainProperties.loadFromXML(inputStream);
+        }
+
+        String defaultConfigFile = mainProperties.getProperty("config.default");
+        if (defaultConfigFile != null) {
+            try (InputStream inputStream = new FileInputStream(defaultConfigFile)) {
+                properties.loadFromXML(inputStream);
+            }
+        }
+
+        properties.putAll(mainProperties); // override defaults
+
+        boolean useEnvironmentVariables = Boolean.parseBoolean(System.getenv("CONFIG_USE_ENVIRONMENT_VARIABLES"))
+                || Boolean.parseBoolean(properties.getProperty("config.useEnvironmentVariables"));
+
+        snapshot = new Snapshot(
+                toMap(properties), useEnvironmentVariables ? Map.copyOf(System.getenv()) : Collections.emptyMap());
+    }
+
+    private static Map<String, String> toMap(Properties properties) {
+        Map<String, String> result = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            result.put(name, properties.getProperty(name));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
     public boolean hasKey(ConfigKey<?> key) {
         return hasKey(key.getKey());
     }
 
     private boolean hasKey(String key) {
-        return useEnvironmentVariables && System.getenv().containsKey(getEnvironmentVariableName(key))
-                || properties.containsKey(key);
+        return snapshot.resolve(key).present;
     }
 
     public String getString(ConfigKey<String> key) {
@@ -83,13 +172,7 @@ public class Config {
 
     @Deprecated
     public String getString(String key) {
-        if (useEnvironmentVariables) {
-            String value = System.getenv(getEnvironmentVariableName(key));
-            if (value != null && !value.isEmpty()) {
-                return value;
-            }
-        }
-        return properties.getProperty(key);
+        return snapshot.resolve(key).string;
     }
 
     public String getString(ConfigKey<String> key, String defaultValue) {
@@ -98,21 +181,31 @@ public class Config {
 
     @Deprecated
     public String getString(String key, String defaultValue) {
-        return hasKey(key) ? getString(key) : defaultValue;
+        Value value = snapshot.resolve(key);
+        return value.present ? value.string : defaultValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T getParsed(Value value, Function<String, T> parser, T defaultValue) {
+        if (value.string == null) {
+            return defaultValue;
+        }
+        Object parsed = value.parsed;
+        if (parsed == null || !defaultValue.getClass().isInstance(parsed)) {
+            parsed = parser.apply(value.string);
+            value.parsed = parsed;
+        }
+        return (T) parsed;
     }
 
     public boolean getBoolean(ConfigKey<Boolean> key) {
-        return Boolean.parseBoolean(getString(key.getKey()));
+        Boolean defaultValue = Objects.requireNonNullElse(key.getDefaultValue(), false);
+        return getParsed(snapshot.resolve(key.getKey()), Boolean::parseBoolean, defaultValue);
     }
 
     public int getInteger(ConfigKey<Integer> key) {
-        String value = getString(key.getKey());
-        if (value != null) {
-            return Integer.parseInt(value);
-        } else {
-            Integer defaultValue = key.getDefaultValue();
-            return Objects.requireNonNullElse(defaultValue, 0);
-        }
+        Integer defaultValue = Objects.requireNonNullElse(key.getDefaultValue(), 0);
+        return getParsed(snapshot.resolve(key.getKey()), Integer::parseInt, defaultValue);
     }
 
     public int getInteger(ConfigKey<Integer> key, int defaultValue) {
@@ -121,36 +214,30 @@ public class Config {
 
     @Deprecated
     public int getInteger(String key, int defaultValue) {
-        return hasKey(key) ? Integer.parseInt(getString(key)) : defaultValue;
+        Value value = snapshot.resolve(key);
+        return value.present ? getParsed(value, Integer::parseInt, defaultValue) : defaultValue;
     }
 
     public long getLong(ConfigKey<Long> key) {
-        String value = getString(key.getKey());
-        if (value != null) {
-            return Long.parseLong(value);
-        } else {
-            Long defaultValue = key.getDefaultValue();
-            return Objects.requireNonNullElse(defaultValue, 0L);
-        }
+        Long defaultValue = Objects.requireNonNullElse(key.getDefaultValue(), 0L);
+        return getParsed(snapshot.resolve(key.getKey()), Long::parseLong, defaultValue);
     }
 
     public double getDouble(ConfigKey<Double> key) {
-        String value = getString(key.getKey());
-        if (value != null) {
-            return Double.parseDouble(value);
-        } else {
-            Double defaultValue = key.getDefaultValue();
-            return Objects.requireNonNullElse(defaultValue, 0.0);
-        }
+        Double defaultValue = Objects.requireNonNullElse(key.getDefaultValue(), 0.0);
+        return getParsed(snapshot.resolve(key.getKey()), Double::parseDouble, defaultValue);
     }
 
     @VisibleForTesting
-    public void setString(ConfigKey<?> key, String value) {
+    public synchronized void setString(ConfigKey<?> key, String value) {
+        Map<String, String> properties = new HashMap<>(snapshot.properties);
         properties.put(key.getKey(), value);
+        snapshot = new Snapshot(Collections.unmodifiableMap(properties), snapshot.environment);
     }
 
     static String getEnvironmentVariableName(String key) {
-        return key.replaceAll("\\.", "_").replaceAll("(\\p{Lu})", "_$1").toUpperCase();
+        String name = DOT_PATTERN.matcher(key).replaceAll("_");
+        return UPPERCASE_PATTERN.matcher(name).replaceAll("_$1").toUpperCase();
     }
 
 }
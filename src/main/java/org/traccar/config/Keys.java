@@ -314,6 +314,16 @@ public final class Keys {
             "server.statistics",
             List.of(KeyType.CONFIG));
 
+    /**
+     * Enable latency histograms for pipeline handlers, protocol decoding, storage queries and external requests. The
+     * metrics are exported in Prometheus text format on '/api/metrics'. Queue and counter metrics are always
+     * available. Default value is false.
+     */
+    public static final ConfigKey<Boolean> METRICS_ENABLE = new BooleanConfigKey(
+            "metrics.enable",
+            List.of(KeyType.CONFIG),
+            false);
+
     /**
      * Fuel drop threshold value. When fuel level drops from one position to another for more the value, an event is
      * generated.
@@ -531,6 +541,67 @@ public final class Keys {
             "database.saveEmpty",
             List.of(KeyType.CONFIG));
 
+    /**
+     * Store positions asynchronously in batches instead of one INSERT per position on the network thread. Positions
+     * continue through the pipeline only after their batch is stored and the generated ids are assigned.
+     */
+    public static final ConfigKey<Boolean> DATABASE_BATCH_ENABLE = new BooleanConfigKey(
+            "database.batch.enable",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Maximum number of positions written in a single batch. Default value is 500.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_SIZE = new IntegerConfigKey(
+            "database.batch.size",
+            List.of(KeyType.CONFIG),
+            500);
+
+    /**
+     * Maximum time in milliseconds a position can wait for its batch to fill up. Default value is 100 milliseconds.
+     */
+    public static final ConfigKey<Long> DATABASE_BATCH_DELAY = new LongConfigKey(
+            "database.batch.delay",
+            List.of(KeyType.CONFIG),
+            100L);
+
+    /**
+     * Capacity of the pending positions queue. When the queue is three quarters full, reading from device connections
+     * is paused until it drains to one quarter. If the queue is full, positions are stored synchronously. Default
+     * value is 20000.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_QUEUE_SIZE = new IntegerConfigKey(
+            "database.batch.queueSize",
+            List.of(KeyType.CONFIG),
+            20000);
+
+    /**
+     * Number of rows fetched from the database at a time when streaming large results, like position exports.
+     * Default value is 1000.
+     */
+    public static final ConfigKey<Integer> DATABASE_FETCH_SIZE = new IntegerConfigKey(
+            "database.fetchSize",
+            List.of(KeyType.CONFIG),
+            1000);
+
+    /**
+     * Maximum time in seconds a streaming query can keep its database connection, including the time a slow client
+     * takes to receive the data. The query is aborted when the limit is exceeded. Default value is 300.
+     */
+    public static final ConfigKey<Integer> DATABASE_STREAM_TIMEOUT = new IntegerConfigKey(
+            "database.streamTimeout",
+            List.of(KeyType.CONFIG),
+            300);
+
+    /**
+     * Maximum time in milliseconds device state changes, like last update time, latest position and motion or overspeed
+     * state, can be kept in memory before they are written to the database. Changes are written in periodic bulk
+     * updates, while status changes are written immediately. By default, every change is written immediately.
+     */
+    public static final ConfigKey<Long> DATABASE_DEVICE_UPDATE_DELAY = new LongConfigKey(
+            "database.deviceUpdateDelay",
+            List.of(KeyType.CONFIG));
+
     /**
      * Device limit for self registered users. Default value is -1, which indicates no limit.
      */
@@ -791,6 +862,25 @@ public final class Keys {
             List.of(KeyType.CONFIG),
             300000L);
 
+    /**
+     * WebSocket updates flush interval in milliseconds. Updates are collected and sent to each connection in batches,
+     * keeping only the latest position and device state within the interval. Default value is 250 milliseconds. Set
+     * to 0 to send every update immediately.
+     */
+    public static final ConfigKey<Long> WEB_SOCKET_FLUSH_INTERVAL = new LongConfigKey(
+            "web.socketFlushInterval",
+            List.of(KeyType.CONFIG),
+            250L);
+
+    /**
+     * Maximum number of unfinished WebSocket writes per connection. Connections that fall further behind are closed
+     * and clients have to reconnect. Default value is 16.
+     */
+    public static final ConfigKey<Integer> WEB_SOCKET_MAX_PENDING = new IntegerConfigKey(
+            "web.socketMaxPending",
+            List.of(KeyType.CONFIG),
+            16);
+
     /**
      * Authentication sessions timeout in seconds. By default no timeout.
      */
@@ -798,6 +888,15 @@ public final class Keys {
             "web.sessionTimeout",
             List.of(KeyType.CONFIG));
 
+    /**
+     * Time in seconds to keep API credentials authenticated with Basic or Bearer authorization header. It avoids
+     * password hashing and user lookup on every request. Default value is 60 seconds. Set to 0 to disable.
+     */
+    public static final ConfigKey<Integer> WEB_AUTHENTICATION_CACHE_TIMEOUT = new IntegerConfigKey(
+            "web.authenticationCacheTimeout",
+            List.of(KeyType.CONFIG),
+            60);
+
     /**
      * Enable database access console via '/console' URL. Use only for debugging. Never use in production.
      */
@@ -881,6 +980,51 @@ public final class Keys {
             List.of(KeyType.CONFIG),
             "positions");
 
+    /**
+     * Kafka producer batch size in bytes. Used with forwarding prefix, for example 'forward.kafka.batchSize' or
+     * 'event.forward.kafka.batchSize'. Default value is 16384.
+     */
+    public static final ConfigSuffix<Integer> KAFKA_BATCH_SIZE = new IntegerConfigSuffix(
+            ".kafka.batchSize",
+            List.of(KeyType.CONFIG),
+            16384);
+
+    /**
+     * Kafka producer linger time in milliseconds. Records are held for up to this time to be sent in a single batch.
+     * For example 'forward.kafka.linger'. Default value is 5 milliseconds.
+     */
+    public static final ConfigSuffix<Integer> KAFKA_LINGER = new IntegerConfigSuffix(
+            ".kafka.linger",
+            List.of(KeyType.CONFIG),
+            5);
+
+    /**
+     * Kafka producer compression type. Supported values are 'none', 'gzip', 'snappy', 'lz4' and 'zstd'. For example
+     * 'forward.kafka.compression'. Default value is 'none'.
+     */
+    public static final ConfigSuffix<String> KAFKA_COMPRESSION = new StringConfigSuffix(
+            ".kafka.compression",
+            List.of(KeyType.CONFIG),
+            "none");
+
+    /**
+     * Enable Kafka idempotent producer to avoid duplicate records on retries. For example 'forward.kafka.idempotence'.
+     * Default value is true.
+     */
+    public static final ConfigSuffix<Boolean> KAFKA_IDEMPOTENCE = new BooleanConfigSuffix(
+            ".kafka.idempotence",
+            List.of(KeyType.CONFIG),
+            true);
+
+    /**
+     * Position forwarding Kafka payload format. Supported values are 'json' and 'protobuf'. Protobuf payload follows
+     * the PositionData.proto schema. Default value is 'json'.
+     */
+    public static final ConfigKey<String> FORWARD_KAFKA_FORMAT = new StringConfigKey(
+            "forward.kafka.format",
+            List.of(KeyType.CONFIG),
+            "json");
+
     /**
      * URL to forward positions. Data is passed through URL parameters. For example, {uniqueId} for device identifier,
      * {latitude} and {longitude} for coordinates.
@@ -934,6 +1078,50 @@ public final class Keys {
             List.of(KeyType.CONFIG),
             100);
 
+    /**
+     * Directory for the forwarding spool. When set, forwarded positions and events are first appended to a log on
+     * disk and delivered from it by a background worker. Records are removed only after successful delivery, so
+     * undelivered data survives downstream outages and server restarts.
+     */
+    public static final ConfigKey<String> FORWARD_SPOOL_PATH = new StringConfigKey(
+            "forward.spool.path",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Size of a single spool segment file in bytes. Default value is 16 MB.
+     */
+    public static final ConfigKey<Integer> FORWARD_SPOOL_SEGMENT_SIZE = new IntegerConfigKey(
+            "forward.spool.segmentSize",
+            List.of(KeyType.CONFIG),
+            16 * 1024 * 1024);
+
+    /**
+     * Maximum disk space in bytes used by each spool. If the limit is reached, the oldest undelivered records are
+     * discarded. Default value is 1 GB.
+     */
+    public static final ConfigKey<Long> FORWARD_SPOOL_MAX_SIZE = new LongConfigKey(
+            "forward.spool.maxSize",
+            List.of(KeyType.CONFIG),
+            1024 * 1024 * 1024L);
+
+    /**
+     * Maximum number of spooled records delivered at once. Default value is 100.
+     */
+    public static final ConfigKey<Integer> FORWARD_SPOOL_BATCH_SIZE = new IntegerConfigKey(
+            "forward.spool.batchSize",
+            List.of(KeyType.CONFIG),
+            100);
+
+    /**
+     * Interval in milliseconds for syncing spool files to disk. Records written within the interval can be lost on
+     * operating system crash or power loss. Set to 0 to sync after every write and acknowledgement. Default value is
+     * 1000 milliseconds.
+     */
+    public static final ConfigKey<Long> FORWARD_SPOOL_SYNC_INTERVAL = new LongConfigKey(
+            "forward.spool.syncInterval",
+            List.of(KeyType.CONFIG),
+            1000L);
+
     /**
      * Events forwarding format. Available options are "json" and "kafka". Default is "json".
      */
@@ -1184,6 +1372,60 @@ public final class Keys {
             List.of(KeyType.CONFIG),
             15 * 60 * 1000L);
 
+    /**
+     * Capacity of the pending notifications queue of each notificator type. Notifications are sent by background
+     * workers, so a slow mail or SMS server doesn't delay position processing. If the queue is full, new
+     * notifications of that type are dropped. Default value is 1000.
+     */
+    public static final ConfigKey<Integer> NOTIFICATOR_QUEUE_SIZE = new IntegerConfigKey(
+            "notificator.queueSize",
+            List.of(KeyType.CONFIG),
+            1000);
+
+    /**
+     * Number of worker threads for the notificator type. For example 'notificator.mail.threads'. Default value is 1.
+     */
+    public static final ConfigSuffix<Integer> NOTIFICATOR_THREADS = new IntegerConfigSuffix(
+            ".threads",
+            List.of(KeyType.CONFIG),
+            1);
+
+    /**
+     * Maximum number of notifications per second for the notificator type. For example 'notificator.sms.rateLimit'.
+     * Zero means no limit, which is the default.
+     */
+    public static final ConfigSuffix<Integer> NOTIFICATOR_RATE_LIMIT = new IntegerConfigSuffix(
+            ".rateLimit",
+            List.of(KeyType.CONFIG),
+            0);
+
+    /**
+     * Time window in seconds for merging duplicate notifications of the notificator type. A notification of the same
+     * event type for the same user and device is skipped if one was already sent within the window. For example
+     * 'notificator.mail.coalesceWindow'. Disabled by default.
+     */
+    public static final ConfigSuffix<Long> NOTIFICATOR_COALESCE_WINDOW = new LongConfigSuffix(
+            ".coalesceWindow",
+            List.of(KeyType.CONFIG),
+            0L);
+
+    /**
+     * Number of times a failed notification is retried. Default value is 3.
+     */
+    public static final ConfigKey<Integer> NOTIFICATOR_RETRY_COUNT = new IntegerConfigKey(
+            "notificator.retry.count",
+            List.of(KeyType.CONFIG),
+            3);
+
+    /**
+     * Delay in milliseconds before the first notification retry. The delay is doubled for each subsequent retry.
+     * Default value is 5000 milliseconds.
+     */
+    public static final ConfigKey<Long> NOTIFICATOR_RETRY_DELAY = new LongConfigKey(
+            "notificator.retry.delay",
+            List.of(KeyType.CONFIG),
+            5000L);
+
     /**
      * Traccar notification API key.
      */
@@ -1517,6 +1759,32 @@ public final class Keys {
             "coordinates.maxError",
             List.of(KeyType.CONFIG));
 
+    /**
+     * Process decoded positions on a separate thread pool instead of the network threads. Network threads only decode
+     * messages and send acknowledgements. Positions are distributed between threads by device, so positions of the
+     * same device are still processed in order.
+     */
+    public static final ConfigKey<Boolean> PROCESSING_EXECUTOR_ENABLE = new BooleanConfigKey(
+            "processing.executor.enable",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Number of position processing threads. By default, twice the number of available processors is used.
+     */
+    public static final ConfigKey<Integer> PROCESSING_EXECUTOR_THREADS = new IntegerConfigKey(
+            "processing.executor.threads",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Capacity of each processing thread queue. When a queue is three quarters full, reading from the connections
+     * that submitted to it is paused until it drains to one quarter. If the queue is full, the submitting thread waits
+     * for room, which only happens for datagram protocols that can't be paused. Default value is 10000.
+     */
+    public static final ConfigKey<Integer> PROCESSING_EXECUTOR_QUEUE_SIZE = new IntegerConfigKey(
+            "processing.executor.queueSize",
+            List.of(KeyType.CONFIG),
+            10000);
+
     /**
      * Enable to save device IP addresses information. Disabled by default.
      */
@@ -1626,6 +1894,89 @@ public final class Keys {
             "geocoder.cacheSize",
             List.of(KeyType.CONFIG));
 
+    /**
+     * Number of decimal places of latitude and longitude used for geocoding cache keys. All coordinates within the
+     * same grid cell share a cached address. Default value 4 gives cells of about 11 meters.
+     */
+    public static final ConfigKey<Integer> GEOCODER_CACHE_PRECISION = new IntegerConfigKey(
+            "geocoder.cachePrecision",
+            List.of(KeyType.CONFIG),
+            4);
+
+    /**
+     * Geocoding cache expiration time in seconds. By default cached addresses never expire.
+     */
+    public static final ConfigKey<Long> GEOCODER_CACHE_EXPIRATION = new LongConfigKey(
+            "geocoder.cacheExpiration",
+            List.of(KeyType.CONFIG),
+            0L);
+
+    /**
+     * Optional file for persisting geocoding cache between restarts.
+     */
+    public static final ConfigKey<String> GEOCODER_CACHE_FILE = new StringConfigKey(
+            "geocoder.cacheFile",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Comma separated list of fallback geocoder types. Fallback providers are tried in order if the main provider
+     * fails to return an address. Provider specific parameters use the type as a prefix, for example
+     * 'geocoder.nominatim.url' and 'geocoder.nominatim.key'.
+     */
+    public static final ConfigKey<String> GEOCODER_FALLBACK = new StringConfigKey(
+            "geocoder.fallback",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Fallback geocoder API URL address. For example 'geocoder.nominatim.url'.
+     */
+    public static final ConfigSuffix<String> GEOCODER_PROVIDER_URL = new StringConfigSuffix(
+            ".url",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Fallback geocoder API key. For example 'geocoder.nominatim.key'.
+     */
+    public static final ConfigSuffix<String> GEOCODER_PROVIDER_KEY = new StringConfigSuffix(
+            ".key",
+            List.of(KeyType.CONFIG));
+
+    /**
+     * Maximum number of requests per second for a geocoder provider. Use 'geocoder.rateLimit' for the main provider
+     * and the type prefix for fallback providers, for example 'geocoder.nominatim.rateLimit'. Zero means no limit,
+     * which is the default.
+     */
+    public static final ConfigSuffix<Integer> GEOCODER_RATE_LIMIT = new IntegerConfigSuffix(
+            ".rateLimit",
+            List.of(KeyType.CONFIG),
+            0);
+
+    /**
+     * Number of concurrent geocoder requests. Default value is 4.
+     */
+    public static final ConfigKey<Integer> GEOCODER_THREADS = new IntegerConfigKey(
+            "geocoder.threads",
+            List.of(KeyType.CONFIG),
+            4);
+
+    /**
+     * Maximum number of queued geocoder requests. Positions that don't fit into the queue are processed without an
+     * address. Default value is 1000.
+     */
+    public static final ConfigKey<Integer> GEOCODER_QUEUE_SIZE = new IntegerConfigKey(
+            "geocoder.queueSize",
+            List.of(KeyType.CONFIG),
+            1000);
+
+    /**
+     * Maximum time in seconds to wait for an address in reports and notifications. Lookups that take longer are
+     * completed without an address. Default value is 10 seconds.
+     */
+    public static final ConfigKey<Integer> GEOCODER_TIMEOUT = new IntegerConfigKey(
+            "geocoder.timeout",
+            List.of(KeyType.CONFIG),
+            10);
+
     /**
      * Disable automatic reverse geocoding requests for all positions.
      */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -40,7 +40,10 @@ import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -53,17 +56,23 @@ public class CommandsManager implements BroadcastInterface {
     private final BroadcastService broadcastService;
     private final NotificationManager notificationManager;
 
+    private final Set<Long> queuedDevices = ConcurrentHashMap.newKeySet();
+
     @Inject
     public CommandsManager(
             Storage storage, ServerManager serverManager, @Nullable SmsManager smsManager,
             ConnectionManager connectionManager, BroadcastService broadcastService,
-            NotificationManager notificationManager) {
+            NotificationManager notificationManager) throws StorageException {
         this.storage = storage;
         this.serverManager = serverManager;
         this.smsManager = smsManager;
         this.connectionManager = connectionManager;
         this.broadcastService = broadcastService;
         this.notificationManager = notificationManager;
+        for (QueuedCommand queuedCommand : storage.getObjects(
+                QueuedCommand.class, new Request(new Columns.Include("deviceId")))) {
+            queuedDevices.add(queuedCommand.getDeviceId());
+        }
         broadcastService.registerListener(this);
     }
 
@@ -92,6 +101,7 @@ public class CommandsManager implements BroadcastInterface {
             } else {
                 QueuedCommand queuedCommand = QueuedCommand.fromCommand(command);
                 queuedCommand.setId(storage.addObject(queuedCommand, new Request(new Columns.Exclude("id"))));
+                queuedDevices.add(deviceId);
                 broadcastService.updateCommand(true, deviceId);
                 return queuedCommand;
             }
@@ -104,11 +114,18 @@ public class CommandsManager implements BroadcastInterface {
     }
 
     public Collection<Command> readQueuedCommands(long deviceId, int count) {
+        // removed before reading, so a command queued concurrently marks the device again
+        if (!queuedDevices.remove(deviceId)) {
+            return new LinkedList<>();
+        }
         try {
             var commands = storage.getObjects(QueuedCommand.class, new Request(
                     new Columns.All(),
                     new Condition.Equals("deviceId", deviceId),
                     new Order("id", false, count)));
+            if (commands.size() >= count) {
+                queuedDevices.add(deviceId);
+            }
             Map<Event, Position> events = new HashMap<>();
             for (var command : commands) {
                 storage.removeObject(QueuedCommand.class, new Request(
@@ -121,6 +138,7 @@ public class CommandsManager implements BroadcastInterface {
             notificationManager.updateEvents(events);
             return commands.stream().map(QueuedCommand::toCommand).collect(Collectors.toList());
         } catch (StorageException e) {
+            queuedDevices.add(deviceId);
             throw new RuntimeException(e);
         }
     }
@@ -128,6 +146,7 @@ public class CommandsManager implements BroadcastInterface {
     @Override
     public void updateCommand(boolean local, long deviceId) {
         if (!local) {
+            queuedDevices.add(deviceId);
             DeviceSession deviceSession = connectionManager.getDeviceSession(deviceId);
             if (deviceSession != null && deviceSession.supportsLiveCommands()) {
                 for (Command command : readQueuedCommands(deviceId)) {
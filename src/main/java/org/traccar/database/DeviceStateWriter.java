@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.storage.ModelAccessors;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Request;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces device state updates. Changed columns are copied into a pending device and written in periodic bulk
+ * updates, so frequent changes like the last update time cost one database write per device per interval. Writes
+ * are serialized, so an older pending state can never be written after a newer immediate one.
+ */
+public class DeviceStateWriter implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceStateWriter.class);
+
+    private static final class Pending {
+        private final Device device = new Device();
+        private final Set<String> columns = new TreeSet<>();
+    }
+
+    private final Storage storage;
+    private final long delay;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    private volatile ScheduledExecutorService executor;
+
+    private final LongAdder updateCount = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+
+    public DeviceStateWriter(Config config, Storage storage) {
+        this.storage = storage;
+        delay = config.getLong(Keys.DATABASE_DEVICE_UPDATE_DELAY);
+    }
+
+    /**
+     * Queue device columns for writing. If immediate is set, the columns are written right away, together with any
+     * pending changes for the same device.
+     */
+    public void update(Device device, boolean immediate, String... columns) {
+        updateCount.increment();
+        pending.compute(device.getId(), (id, value) -> {
+            if (value == null) {
+                value = new Pending();
+                value.device.setId(id);
+            }
+            for (String column : columns) {
+                ModelAccessors.getPropertyCopier(Device.class, column).accept(device, value.device);
+                value.columns.add(column);
+            }
+            return value;
+        });
+        if (immediate || executor == null) {
+            synchronized (writeLock) {
+                Pending value = pending.remove(device.getId());
+                if (value != null) {
+                    write(List.of(value.device), value.columns);
+                }
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getUpdateCount() {
+        return updateCount.sum();
+    }
+
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    private void write(List<Device> devices, Set<String> columns) {
+        try {
+            if (devices.size() == 1) {
+                storage.updateObject(devices.get(0), new Request(
+                        new Columns.Include(columns.toArray(new String[0])),
+                        new Condition.Equals("id", devices.get(0).getId())));
+            } else {
+                storage.updateObjectBatch(devices, new Columns.Include(columns.toArray(new String[0])));
+            }
+            writeCount.add(devices.size());
+        } catch (StorageException e) {
+            LOGGER.warn("Update device state error", e);
+        }
+    }
+
+    private void flush() {
+        synchronized (writeLock) {
+            Map<Set<String>, List<Device>> groups = new HashMap<>();
+            for (Long deviceId : pending.keySet()) {
+                Pending value = pending.remove(deviceId);
+                if (value != null) {
+                    groups.computeIfAbsent(value.columns, key -> new ArrayList<>()).add(value.device);
+                }
+            }
+            groups.forEach((columns, devices) -> write(devices, columns));
+        }
+    }
+
+    @Override
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Device state flush error", e);
+            }
+        }, delay, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            executor = null;
+        }
+        flush();
+    }
+
+}
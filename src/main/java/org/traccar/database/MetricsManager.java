@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.traccar.EventLoopGroupFactory;
+import org.traccar.ProcessingExecutor;
+import org.traccar.api.AsyncSocketDispatcher;
+import org.traccar.geocoder.GeocoderCache;
+import org.traccar.model.Statistics;
+import org.traccar.notification.NotificationDispatcher;
+
+import jakarta.annotation.Nullable;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live snapshot of server counters. Includes current day statistics, the state of processing queues, database
+ * connection pool and network event loops. Times are reported in nanoseconds.
+ */
+@Singleton
+public class MetricsManager {
+
+    private static final Set<String> COUNTERS = Set.of(
+            "requests", "messagesReceived", "messagesStored", "mailSent", "smsSent",
+            "geocoderRequests", "geolocationRequests",
+            "positionBatch.batches", "positionBatch.overflow", "positionBatch.positions", "positionBatch.flushTime",
+            "deviceState.updates", "deviceState.writes",
+            "processing.tasks", "processing.taskTime",
+            "geocoderCache.hits", "geocoderCache.misses", "geocoderCache.coalesced",
+            "webSocket.dropped");
+
+    private static final Set<String> NOTIFICATOR_COUNTERS = Set.of(
+            "sent", "failed", "dropped", "coalesced", "latency");
+
+    private final StatisticsManager statisticsManager;
+    private final DataSource dataSource;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PositionBatchWriter positionBatchWriter;
+    private final DeviceStateWriter deviceStateWriter;
+    private final ProcessingExecutor processingExecutor;
+    private final GeocoderCache geocoderCache;
+    private final AsyncSocketDispatcher asyncSocketDispatcher;
+
+    @Inject
+    public MetricsManager(
+            StatisticsManager statisticsManager, DataSource dataSource, NotificationDispatcher notificationDispatcher,
+            @Nullable PositionBatchWriter positionBatchWriter, @Nullable DeviceStateWriter deviceStateWriter,
+            @Nullable ProcessingExecutor processingExecutor, @Nullable GeocoderCache geocoderCache,
+            AsyncSocketDispatcher asyncSocketDispatcher) {
+        this.statisticsManager = statisticsManager;
+        this.dataSource = dataSource;
+        this.notificationDispatcher = notificationDispatcher;
+        this.positionBatchWriter = positionBatchWriter;
+        this.deviceStateWriter = deviceStateWriter;
+        this.processingExecutor = processingExecutor;
+        this.geocoderCache = geocoderCache;
+        this.asyncSocketDispatcher = asyncSocketDispatcher;
+    }
+
+    /**
+     * Check if the metric is a running total rather than a current value. Daily statistics totals are reset at the
+     * end of the day, which monitoring systems handle as a counter reset.
+     */
+    public static boolean isCounter(String key) {
+        if (key.startsWith("notificator.")) {
+            return NOTIFICATOR_COUNTERS.contains(key.substring(key.lastIndexOf('.') + 1));
+        }
+        return COUNTERS.contains(key);
+    }
+
+    public Map<String, Number> getMetrics() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+
+        Statistics statistics = statisticsManager.getStatistics();
+        metrics.put("activeUsers", statistics.getActiveUsers());
+        metrics.put("activeDevices", statistics.getActiveDevices());
+        metrics.put("requests", statistics.getRequests());
+        metrics.put("messagesReceived", statistics.getMessagesReceived());
+        metrics.put("messagesStored", statistics.getMessagesStored());
+        metrics.put("mailSent", statistics.getMailSent());
+        metrics.put("smsSent", statistics.getSmsSent());
+        metrics.put("geocoderRequests", statistics.getGeocoderRequests());
+        metrics.put("geolocationRequests", statistics.getGeolocationRequests());
+
+        if (positionBatchWriter != null) {
+            metrics.put("positionBatch.queueSize", positionBatchWriter.getQueueSize());
+            metrics.put("positionBatch.batches", positionBatchWriter.getBatchCount());
+            metrics.put("positionBatch.overflow", positionBatchWriter.getOverflowCount());
+            metrics.put("positionBatch.positions", positionBatchWriter.getBatchPositions());
+            metrics.put("positionBatch.lastBatchSize", positionBatchWriter.getLastBatchSize());
+            metrics.put("positionBatch.flushTime", positionBatchWriter.getFlushTime());
+            metrics.put("positionBatch.lastFlushTime", positionBatchWriter.getLastFlushTime());
+        }
+
+        if (deviceStateWriter != null) {
+            metrics.put("deviceState.pending", deviceStateWriter.getPendingCount());
+            metrics.put("deviceState.updates", deviceStateWriter.getUpdateCount());
+            metrics.put("deviceState.writes", deviceStateWriter.getWriteCount());
+        }
+
+        if (processingExecutor != null) {
+            int queueSize = 0;
+            for (int size : processingExecutor.getQueueSizes()) {
+                queueSize += size;
+            }
+            metrics.put("processing.queueSize", queueSize);
+            metrics.put("processing.tasks", processingExecutor.getTaskCount());
+            metrics.put("processing.taskTime", processingExecutor.getTaskTime());
+        }
+
+        if (geocoderCache != null) {
+            metrics.put("geocoderCache.size", geocoderCache.getSize());
+            metrics.put("geocoderCache.hits", geocoderCache.getHits());
+            metrics.put("geocoderCache.misses", geocoderCache.getMisses());
+            metrics.put("geocoderCache.coalesced", geocoderCache.getCoalesced());
+        }
+
+        metrics.put("webSocket.sessions", asyncSocketDispatcher.getSessionCount());
+        metrics.put("webSocket.dropped", asyncSocketDispatcher.getDropped());
+
+        if (dataSource instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataSource).getHikariPoolMXBean();
+            if (pool != null) {
+                metrics.put("database.activeConnections", pool.getActiveConnections());
+                metrics.put("database.idleConnections", pool.getIdleConnections());
+                metrics.put("database.totalConnections", pool.getTotalConnections());
+                metrics.put("database.pendingThreads", pool.getThreadsAwaitingConnection());
+            }
+        }
+
+        int pendingTasks = 0;
+        for (EventExecutor executor : EventLoopGroupFactory.getWorkerGroup()) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                pendingTasks += ((SingleThreadEventExecutor) executor).pendingTasks();
+            }
+        }
+        metrics.put("eventLoop.pendingTasks", pendingTasks);
+
+        for (NotificationDispatcher.NotificatorQueue queue : notificationDispatcher.getQueues().values()) {
+            String prefix = "notificator." + queue.getType() + ".";
+            metrics.put(prefix + "queueSize", queue.getQueueSize());
+            metrics.put(prefix + "sent", queue.getSent());
+            metrics.put(prefix + "failed", queue.getFailed());
+            metrics.put(prefix + "dropped", queue.getDropped());
+            metrics.put(prefix + "coalesced", queue.getCoalesced());
+            metrics.put(prefix + "latency", queue.getLatency());
+        }
+
+        return metrics;
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 - 2018 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -30,8 +30,7 @@ import org.traccar.model.Event;
 import org.traccar.model.Geofence;
 import org.traccar.model.Maintenance;
 import org.traccar.model.Position;
-import org.traccar.notification.MessageException;
-import org.traccar.notification.NotificatorManager;
+import org.traccar.notification.NotificationDispatcher;
 import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
@@ -54,7 +53,7 @@ public class NotificationManager {
     private final Storage storage;
     private final CacheManager cacheManager;
     private final EventForwarder eventForwarder;
-    private final NotificatorManager notificatorManager;
+    private final NotificationDispatcher notificationDispatcher;
     private final Geocoder geocoder;
 
     private final boolean geocodeOnRequest;
@@ -63,11 +62,11 @@ public class NotificationManager {
     @Inject
     public NotificationManager(
             Config config, Storage storage, CacheManager cacheManager, @Nullable EventForwarder eventForwarder,
-            NotificatorManager notificatorManager, @Nullable Geocoder geocoder) {
+            NotificationDispatcher notificationDispatcher, @Nullable Geocoder geocoder) {
         this.storage = storage;
         this.cacheManager = cacheManager;
         this.eventForwarder = eventForwarder;
-        this.notificatorManager = notificatorManager;
+        this.notificationDispatcher = notificationDispatcher;
         this.geocoder = geocoder;
         geocodeOnRequest = config.getBoolean(Keys.GEOCODER_ON_REQUEST);
         timeThreshold = config.getLong(Keys.NOTIFICATOR_TIME_THRESHOLD);
@@ -124,11 +123,7 @@ public class NotificationManager {
             notifications.forEach(notification -> {
                 cacheManager.getNotificationUsers(notification.getId(), event.getDeviceId()).forEach(user -> {
                     for (String notificator : notification.getNotificatorsTypes()) {
-                        try {
-                            notificatorManager.getNotificator(notificator).send(notification, user, event, position);
-                        } catch (MessageException exception) {
-                            LOGGER.warn("Notification failed", exception);
-                        }
+                        notificationDispatcher.dispatch(notificator, notification, user, event, position);
                     }
                 });
             });
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind position storage. Positions from all channels are collected into a bounded queue and inserted in
+ * batches by a single writer thread, so the order of positions is preserved. Once a batch is stored, each position
+ * gets its generated id and continues through the pipeline of the channel it came from.
+ * <p>
+ * When the queue fills up, connection oriented channels stop reading until the writer catches up. Datagram channels
+ * are shared by many devices, so they are never paused. If the queue stays full for longer than the batch delay, the
+ * position is handed back to the caller to store synchronously, so the network thread is never blocked for long. Under
+ * such overload a position can be stored ahead of earlier positions that are still queued.
+ */
+public class PositionBatchWriter implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionBatchWriter.class);
+
+    private static final class Entry {
+        private final ChannelHandlerContext context;
+        private final Position position;
+
+        private Entry(ChannelHandlerContext context, Position position) {
+            this.context = context;
+            this.position = position;
+        }
+    }
+
+    private final Storage storage;
+
+    private final int batchSize;
+    private final long batchDelay;
+    private final int pauseThreshold;
+    private final int resumeThreshold;
+
+    private final BlockingQueue<Entry> queue;
+    private final Set<Channel> pausedChannels = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService service = Executors.newSingleThreadExecutor();
+    private volatile boolean running;
+
+    private final LongAdder overflowCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder batchPositions = new LongAdder();
+    private final LongAdder flushTime = new LongAdder();
+    private final AtomicLong lastBatchSize = new AtomicLong();
+    private final AtomicLong lastFlushTime = new AtomicLong();
+
+    public PositionBatchWriter(Config config, Storage storage) {
+        this.storage = storage;
+        batchSize = config.getInteger(Keys.DATABASE_BATCH_SIZE);
+        batchDelay = config.getLong(Keys.DATABASE_BATCH_DELAY);
+        int queueSize = config.getInteger(Keys.DATABASE_BATCH_QUEUE_SIZE);
+        pauseThreshold = queueSize * 3 / 4;
+        resumeThreshold = queueSize / 4;
+        queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * Queue position for storage. Waits up to the batch delay for room in the queue. Returns false if the writer is
+     * stopped or the queue is full, in which case the caller is responsible for storing the position.
+     */
+    public boolean write(ChannelHandlerContext context, Position position) {
+        if (!running) {
+            return false;
+        }
+        Entry entry = new Entry(context, position);
+        try {
+            if (!queue.offer(entry) && !queue.offer(entry, batchDelay, TimeUnit.MILLISECONDS)) {
+                overflowCount.increment();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (!running && queue.remove(entry)) {
+            return false; // writer might have exited before the position was queued
+        }
+        Channel channel = context.channel();
+        if (queue.size() >= pauseThreshold && !(channel instanceof DatagramChannel)) {
+            if (pausedChannels.add(channel)) {
+                channel.config().setAutoRead(false);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Number of positions handed back for synchronous storage because the queue was full.
+     */
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getBatchPositions() {
+        return batchPositions.sum();
+    }
+
+    public long getLastBatchSize() {
+        return lastBatchSize.get();
+    }
+
+    /**
+     * Total time spent writing batches in nanoseconds.
+     */
+    public long getFlushTime() {
+        return flushTime.sum();
+    }
+
+    /**
+     * Duration of the last batch write in nanoseconds.
+     */
+    public long getLastFlushTime() {
+        return lastFlushTime.get();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        service.submit(this::run);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        service.shutdown();
+        try {
+            if (!service.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOGGER.warn("Position writer stopped with {} pending positions", queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(batchDelay, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay);
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Position writer error", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Entry> batch) {
+        List<Position> positions = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            positions.add(entry.position);
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            long[] ids = storage.addObjectBatch(positions, new Request(new Columns.Exclude("id")));
+            for (int i = 0; i < ids.length && i < positions.size(); i++) {
+                positions.get(i).setId(ids[i]);
+            }
+        } catch (Exception error) {
+            LOGGER.warn("Failed to store positions", error);
+        }
+        long duration = System.nanoTime() - startTime;
+
+        batchCount.increment();
+        batchPositions.add(batch.size());
+        flushTime.add(duration);
+        lastBatchSize.set(batch.size());
+        lastFlushTime.set(duration);
+
+        for (Entry entry : batch) {
+            entry.context.fireChannelRead(entry.position);
+        }
+
+        if (!pausedChannels.isEmpty() && queue.size() <= resumeThreshold) {
+            for (Channel channel : pausedChannels) {
+                channel.config().setAutoRead(true);
+                pausedChannels.remove(channel);
+            }
+        }
+    }
+
+}
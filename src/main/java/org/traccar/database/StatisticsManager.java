@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,39 +34,50 @@ import jakarta.inject.Singleton;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Form;
-import java.util.Calendar;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 @Singleton
 public class StatisticsManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StatisticsManager.class);
 
-    private static final int SPLIT_MODE = Calendar.DAY_OF_MONTH;
+    private static final class DeviceCounter {
+
+        private volatile String protocol;
+        private final LongAdder messages = new LongAdder();
+
+    }
+
+    private static final class Counters {
+
+        private final Set<Long> users = ConcurrentHashMap.newKeySet();
+        private final Map<Long, DeviceCounter> devices = new ConcurrentHashMap<>();
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder messagesReceived = new LongAdder();
+        private final LongAdder messagesStored = new LongAdder();
+        private final LongAdder mailSent = new LongAdder();
+        private final LongAdder smsSent = new LongAdder();
+        private final LongAdder geocoderRequests = new LongAdder();
+        private final LongAdder geolocationRequests = new LongAdder();
+
+    }
 
     private final Config config;
     private final Storage storage;
     private final Client client;
     private final ObjectMapper objectMapper;
 
-    private final AtomicInteger lastUpdate = new AtomicInteger(Calendar.getInstance().get(SPLIT_MODE));
-
-    private final Set<Long> users = new HashSet<>();
-    private final Map<Long, String> deviceProtocols = new HashMap<>();
-    private final Map<Long, Integer> deviceMessages = new HashMap<>();
-
-    private int requests;
-    private int messagesReceived;
-    private int messagesStored;
-    private int mailSent;
-    private int smsSent;
-    private int geocoderRequests;
-    private int geolocationRequests;
+    private final Object splitLock = new Object();
+    private volatile long nextSplit;
+    private volatile Counters counters = new Counters();
 
     @Inject
     public StatisticsManager(Config config, Storage storage, Client client, ObjectMapper objectMapper) {
@@ -74,132 +85,157 @@ public class StatisticsManager {
         this.storage = storage;
         this.client = client;
         this.objectMapper = objectMapper;
+        nextSplit = nextDayStart();
     }
 
-    private void checkSplit() {
-        int currentUpdate = Calendar.getInstance().get(SPLIT_MODE);
-        if (lastUpdate.getAndSet(currentUpdate) != currentUpdate) {
-            Statistics statistics = new Statistics();
-
-            synchronized (this) {
-                statistics.setCaptureTime(new Date());
-                statistics.setActiveUsers(users.size());
-                statistics.setActiveDevices(deviceProtocols.size());
-                statistics.setRequests(requests);
-                statistics.setMessagesReceived(messagesReceived);
-                statistics.setMessagesStored(messagesStored);
-                statistics.setMailSent(mailSent);
-                statistics.setSmsSent(smsSent);
-                statistics.setGeocoderRequests(geocoderRequests);
-                statistics.setGeolocationRequests(geolocationRequests);
-                if (!deviceProtocols.isEmpty()) {
-                    Map<String, Integer> protocols = new HashMap<>();
-                    for (String protocol : deviceProtocols.values()) {
-                        protocols.compute(protocol, (key, count) -> count != null ? count + 1 : 1);
-                    }
-                    statistics.setProtocols(protocols);
-                }
+    private static long nextDayStart() {
+        return LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Current day counters. The day boundary is precomputed, so the common path is a single time comparison.
+     */
+    private Counters current() {
+        if (System.currentTimeMillis() >= nextSplit) {
+            split();
+        }
+        return counters;
+    }
 
-                statistics.set("modern", config.getString(Keys.WEB_PATH).contains("modern"));
-
-                users.clear();
-                deviceProtocols.clear();
-                deviceMessages.clear();
-                requests = 0;
-                messagesReceived = 0;
-                messagesStored = 0;
-                mailSent = 0;
-                smsSent = 0;
-                geocoderRequests = 0;
-                geolocationRequests = 0;
+    private static int toInt(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+
+    private Statistics createStatistics(Counters counters) {
+        Statistics statistics = new Statistics();
+        statistics.setCaptureTime(new Date());
+        statistics.setActiveUsers(counters.users.size());
+        statistics.setActiveDevices(counters.devices.size());
+        statistics.setRequests(toInt(counters.requests.sum()));
+        statistics.setMessagesReceived(toInt(counters.messagesReceived.sum()));
+        statistics.setMessagesStored(toInt(counters.messagesStored.sum()));
+        statistics.setMailSent(toInt(counters.mailSent.sum()));
+        statistics.setSmsSent(toInt(counters.smsSent.sum()));
+        statistics.setGeocoderRequests(toInt(counters.geocoderRequests.sum()));
+        statistics.setGeolocationRequests(toInt(counters.geolocationRequests.sum()));
+        if (!counters.devices.isEmpty()) {
+            Map<String, Integer> protocols = new HashMap<>();
+            for (DeviceCounter device : counters.devices.values()) {
+                if (device.protocol != null) {
+                    protocols.merge(device.protocol, 1, Integer::sum);
+                }
             }
+            statistics.setProtocols(protocols);
+        }
+        statistics.set("modern", config.getString(Keys.WEB_PATH).contains("modern"));
+        return statistics;
+    }
 
-            try {
-                storage.addObject(statistics, new Request(new Columns.Exclude("id")));
-            } catch (StorageException e) {
-                LOGGER.warn("Error saving statistics", e);
+    private void split() {
+        Counters previous;
+        synchronized (splitLock) {
+            if (System.currentTimeMillis() < nextSplit) {
+                return;
             }
+            previous = counters;
+            counters = new Counters();
+            nextSplit = nextDayStart();
+        }
 
-            String url = config.getString(Keys.SERVER_STATISTICS);
-            if (url != null) {
-                String time = DateUtil.formatDate(statistics.getCaptureTime());
-
-                Form form = new Form();
-                form.param("version", getClass().getPackage().getImplementationVersion());
-                form.param("captureTime", time);
-                form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
-                form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
-                form.param("requests", String.valueOf(statistics.getRequests()));
-                form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
-                form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
-                form.param("mailSent", String.valueOf(statistics.getMailSent()));
-                form.param("smsSent", String.valueOf(statistics.getSmsSent()));
-                form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
-                form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
-                if (statistics.getProtocols() != null) {
-                    try {
-                        form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
-                    } catch (JsonProcessingException e) {
-                        LOGGER.warn("Failed to serialize protocols", e);
-                    }
+        Statistics statistics = createStatistics(previous);
+
+        try {
+            storage.addObject(statistics, new Request(new Columns.Exclude("id")));
+        } catch (StorageException e) {
+            LOGGER.warn("Error saving statistics", e);
+        }
+
+        String url = config.getString(Keys.SERVER_STATISTICS);
+        if (url != null) {
+            String time = DateUtil.formatDate(statistics.getCaptureTime());
+
+            Form form = new Form();
+            form.param("version", getClass().getPackage().getImplementationVersion());
+            form.param("captureTime", time);
+            form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
+            form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
+            form.param("requests", String.valueOf(statistics.getRequests()));
+            form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
+            form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
+            form.param("mailSent", String.valueOf(statistics.getMailSent()));
+            form.param("smsSent", String.valueOf(statistics.getSmsSent()));
+            form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
+            form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
+            if (statistics.getProtocols() != null) {
+                try {
+                    form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Failed to serialize protocols", e);
                 }
-                if (!statistics.getAttributes().isEmpty()) {
-                    try {
-                        form.param("attributes", objectMapper.writeValueAsString(statistics.getAttributes()));
-                    } catch (JsonProcessingException e) {
-                        LOGGER.warn("Failed to serialize attributes", e);
-                    }
+            }
+            if (!statistics.getAttributes().isEmpty()) {
+                try {
+                    form.param("attributes", objectMapper.writeValueAsString(statistics.getAttributes()));
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Failed to serialize attributes", e);
                 }
-
-                client.target(url).request().async().post(Entity.form(form));
             }
+
+            client.target(url).request().async().post(Entity.form(form));
         }
     }
 
-    public synchronized void registerRequest(long userId) {
-        checkSplit();
-        requests += 1;
-        if (userId != 0 && userId != ServiceAccountUser.ID) {
-            users.add(userId);
+    /**
+     * Live statistics for the current day. The returned object is not stored.
+     */
+    public Statistics getStatistics() {
+        return createStatistics(current());
+    }
+
+    public void registerRequest(long userId) {
+        Counters counters = current();
+        counters.requests.increment();
+        if (userId != 0 && userId != ServiceAccountUser.ID && !counters.users.contains(userId)) {
+            counters.users.add(userId);
         }
     }
 
-    public synchronized void registerMessageReceived() {
-        checkSplit();
-        messagesReceived += 1;
+    public void registerMessageReceived() {
+        current().messagesReceived.increment();
     }
 
-    public synchronized void registerMessageStored(long deviceId, String protocol) {
-        checkSplit();
-        messagesStored += 1;
+    public void registerMessageStored(long deviceId, String protocol) {
+        Counters counters = current();
+        counters.messagesStored.increment();
         if (deviceId != 0) {
-            deviceProtocols.put(deviceId, protocol);
-            deviceMessages.merge(deviceId, 1, Integer::sum);
+            DeviceCounter device = counters.devices.get(deviceId);
+            if (device == null) {
+                device = counters.devices.computeIfAbsent(deviceId, key -> new DeviceCounter());
+            }
+            device.protocol = protocol;
+            device.messages.increment();
         }
     }
 
-    public synchronized int messageStoredCount(long deviceId) {
-        return deviceMessages.getOrDefault(deviceId, 0);
+    public int messageStoredCount(long deviceId) {
+        DeviceCounter device = current().devices.get(deviceId);
+        return device != null ? toInt(device.messages.sum()) : 0;
     }
 
-    public synchronized void registerMail() {
-        checkSplit();
-        mailSent += 1;
+    public void registerMail() {
+        current().mailSent.increment();
     }
 
-    public synchronized void registerSms() {
-        checkSplit();
-        smsSent += 1;
+    public void registerSms() {
+        current().smsSent.increment();
     }
 
-    public synchronized void registerGeocoderRequest() {
-        checkSplit();
-        geocoderRequests += 1;
+    public void registerGeocoderRequest() {
+        current().geocoderRequests.increment();
     }
 
-    public synchronized void registerGeolocationRequest() {
-        checkSplit();
-        geolocationRequests += 1;
+    public void registerGeolocationRequest() {
+        current().geolocationRequests.increment();
     }
 
 }
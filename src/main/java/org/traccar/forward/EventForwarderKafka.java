@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,29 +17,22 @@ package org.traccar.forward;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.kafka.clients.producer.KafkaProducer;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 
-import java.util.Properties;
-
 public class EventForwarderKafka implements EventForwarder {
 
-    private final Producer<String, String> producer;
-    private final ObjectMapper objectMapper;
+    private final Producer<String, byte[]> producer;
+    private final ObjectWriter objectWriter;
 
     private final String topic;
 
     public EventForwarderKafka(Config config, ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
-        Properties properties = new Properties();
-        properties.put("bootstrap.servers", config.getString(Keys.EVENT_FORWARD_URL));
-        properties.put("acks", "all");
-        properties.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        properties.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        producer = new KafkaProducer<>(properties);
+        producer = KafkaProducerUtil.createProducer(config, "event.forward", config.getString(Keys.EVENT_FORWARD_URL));
+        objectWriter = objectMapper.writerFor(EventData.class);
         topic = config.getString(Keys.EVENT_FORWARD_TOPIC);
     }
 
@@ -47,10 +40,10 @@ public class EventForwarderKafka implements EventForwarder {
     public void forward(EventData eventData, ResultHandler resultHandler) {
         try {
             String key = Long.toString(eventData.getDevice().getId());
-            String value = objectMapper.writeValueAsString(eventData);
-            producer.send(new ProducerRecord<>(topic, key, value));
-            resultHandler.onResult(true, null);
-        } catch (JsonProcessingException e) {
+            byte[] value = objectWriter.writeValueAsBytes(eventData);
+            producer.send(new ProducerRecord<>(topic, key, value),
+                    (metadata, exception) -> resultHandler.onResult(exception == null, exception));
+        } catch (JsonProcessingException | RuntimeException e) {
             resultHandler.onResult(false, e);
         }
     }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.forward;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+
+import java.io.IOException;
+
+public class EventForwarderSpool implements EventForwarder, LifecycleObject {
+
+    private final ForwardSpool<EventData> spool;
+
+    public EventForwarderSpool(
+            Config config, ObjectMapper objectMapper, EventForwarder forwarder) throws IOException {
+        spool = new ForwardSpool<>(config, objectMapper, "events", EventData.class, forwarder::forward);
+    }
+
+    @Override
+    public void start() {
+        spool.start();
+    }
+
+    @Override
+    public void stop() throws InterruptedException {
+        spool.stop();
+    }
+
+    @Override
+    public void forward(EventData eventData, ResultHandler resultHandler) {
+        spool.write(eventData, resultHandler);
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.forward;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Durable forwarding queue. Data is serialized into a {@link SegmentLog} and a background worker delivers it in
+ * batches, retrying from the first failed record until it succeeds. The log offset is acknowledged only up to the
+ * first record that is not delivered, so delivery is at least once, including records pending at shutdown. Spool
+ * files are synced to disk periodically or, if the sync interval is zero, after every change.
+ */
+public class ForwardSpool<T> implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ForwardSpool.class);
+
+    private static final long DELIVERY_TIMEOUT = 60;
+    private static final long MAX_RETRY_DELAY = 60000;
+
+    private final String name;
+    private final SegmentLog log;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader objectReader;
+    private final BiConsumer<T, ResultHandler> forwarder;
+
+    private final int batchSize;
+    private final long retryDelay;
+    private final long syncInterval;
+
+    private final Semaphore available = new Semaphore(0);
+
+    private Thread thread;
+    private ScheduledExecutorService syncExecutor;
+    private int retries;
+
+    public ForwardSpool(
+            Config config, ObjectMapper objectMapper, String name, Class<T> type,
+            BiConsumer<T, ResultHandler> forwarder) throws IOException {
+        this(name, new SegmentLog(
+                Paths.get(config.getString(Keys.FORWARD_SPOOL_PATH), name),
+                config.getInteger(Keys.FORWARD_SPOOL_SEGMENT_SIZE),
+                config.getLong(Keys.FORWARD_SPOOL_MAX_SIZE)),
+                objectMapper, type, forwarder,
+                config.getInteger(Keys.FORWARD_SPOOL_BATCH_SIZE), config.getInteger(Keys.FORWARD_RETRY_DELAY),
+                config.getLong(Keys.FORWARD_SPOOL_SYNC_INTERVAL));
+    }
+
+    ForwardSpool(
+            String name, SegmentLog log, ObjectMapper objectMapper, Class<T> type,
+            BiConsumer<T, ResultHandler> forwarder, int batchSize, long retryDelay, long syncInterval) {
+        this.name = name;
+        this.log = log;
+        this.objectMapper = objectMapper;
+        this.objectReader = objectMapper.readerFor(type).without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.forwarder = forwarder;
+        this.batchSize = batchSize;
+        this.retryDelay = Math.max(retryDelay, 1);
+        this.syncInterval = syncInterval;
+    }
+
+    @Override
+    public void start() {
+        thread = new Thread(this::run, "forward-spool-" + name);
+        thread.setDaemon(true);
+        thread.start();
+        if (syncInterval > 0) {
+            syncExecutor = Executors.newSingleThreadScheduledExecutor();
+            syncExecutor.scheduleWithFixedDelay(log::force, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop delivery and sync the spool. Records that are not acknowledged yet are delivered after the next start.
+     */
+    @Override
+    public void stop() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+            thread = null;
+        }
+        if (syncExecutor != null) {
+            syncExecutor.shutdown();
+            syncExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            syncExecutor = null;
+        }
+        log.force();
+    }
+
+    /**
+     * Store data for delivery. The result handler reports whether the data was written to the spool.
+     */
+    public void write(T data, ResultHandler resultHandler) {
+        try {
+            log.append(objectMapper.writeValueAsBytes(data));
+            if (syncInterval <= 0) {
+                log.force();
+            }
+            available.release();
+            resultHandler.onResult(true, null);
+        } catch (IOException e) {
+            resultHandler.onResult(false, e);
+        }
+    }
+
+    public long getPendingSize() {
+        return log.getWriteOffset() - log.getAckOffset();
+    }
+
+    private void run() {
+        long offset = log.getAckOffset();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                offset = deliverBatch(offset);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Spool delivery error", e);
+            }
+        }
+    }
+
+    /**
+     * Deliver next batch of records starting from the offset and return the offset to continue from. If a record
+     * fails, only the records before it are acknowledged and the next attempt starts from the failed record, so
+     * records are never acknowledged out of order. Records after it are delivered again.
+     */
+    long deliverBatch(long offset) throws InterruptedException {
+        List<SegmentLog.Record> records = log.read(offset, batchSize);
+        if (records.isEmpty()) {
+            if (available.tryAcquire(1, TimeUnit.SECONDS)) {
+                available.drainPermits();
+            }
+            return offset;
+        }
+
+        int delivered = deliver(records);
+        if (delivered > 0) {
+            log.ack(records.get(delivered - 1).getNextOffset());
+            if (syncInterval <= 0) {
+                log.force();
+            }
+        }
+
+        if (delivered < records.size()) {
+            long delay = Math.min(retryDelay << Math.min(retries++, 20), MAX_RETRY_DELAY);
+            SegmentLog.Record failed = records.get(delivered);
+            LOGGER.warn("Spool delivery failed at offset {}, retrying in {} ms", failed.getOffset(), delay);
+            Thread.sleep(delay);
+            return failed.getOffset();
+        }
+
+        retries = 0;
+        return records.get(records.size() - 1).getNextOffset();
+    }
+
+    /**
+     * Send all records and return the number of leading records that were delivered.
+     */
+    private int deliver(List<SegmentLog.Record> records) throws InterruptedException {
+        Set<SegmentLog.Record> completed = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(records.size());
+        for (SegmentLog.Record record : records) {
+            T data;
+            try {
+                data = objectReader.readValue(record.getData());
+            } catch (IOException e) {
+                LOGGER.warn("Spool record decoding failed", e);
+                completed.add(record);
+                latch.countDown();
+                continue;
+            }
+            try {
+                forwarder.accept(data, (success, throwable) -> {
+                    if (success) {
+                        completed.add(record);
+                    } else if (throwable != null) {
+                        LOGGER.debug("Spool record delivery failed", throwable);
+                    }
+                    latch.countDown();
+                });
+            } catch (RuntimeException e) {
+                LOGGER.warn("Spool record delivery failed", e);
+                latch.countDown();
+            }
+        }
+        latch.await(DELIVERY_TIMEOUT, TimeUnit.SECONDS);
+
+        int delivered = 0;
+        while (delivered < records.size() && completed.contains(records.get(delivered))) {
+            delivered += 1;
+        }
+        return delivered;
+    }
+
+}
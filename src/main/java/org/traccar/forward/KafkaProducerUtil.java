@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.forward;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.Properties;
+
+final class KafkaProducerUtil {
+
+    private KafkaProducerUtil() {
+    }
+
+    static Properties createProperties(Config config, String prefix, String url) {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, url);
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, config.getInteger(Keys.KAFKA_BATCH_SIZE.withPrefix(prefix)));
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, config.getInteger(Keys.KAFKA_LINGER.withPrefix(prefix)));
+        properties.put(
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, config.getString(Keys.KAFKA_COMPRESSION.withPrefix(prefix)));
+        properties.put(
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, config.getBoolean(Keys.KAFKA_IDEMPOTENCE.withPrefix(prefix)));
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        return properties;
+    }
+
+    static Producer<String, byte[]> createProducer(Config config, String prefix, String url) {
+        return new KafkaProducer<>(createProperties(config, prefix, url));
+    }
+
+}
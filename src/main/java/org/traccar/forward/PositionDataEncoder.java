@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.forward;
+
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.protobuf.forward.PositionDataOuterClass;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes forwarded positions using the compact protobuf schema from PositionData.proto. Times are encoded as epoch
+ * milliseconds.
+ */
+public final class PositionDataEncoder {
+
+    private PositionDataEncoder() {
+    }
+
+    private static long encodeTime(Date time) {
+        return time != null ? time.getTime() : 0;
+    }
+
+    private static PositionDataOuterClass.AttributeValue encodeValue(Object value) {
+        var builder = PositionDataOuterClass.AttributeValue.newBuilder();
+        if (value instanceof Boolean) {
+            builder.setBoolValue((Boolean) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            builder.setDoubleValue(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            builder.setLongValue(((Number) value).longValue());
+        } else {
+            builder.setStringValue(value.toString());
+        }
+        return builder.build();
+    }
+
+    private static Map<String, PositionDataOuterClass.AttributeValue> encodeAttributes(Map<String, Object> attributes) {
+        Map<String, PositionDataOuterClass.AttributeValue> result = new HashMap<>();
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                result.put(entry.getKey(), encodeValue(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    static PositionDataOuterClass.Position encodePosition(Position position) {
+        var builder = PositionDataOuterClass.Position.newBuilder()
+                .setId(position.getId())
+                .setDeviceId(position.getDeviceId())
+                .setServerTime(encodeTime(position.getServerTime()))
+                .setDeviceTime(encodeTime(position.getDeviceTime()))
+                .setFixTime(encodeTime(position.getFixTime()))
+                .setOutdated(position.getOutdated())
+                .setValid(position.getValid())
+                .setLatitude(position.getLatitude())
+                .setLongitude(position.getLongitude())
+                .setAltitude(position.getAltitude())
+                .setSpeed(position.getSpeed())
+                .setCourse(position.getCourse())
+                .setAccuracy(position.getAccuracy())
+                .putAllAttributes(encodeAttributes(position.getAttributes()));
+        if (position.getProtocol() != null) {
+            builder.setProtocol(position.getProtocol());
+        }
+        if (position.getAddress() != null) {
+            builder.setAddress(position.getAddress());
+        }
+        if (position.getGeofenceIds() != null) {
+            builder.addAllGeofenceIds(position.getGeofenceIds());
+        }
+        return builder.build();
+    }
+
+    static PositionDataOuterClass.Device encodeDevice(Device device) {
+        var builder = PositionDataOuterClass.Device.newBuilder()
+                .setId(device.getId())
+                .setGroupId(device.getGroupId())
+                .putAllAttributes(encodeAttributes(device.getAttributes()));
+        if (device.getName() != null) {
+            builder.setName(device.getName());
+        }
+        if (device.getUniqueId() != null) {
+            builder.setUniqueId(device.getUniqueId());
+        }
+        if (device.getStatus() != null) {
+            builder.setStatus(device.getStatus());
+        }
+        if (device.getCategory() != null) {
+            builder.setCategory(device.getCategory());
+        }
+        return builder.build();
+    }
+
+    public static byte[] encode(PositionData positionData) {
+        var builder = PositionDataOuterClass.PositionData.newBuilder();
+        if (positionData.getPosition() != null) {
+            builder.setPosition(encodePosition(positionData.getPosition()));
+        }
+        if (positionData.getDevice() != null) {
+            builder.setDevice(encodeDevice(positionData.getDevice()));
+        }
+        return builder.build().toByteArray();
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,40 +17,43 @@ package org.traccar.forward;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.kafka.clients.producer.KafkaProducer;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 
-import java.util.Properties;
-
 public class PositionForwarderKafka implements PositionForwarder {
 
-    private final Producer<String, String> producer;
-    private final ObjectMapper objectMapper;
+    private final Producer<String, byte[]> producer;
+    private final ObjectWriter objectWriter;
 
     private final String topic;
+    private final boolean protobuf;
 
     public PositionForwarderKafka(Config config, ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
-        Properties properties = new Properties();
-        properties.put("bootstrap.servers", config.getString(Keys.FORWARD_URL));
-        properties.put("acks", "all");
-        properties.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        properties.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        producer = new KafkaProducer<>(properties);
-        topic = config.getString(Keys.FORWARD_TOPIC);
+        this(KafkaProducerUtil.createProducer(config, "forward", config.getString(Keys.FORWARD_URL)),
+                objectMapper, config.getString(Keys.FORWARD_TOPIC),
+                config.getString(Keys.FORWARD_KAFKA_FORMAT).equalsIgnoreCase("protobuf"));
+    }
+
+    PositionForwarderKafka(
+            Producer<String, byte[]> producer, ObjectMapper objectMapper, String topic, boolean protobuf) {
+        this.producer = producer;
+        this.objectWriter = objectMapper.writerFor(PositionData.class);
+        this.topic = topic;
+        this.protobuf = protobuf;
     }
 
     @Override
     public void forward(PositionData positionData, ResultHandler resultHandler) {
         try {
             String key = Long.toString(positionData.getDevice().getId());
-            String value = objectMapper.writeValueAsString(positionData);
-            producer.send(new ProducerRecord<>(topic, key, value));
-            resultHandler.onResult(true, null);
-        } catch (JsonProcessingException e) {
+            byte[] value = protobuf
+                    ? PositionDataEncoder.encode(positionData) : objectWriter.writeValueAsBytes(positionData);
+            producer.send(new ProducerRecord<>(topic, key, value),
+                    (metadata, exception) -> resultHandler.onResult(exception == null, exception));
+        } catch (JsonProcessingException | RuntimeException e) {
             resultHandler.onResult(false, e);
         }
     }
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.forward;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of byte records stored in memory-mapped segment files. Each record is addressed by its byte offset
+ * in the log. The acknowledged offset is persisted, so unacknowledged records can be read again after a restart, and
+ * segments are deleted once all of their records are acknowledged.
+ */
+public class SegmentLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_FILE = "offset";
+
+    // record length and checksum
+    private static final int HEADER_SIZE = 8;
+
+    public static final class Record {
+
+        private final long offset;
+        private final long nextOffset;
+        private final byte[] data;
+
+        private Record(long offset, long nextOffset, byte[] data) {
+            this.offset = offset;
+            this.nextOffset = nextOffset;
+            this.data = data;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getNextOffset() {
+            return nextOffset;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+    }
+
+    private static final class Segment {
+
+        private final long baseOffset;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long baseOffset, Path path, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxSize;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final MappedByteBuffer offsetBuffer;
+
+    private long writeOffset;
+    private long ackOffset;
+    private long syncedWriteOffset;
+    private long syncedAckOffset;
+
+    public SegmentLog(Path directory, int segmentSize, long maxSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSize = maxSize;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    long baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(baseOffset, new Segment(baseOffset, path, map(path, segmentSize)));
+                } catch (NumberFormatException e) {
+                    LOGGER.warn("Unexpected spool file {}", path);
+                }
+            }
+        }
+
+        offsetBuffer = map(directory.resolve(OFFSET_FILE), Long.BYTES);
+        ackOffset = offsetBuffer.getLong(0);
+
+        if (segments.isEmpty()) {
+            writeOffset = ackOffset;
+            createSegment(writeOffset);
+        } else {
+            Segment last = segments.lastEntry().getValue();
+            writeOffset = last.baseOffset + findEnd(last);
+            ackOffset = Math.min(Math.max(ackOffset, segments.firstKey()), writeOffset);
+            deleteAcknowledged();
+        }
+        syncedWriteOffset = writeOffset;
+        syncedAckOffset = ackOffset;
+    }
+
+    private static MappedByteBuffer map(Path path, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Segment createSegment(long baseOffset) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseOffset, SEGMENT_SUFFIX));
+        Segment segment = new Segment(baseOffset, path, map(path, segmentSize));
+        segments.put(baseOffset, segment);
+        return segment;
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position).limit(position + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Length of the valid record at the position or zero if there is none.
+     */
+    private int readLength(Segment segment, int position) {
+        if (position + HEADER_SIZE > segmentSize) {
+            return 0;
+        }
+        int length = segment.buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > segmentSize
+                || segment.buffer.getInt(position + Integer.BYTES) != checksum(
+                        segment.buffer, position + HEADER_SIZE, length)) {
+            return 0;
+        }
+        return length;
+    }
+
+    private int findEnd(Segment segment) {
+        int position = 0;
+        int length = readLength(segment, position);
+        while (length > 0) {
+            position += HEADER_SIZE + length;
+            length = readLength(segment, position);
+        }
+        return position;
+    }
+
+    /**
+     * Java 11 has no public API to unmap a buffer, so the mapping is released only when the segment is garbage
+     * collected. Deleting a mapped file works on Unix systems, but on Windows the file stays until then and the
+     * failed delete is logged.
+     */
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.baseOffset);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOGGER.warn("Spool segment delete error", e);
+        }
+    }
+
+    private void deleteAcknowledged() {
+        Map.Entry<Long, Segment> first = segments.firstEntry();
+        while (segments.size() > 1) {
+            Long next = segments.higherKey(first.getKey());
+            if (next > ackOffset) {
+                break;
+            }
+            deleteSegment(first.getValue());
+            first = segments.firstEntry();
+        }
+    }
+
+    /**
+     * Append record and return the offset after it.
+     */
+    public synchronized long append(byte[] data) throws IOException {
+        int recordSize = HEADER_SIZE + data.length;
+        if (recordSize > segmentSize) {
+            throw new IOException("Record size " + data.length + " exceeds spool segment size");
+        }
+
+        Segment segment = segments.lastEntry().getValue();
+        int position = (int) (writeOffset - segment.baseOffset);
+        if (position + recordSize > segmentSize) {
+            segment = createSegment(writeOffset);
+            position = 0;
+            while ((long) segments.size() * segmentSize > maxSize && segments.size() > 1) {
+                Segment oldest = segments.firstEntry().getValue();
+                long next = segments.higherKey(oldest.baseOffset);
+                if (ackOffset < next) {
+                    LOGGER.warn("Spool size limit reached, discarding undelivered records");
+                    acknowledge(next);
+                }
+                deleteSegment(oldest);
+            }
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + HEADER_SIZE);
+        view.put(data);
+        buffer.putInt(position + Integer.BYTES, checksum(buffer, position + HEADER_SIZE, data.length));
+        buffer.putInt(position, data.length);
+
+        writeOffset += recordSize;
+        return writeOffset;
+    }
+
+    /**
+     * Read up to the given number of records starting from the offset. Offsets that were already discarded are
+     * skipped.
+     */
+    public synchronized List<Record> read(long offset, int limit) {
+        List<Record> result = new ArrayList<>();
+        long current = Math.max(offset, ackOffset);
+        while (result.size() < limit && current < writeOffset) {
+            Map.Entry<Long, Segment> entry = segments.floorEntry(current);
+            if (entry == null) {
+                break;
+            }
+            Segment segment = entry.getValue();
+            int position = (int) (current - segment.baseOffset);
+            int length = readLength(segment, position);
+            if (length > 0) {
+                byte[] data = new byte[length];
+                ByteBuffer view = segment.buffer.duplicate();
+                view.position(position + HEADER_SIZE);
+                view.get(data);
+                long next = current + HEADER_SIZE + length;
+                result.add(new Record(current, next, data));
+                current = next;
+            } else {
+                Long nextSegment = segments.higherKey(segment.baseOffset);
+                if (nextSegment == null) {
+                    break;
+                }
+                current = nextSegment;
+            }
+        }
+        return result;
+    }
+
+    private void acknowledge(long offset) {
+        ackOffset = offset;
+        offsetBuffer.putLong(0, offset);
+    }
+
+    /**
+     * Mark all records before the offset as delivered.
+     */
+    public synchronized void ack(long offset) {
+        if (offset > ackOffset) {
+            acknowledge(Math.min(offset, writeOffset));
+            deleteAcknowledged();
+        }
+    }
+
+    public synchronized long getAckOffset() {
+        return ackOffset;
+    }
+
+    public synchronized long getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * Flush data written since the previous call to disk. Only segments with new records are synced.
+     */
+    public void force() {
+        List<MappedByteBuffer> buffers = new ArrayList<>();
+        long currentWriteOffset;
+        long currentAckOffset;
+        synchronized (this) {
+            currentWriteOffset = writeOffset;
+            currentAckOffset = ackOffset;
+            if (currentWriteOffset > syncedWriteOffset) {
+                Long firstKey = segments.floorKey(syncedWriteOffset);
+                var dirty = firstKey != null ? segments.tailMap(firstKey, true) : segments;
+                dirty.values().forEach(segment -> buffers.add(segment.buffer));
+            }
+            if (currentAckOffset != syncedAckOffset) {
+                buffers.add(offsetBuffer);
+            }
+        }
+        for (MappedByteBuffer buffer : buffers) {
+            buffer.force();
+        }
+        synchronized (this) {
+            syncedWriteOffset = Math.max(syncedWriteOffset, currentWriteOffset);
+            syncedAckOffset = currentAckOffset;
+        }
+    }
+
+}
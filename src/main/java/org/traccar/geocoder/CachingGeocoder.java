@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.database.StatisticsManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Geocoder decorator that serves addresses from {@link GeocoderCache} and shares a single upstream request between
+ * concurrent lookups in the same cache cell. Blocking lookups wait for a shared request up to the timeout.
+ */
+public class CachingGeocoder implements Geocoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingGeocoder.class);
+
+    private final Geocoder geocoder;
+    private final GeocoderCache cache;
+    private final long timeout;
+
+    public CachingGeocoder(Geocoder geocoder, GeocoderCache cache, long timeout) {
+        this.geocoder = geocoder;
+        this.cache = cache;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void setStatisticsManager(StatisticsManager statisticsManager) {
+        geocoder.setStatisticsManager(statisticsManager);
+    }
+
+    @Override
+    public String getAddress(double latitude, double longitude, ReverseGeocoderCallback callback) {
+
+        long key = cache.getKey(latitude, longitude);
+        String cachedAddress = cache.get(key);
+        if (cachedAddress != null) {
+            if (callback != null) {
+                callback.onSuccess(cachedAddress);
+            }
+            return cachedAddress;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = cache.register(key, future);
+        if (existing != null) {
+            if (callback != null) {
+                existing.whenComplete((address, error) -> {
+                    if (error != null) {
+                        callback.onFailure(error);
+                    } else {
+                        callback.onSuccess(address);
+                    }
+                });
+                return null;
+            }
+            try {
+                return existing.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Geocoder error", e.getCause());
+            } catch (TimeoutException e) {
+                LOGGER.warn("Geocoder timeout");
+            }
+            return null;
+        }
+
+        if (callback != null) {
+            try {
+                geocoder.getAddress(latitude, longitude, new ReverseGeocoderCallback() {
+                    @Override
+                    public void onSuccess(String address) {
+                        cache.put(key, address);
+                        cache.complete(key, future, address, null);
+                        callback.onSuccess(address);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable e) {
+                        cache.complete(key, future, null, e);
+                        callback.onFailure(e);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // lookup failed before the callback was registered, so waiting requests have to be released here
+                if (!future.isDone()) {
+                    cache.complete(key, future, null, e);
+                    callback.onFailure(e);
+                }
+            }
+            return null;
+        }
+
+        String address;
+        try {
+            address = geocoder.getAddress(latitude, longitude, null);
+        } catch (RuntimeException e) {
+            cache.complete(key, future, null, e);
+            throw e;
+        }
+        if (address != null) {
+            cache.put(key, address);
+        }
+        cache.complete(key, future, address, null);
+        return address;
+    }
+
+}
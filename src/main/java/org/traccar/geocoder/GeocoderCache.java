@@ -0,0 +1,234 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocoder;
+
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reverse geocoding cache keyed by coordinates rounded to a grid. Entries are kept in access ordered segments, so each
+ * segment evicts its least recently used address, and can optionally be persisted to an MVStore file.
+ */
+public class GeocoderCache implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeocoderCache.class);
+
+    private static final int SEGMENTS = 16;
+    private static final int MAX_PRECISION = 7;
+
+    private static final class Entry {
+        private final String address;
+        private final long time;
+
+        private Entry(String address, long time) {
+            this.address = address;
+            this.time = time;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final double scale;
+    private final long cellsPerRow;
+    private final long expiration;
+    private final String file;
+
+    private final Map<Long, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    private volatile MVStore store;
+    private volatile MVMap<Long, String> storeMap;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public GeocoderCache(Config config) {
+        int capacity = Math.max(config.getInteger(Keys.GEOCODER_CACHE_SIZE) / SEGMENTS, 1);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity);
+        }
+        int precision = Math.max(0, Math.min(config.getInteger(Keys.GEOCODER_CACHE_PRECISION), MAX_PRECISION));
+        scale = Math.pow(10, precision);
+        cellsPerRow = Math.round(360 * scale) + 1;
+        expiration = TimeUnit.SECONDS.toMillis(config.getLong(Keys.GEOCODER_CACHE_EXPIRATION));
+        file = config.getString(Keys.GEOCODER_CACHE_FILE);
+    }
+
+    @Override
+    public void start() {
+        if (file != null) {
+            store = new MVStore.Builder().fileName(file).compress().open();
+            storeMap = store.openMap("addresses");
+            if (expiration > 0) {
+                List<Long> expired = new ArrayList<>();
+                for (Map.Entry<Long, String> entry : storeMap.entrySet()) {
+                    if (decode(entry.getValue()) == null) {
+                        expired.add(entry.getKey());
+                    }
+                }
+                for (long key : expired) {
+                    storeMap.remove(key);
+                }
+            }
+            LOGGER.info("Geocoder cache file contains {} addresses", storeMap.size());
+        }
+    }
+
+    @Override
+    public void stop() {
+        MVStore currentStore = store;
+        if (currentStore != null) {
+            storeMap = null;
+            store = null;
+            currentStore.close();
+        }
+    }
+
+    public long getKey(double latitude, double longitude) {
+        long row = Math.round((latitude + 90) * scale);
+        long column = Math.round((longitude + 180) * scale);
+        return row * cellsPerRow + column;
+    }
+
+    private Segment getSegment(long key) {
+        return segments[(int) ((key ^ (key >>> 32)) & (SEGMENTS - 1))];
+    }
+
+    private boolean isExpired(long time) {
+        return expiration > 0 && System.currentTimeMillis() - time > expiration;
+    }
+
+    private Entry decode(String value) {
+        int index = value.indexOf(' ');
+        long time = Long.parseLong(value.substring(0, index));
+        return isExpired(time) ? null : new Entry(value.substring(index + 1), time);
+    }
+
+    public String get(long key) {
+        Segment segment = getSegment(key);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && isExpired(entry.time)) {
+                segment.remove(key);
+                entry = null;
+            }
+        }
+        MVMap<Long, String> currentMap = storeMap;
+        if (entry == null && currentMap != null) {
+            String value = currentMap.get(key);
+            if (value != null) {
+                entry = decode(value);
+                if (entry != null) {
+                    synchronized (segment) {
+                        segment.put(key, entry);
+                    }
+                } else {
+                    currentMap.remove(key);
+                }
+            }
+        }
+        if (entry != null) {
+            hits.increment();
+            return entry.address;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(long key, String address) {
+        Entry entry = new Entry(address, System.currentTimeMillis());
+        Segment segment = getSegment(key);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+        MVMap<Long, String> currentMap = storeMap;
+        if (currentMap != null) {
+            currentMap.put(key, entry.time + " " + address);
+        }
+    }
+
+    /**
+     * Register a lookup in progress. Returns the future of an existing lookup for the same key, or null if the caller
+     * should perform the lookup and complete the provided future.
+     */
+    public CompletableFuture<String> register(long key, CompletableFuture<String> future) {
+        CompletableFuture<String> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            coalesced.increment();
+        }
+        return existing;
+    }
+
+    public void complete(long key, CompletableFuture<String> future, String address, Throwable error) {
+        pending.remove(key, future);
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(address);
+        }
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+}
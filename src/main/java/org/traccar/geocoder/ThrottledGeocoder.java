@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geocoder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+import org.traccar.helper.RateLimiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs geocoder requests on a bounded worker pool. Requests from the position pipeline are served before blocking
+ * requests from reports and notifications, which wait for a limited time only. Each provider has its own rate limit
+ * and providers are tried in order until one of them returns an address.
+ */
+public class ThrottledGeocoder implements Geocoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ThrottledGeocoder.class);
+
+    private static final int PRIORITY_LIVE = 0;
+    private static final int PRIORITY_REQUEST = 1;
+
+    private static final class Provider {
+
+        private final String name;
+        private final Geocoder geocoder;
+        private final RateLimiter rateLimiter;
+
+        private Provider(String name, Geocoder geocoder, int rateLimit) {
+            this.name = name;
+            this.geocoder = geocoder;
+            rateLimiter = new RateLimiter(rateLimit);
+        }
+
+    }
+
+    private static final class BoundedQueue extends PriorityBlockingQueue<Runnable> {
+
+        private final int capacity;
+
+        private BoundedQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable runnable) {
+            return size() < capacity && super.offer(runnable);
+        }
+
+    }
+
+    private final class Task implements Runnable, Comparable<Task> {
+
+        private final int priority;
+        private final long sequence = sequenceGenerator.getAndIncrement();
+        private final double latitude;
+        private final double longitude;
+        private final ReverseGeocoderCallback callback;
+
+        private Task(int priority, double latitude, double longitude, ReverseGeocoderCallback callback) {
+            this.priority = priority;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.callback = callback;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int result = Integer.compare(priority, other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            Throwable error = null;
+            for (Provider provider : providers) {
+                try {
+                    provider.rateLimiter.acquire();
+                    String address = provider.geocoder.getAddress(latitude, longitude, null);
+                    if (address != null) {
+                        callback.onSuccess(address);
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    error = e;
+                    break;
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Geocoder {} error", provider.name, e);
+                    error = e;
+                }
+            }
+            callback.onFailure(error != null ? error : new GeocoderException("No address"));
+        }
+
+    }
+
+    private final List<Provider> providers = new ArrayList<>();
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    private final AtomicLong sequenceGenerator = new AtomicLong();
+
+    /**
+     * Create geocoder from providers in the order of preference. Provider names are used as configuration prefixes for
+     * rate limits, for example 'geocoder' or 'geocoder.nominatim'.
+     */
+    public ThrottledGeocoder(Config config, Map<String, Geocoder> providers) {
+        for (var entry : providers.entrySet()) {
+            this.providers.add(new Provider(
+                    entry.getKey(), entry.getValue(),
+                    config.getInteger(Keys.GEOCODER_RATE_LIMIT.withPrefix(entry.getKey()))));
+        }
+        int threads = Math.max(config.getInteger(Keys.GEOCODER_THREADS), 1);
+        timeout = TimeUnit.SECONDS.toMillis(config.getInteger(Keys.GEOCODER_TIMEOUT));
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS,
+                new BoundedQueue(config.getInteger(Keys.GEOCODER_QUEUE_SIZE)), runnable -> {
+                    Thread thread = new Thread(runnable, "geocoder-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void setStatisticsManager(StatisticsManager statisticsManager) {
+        for (Provider provider : providers) {
+            provider.geocoder.setStatisticsManager(statisticsManager);
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    private boolean submit(Task task) {
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getAddress(double latitude, double longitude, ReverseGeocoderCallback callback) {
+
+        if (callback != null) {
+            if (!submit(new Task(PRIORITY_LIVE, latitude, longitude, callback))) {
+                callback.onFailure(new GeocoderException("Geocoder queue full"));
+            }
+            return null;
+        }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Task task = new Task(PRIORITY_REQUEST, latitude, longitude, new ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+                future.complete(address);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        if (!submit(task)) {
+            LOGGER.warn("Geocoder queue full");
+            return null;
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Geocoding failed", e.getCause());
+        } catch (TimeoutException e) {
+            LOGGER.warn("Geocoding timeout");
+        }
+        executor.remove(task);
+        return null;
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,6 +50,11 @@ public class GeofenceCircle extends GeofenceGeometry {
         return distanceFromCenter(latitude, longitude) <= radius;
     }
 
+    @Override
+    public BoundingBox getBoundingBox(Config config, Geofence geofence) {
+        return BoundingBox.expand(centerLatitude, centerLatitude, centerLongitude, centerLongitude, radius);
+    }
+
     @Override
     public double calculateArea() {
         return Math.PI * radius * radius;
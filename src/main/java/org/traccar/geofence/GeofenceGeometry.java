@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,14 +22,98 @@ import java.text.ParseException;
 
 public abstract class GeofenceGeometry {
 
+    protected static final double EARTH_RADIUS = 6378137;
+    private static final double MARGIN = 0.000001;
+
     public abstract boolean containsPoint(Config config, Geofence geofence, double latitude, double longitude);
 
+    /**
+     * Box containing all points for which {@link #containsPoint} can return true.
+     */
+    public abstract BoundingBox getBoundingBox(Config config, Geofence geofence);
+
     public abstract double calculateArea();
 
     public abstract String toWkt();
 
     public abstract void fromWkt(String wkt) throws ParseException;
 
+    public static class BoundingBox {
+
+        private final double minLatitude;
+        private final double maxLatitude;
+        private final double minLongitude;
+        private final double maxLongitude;
+
+        /**
+         * Longitude range can extend past 180 or -180 for boxes crossing the antimeridian.
+         */
+        public BoundingBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            this.minLatitude = minLatitude;
+            this.maxLatitude = maxLatitude;
+            this.minLongitude = minLongitude;
+            this.maxLongitude = maxLongitude;
+        }
+
+        public double getMinLatitude() {
+            return minLatitude;
+        }
+
+        public double getMaxLatitude() {
+            return maxLatitude;
+        }
+
+        public double getMinLongitude() {
+            return minLongitude;
+        }
+
+        public double getMaxLongitude() {
+            return maxLongitude;
+        }
+
+        public boolean contains(double latitude, double longitude) {
+            return contains(minLatitude, maxLatitude, minLongitude, maxLongitude, latitude, longitude);
+        }
+
+        public static boolean contains(
+                double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                double latitude, double longitude) {
+            if (latitude < minLatitude || latitude > maxLatitude) {
+                return false;
+            }
+            return longitude >= minLongitude && longitude <= maxLongitude
+                    || longitude + 360 >= minLongitude && longitude + 360 <= maxLongitude
+                    || longitude - 360 >= minLongitude && longitude - 360 <= maxLongitude;
+        }
+
+        /**
+         * Box extended by the distance in meters in every direction.
+         */
+        public static BoundingBox expand(
+                double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, double distance) {
+            double angle = distance / EARTH_RADIUS;
+            double deltaLatitude = Math.toDegrees(angle) + MARGIN;
+            double latitudeLimit = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude)) + deltaLatitude;
+            double sinDeltaLongitude = 1;
+            if (latitudeLimit < 90) {
+                sinDeltaLongitude = Math.sin(angle) / Math.cos(Math.toRadians(latitudeLimit));
+            }
+            if (sinDeltaLongitude >= 1) {
+                return new BoundingBox(
+                        Math.max(minLatitude - deltaLatitude, -90), Math.min(maxLatitude + deltaLatitude, 90),
+                        -180, 180);
+            }
+            double deltaLongitude = Math.toDegrees(Math.asin(sinDeltaLongitude)) + MARGIN;
+            if (maxLongitude - minLongitude + 2 * deltaLongitude >= 360) {
+                return new BoundingBox(minLatitude - deltaLatitude, maxLatitude + deltaLatitude, -180, 180);
+            }
+            return new BoundingBox(
+                    minLatitude - deltaLatitude, maxLatitude + deltaLatitude,
+                    minLongitude - deltaLongitude, maxLongitude + deltaLongitude);
+        }
+
+    }
+
     public static class Coordinate {
 
         private double lat;
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.traccar.config.Config;
+import org.traccar.model.Geofence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable packed R-tree of geofence bounding boxes. Entries are sorted into tiles by the sort-tile-recursive
+ * algorithm and each tree level keeps node boxes in a flat array, so a lookup only runs the exact containment test
+ * for geofences whose box contains the point.
+ */
+public class GeofenceIndex {
+
+    private static final int NODE_SIZE = 16;
+
+    private final Config config;
+    private final Geofence[] geofences;
+
+    // boxes per level as consecutive min latitude, max latitude, min longitude, max longitude values
+    private final double[][] levels;
+
+    public GeofenceIndex(Config config, Collection<Geofence> geofences) {
+        this.config = config;
+
+        List<Geofence> entries = new ArrayList<>();
+        List<GeofenceGeometry.BoundingBox> boxes = new ArrayList<>();
+        for (Geofence geofence : geofences) {
+            if (geofence.getGeometry() != null) {
+                entries.add(geofence);
+                boxes.add(geofence.getGeometry().getBoundingBox(config, geofence));
+            }
+        }
+
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(
+                i -> boxes.get(i).getMinLongitude() + boxes.get(i).getMaxLongitude()));
+        int nodeCount = (order.length + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = (int) Math.ceil(Math.sqrt(nodeCount)) * NODE_SIZE;
+        for (int start = 0; start < order.length; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, order.length), Comparator.comparingDouble(
+                    i -> boxes.get(i).getMinLatitude() + boxes.get(i).getMaxLatitude()));
+        }
+
+        this.geofences = new Geofence[order.length];
+        double[] leaves = new double[order.length * 4];
+        for (int i = 0; i < order.length; i++) {
+            this.geofences[i] = entries.get(order[i]);
+            GeofenceGeometry.BoundingBox box = boxes.get(order[i]);
+            leaves[i * 4] = box.getMinLatitude();
+            leaves[i * 4 + 1] = box.getMaxLatitude();
+            leaves[i * 4 + 2] = box.getMinLongitude();
+            leaves[i * 4 + 3] = box.getMaxLongitude();
+        }
+
+        List<double[]> result = new ArrayList<>();
+        result.add(leaves);
+        double[] level = leaves;
+        while (level.length > 4) {
+            int count = level.length / 4;
+            double[] parent = new double[(count + NODE_SIZE - 1) / NODE_SIZE * 4];
+            for (int i = 0; i < parent.length / 4; i++) {
+                parent[i * 4] = Double.POSITIVE_INFINITY;
+                parent[i * 4 + 1] = Double.NEGATIVE_INFINITY;
+                parent[i * 4 + 2] = Double.POSITIVE_INFINITY;
+                parent[i * 4 + 3] = Double.NEGATIVE_INFINITY;
+                for (int j = i * NODE_SIZE; j < Math.min((i + 1) * NODE_SIZE, count); j++) {
+                    parent[i * 4] = Math.min(parent[i * 4], level[j * 4]);
+                    parent[i * 4 + 1] = Math.max(parent[i * 4 + 1], level[j * 4 + 1]);
+                    parent[i * 4 + 2] = Math.min(parent[i * 4 + 2], level[j * 4 + 2]);
+                    parent[i * 4 + 3] = Math.max(parent[i * 4 + 3], level[j * 4 + 3]);
+                }
+            }
+            result.add(parent);
+            level = parent;
+        }
+        levels = result.toArray(new double[0][]);
+    }
+
+    public int size() {
+        return geofences.length;
+    }
+
+    /**
+     * Geofences containing the point.
+     */
+    public List<Geofence> getGeofences(double latitude, double longitude) {
+        List<Geofence> result = new ArrayList<>();
+        if (geofences.length > 0) {
+            search(levels.length - 1, 0, 1, latitude, longitude, result);
+        }
+        return result;
+    }
+
+    private void search(int level, int from, int to, double latitude, double longitude, List<Geofence> result) {
+        double[] boxes = levels[level];
+        int end = Math.min(to, boxes.length / 4);
+        for (int i = from; i < end; i++) {
+            if (GeofenceGeometry.BoundingBox.contains(
+                    boxes[i * 4], boxes[i * 4 + 1], boxes[i * 4 + 2], boxes[i * 4 + 3], latitude, longitude)) {
+                if (level > 0) {
+                    search(level - 1, i * NODE_SIZE, (i + 1) * NODE_SIZE, latitude, longitude, result);
+                } else {
+                    Geofence geofence = geofences[i];
+                    if (geofence.getGeometry().containsPoint(config, geofence, latitude, longitude)) {
+                        result.add(geofence);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,11 +38,15 @@ public class GeofencePolygon extends GeofenceGeometry {
 
     private ArrayList<Coordinate> coordinates;
 
+    private double[] latitudes;
+    private double[] longitudes;
     private double[] constant;
     private double[] multiple;
 
     private boolean needNormalize = false;
 
+    private BoundingBox boundingBox;
+
     private void preCalculate() {
         if (coordinates == null) {
             return;
@@ -52,16 +56,6 @@ public class GeofencePolygon extends GeofenceGeometry {
         int i;
         int j = polyCorners - 1;
 
-        if (constant != null) {
-            constant = null;
-        }
-        if (multiple != null) {
-            multiple = null;
-        }
-
-        constant = new double[polyCorners];
-        multiple = new double[polyCorners];
-
         boolean hasNegative = false;
         boolean hasPositive = false;
         for (i = 0; i < polyCorners; i++) {
@@ -73,18 +67,34 @@ public class GeofencePolygon extends GeofenceGeometry {
         }
         needNormalize = hasPositive && hasNegative;
 
+        latitudes = new double[polyCorners];
+        longitudes = new double[polyCorners];
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for (i = 0; i < polyCorners; i++) {
+            latitudes[i] = coordinates.get(i).getLat();
+            longitudes[i] = normalizeLon(coordinates.get(i).getLon());
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, longitudes[i]);
+            maxLongitude = Math.max(maxLongitude, longitudes[i]);
+        }
+        boundingBox = new BoundingBox(minLatitude, maxLatitude, minLongitude, maxLongitude);
+
+        constant = new double[polyCorners];
+        multiple = new double[polyCorners];
+
         for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(j).getLon()) == normalizeLon(coordinates.get(i).getLon())) {
-                constant[i] = coordinates.get(i).getLat();
+            if (longitudes[j] == longitudes[i]) {
+                constant[i] = latitudes[i];
                 multiple[i] = 0;
             } else {
-                constant[i] = coordinates.get(i).getLat()
-                        - (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(j).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()))
-                        + (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
-                multiple[i] = (coordinates.get(j).getLat() - coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
+                constant[i] = latitudes[i]
+                        - (longitudes[i] * latitudes[j]) / (longitudes[j] - longitudes[i])
+                        + (longitudes[i] * latitudes[i]) / (longitudes[j] - longitudes[i]);
+                multiple[i] = (latitudes[j] - latitudes[i]) / (longitudes[j] - longitudes[i]);
             }
         }
     }
@@ -99,23 +109,26 @@ public class GeofencePolygon extends GeofenceGeometry {
     @Override
     public boolean containsPoint(Config config, Geofence geofence, double latitude, double longitude) {
 
-        int polyCorners = coordinates.size();
+        int polyCorners = longitudes.length;
         int i;
         int j = polyCorners - 1;
         double longitudeNorm = normalizeLon(longitude);
         boolean oddNodes = false;
 
         for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(i).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(j).getLon()) >= longitudeNorm
-                    || normalizeLon(coordinates.get(j).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(i).getLon()) >= longitudeNorm) {
+            if (longitudes[i] < longitudeNorm && longitudes[j] >= longitudeNorm
+                    || longitudes[j] < longitudeNorm && longitudes[i] >= longitudeNorm) {
                 oddNodes ^= longitudeNorm * multiple[i] + constant[i] < latitude;
             }
         }
         return oddNodes;
     }
 
+    @Override
+    public BoundingBox getBoundingBox(Config config, Geofence geofence) {
+        return boundingBox;
+    }
+
     @Override
     public double calculateArea() {
         JtsShapeFactory jtsShapeFactory = new JtsSpatialContextFactory().newSpatialContext().getShapeFactory();
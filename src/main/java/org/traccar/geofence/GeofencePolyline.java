@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -28,6 +28,9 @@ public class GeofencePolyline extends GeofenceGeometry {
 
     private ArrayList<Coordinate> coordinates;
 
+    private double[] latitudes;
+    private double[] longitudes;
+
     public GeofencePolyline() {
     }
 
@@ -35,22 +38,56 @@ public class GeofencePolyline extends GeofenceGeometry {
         fromWkt(wkt);
     }
 
-    @Override
-    public boolean containsPoint(Config config, Geofence geofence, double latitude, double longitude) {
+    private double getDistance(Config config, Geofence geofence) {
         double distance = geofence.getDouble("polylineDistance");
         if (distance == 0) {
             distance = config.getDouble(Keys.GEOFENCE_POLYLINE_DISTANCE);
         }
-        for (int i = 1; i < coordinates.size(); i++) {
-            if (DistanceCalculator.distanceToLine(
-                    latitude, longitude, coordinates.get(i - 1).getLat(), coordinates.get(i - 1).getLon(),
-                    coordinates.get(i).getLat(), coordinates.get(i).getLon()) <= distance) {
+        return distance;
+    }
+
+    @Override
+    public boolean containsPoint(Config config, Geofence geofence, double latitude, double longitude) {
+        double distance = getDistance(config, geofence);
+        for (int i = 1; i < latitudes.length; i++) {
+            if (DistanceCalculator.distanceToLine(latitude, longitude,
+                    latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]) <= distance) {
                 return true;
             }
         }
         return false;
     }
 
+    @Override
+    public BoundingBox getBoundingBox(Config config, Geofence geofence) {
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        boolean normalize = false;
+        for (double longitude : longitudes) {
+            normalize |= longitude > 90;
+        }
+        double reserve = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            double longitude = normalize && longitudes[i] < -90 ? longitudes[i] + 360 : longitudes[i];
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, longitude);
+            maxLongitude = Math.max(maxLongitude, longitude);
+            if (i > 0) {
+                // segments follow great circles, which bend towards the pole between the points
+                double length = DistanceCalculator.distance(
+                        latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+                double latitude = Math.min(Math.max(Math.abs(latitudes[i - 1]), Math.abs(latitudes[i])), 89);
+                reserve = Math.max(
+                        reserve, length * length * (1 + Math.tan(Math.toRadians(latitude))) / (8 * EARTH_RADIUS));
+            }
+        }
+        return BoundingBox.expand(
+                minLatitude, maxLatitude, minLongitude, maxLongitude, getDistance(config, geofence) + reserve);
+    }
+
     @Override
     public double calculateArea() {
         return 0;
@@ -108,6 +145,12 @@ public class GeofencePolyline extends GeofenceGeometry {
             coordinates.add(coordinate);
         }
 
+        latitudes = new double[coordinates.size()];
+        longitudes = new double[coordinates.size()];
+        for (int i = 0; i < coordinates.size(); i++) {
+            latitudes[i] = coordinates.get(i).getLat();
+            longitudes[i] = coordinates.get(i).getLon();
+        }
     }
 
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import org.apache.commons.jexl3.JexlContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Expression context that resolves variables directly from the position, the last position and the device. Position
+ * getters are compiled once into accessors, so creating a context doesn't copy any values. Variables assigned by a
+ * script are kept separately and discarded by {@link #reset()}.
+ */
+final class ComputedAttributesContext implements JexlContext {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComputedAttributesContext.class);
+
+    private static final String LAST_PREFIX = "last";
+
+    private static final Map<String, Function<Object, Object>> ACCESSORS = createAccessors();
+
+    private final Position position;
+    private final Position last;
+    private final Device device;
+
+    private final Map<String, Object> variables = new HashMap<>();
+
+    ComputedAttributesContext(Position position, Position last, Device device) {
+        this.position = position;
+        this.last = last;
+        this.device = device;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> compileGetter(Method method) throws Throwable {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle handle = lookup.unreflect(method);
+        CallSite site = LambdaMetafactory.metafactory(
+                lookup, "apply", MethodType.methodType(Function.class),
+                MethodType.methodType(Object.class, Object.class), handle,
+                MethodType.methodType(method.getReturnType(), Position.class));
+        return (Function<Object, Object>) site.getTarget().invoke();
+    }
+
+    private static Map<String, Function<Object, Object>> createAccessors() {
+        Map<String, Function<Object, Object>> accessors = new HashMap<>();
+        for (Method method : Position.class.getMethods()) {
+            if (method.getName().startsWith("get") && method.getName().length() > 3
+                    && method.getParameterTypes().length == 0
+                    && !method.getDeclaringClass().equals(Object.class)
+                    && !method.getReturnType().equals(Map.class)) {
+                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+                try {
+                    accessors.put(name, compileGetter(method));
+                } catch (Throwable error) {
+                    LOGGER.warn("Attribute accessor error", error);
+                }
+            }
+        }
+        return Collections.unmodifiableMap(accessors);
+    }
+
+    /**
+     * Discard variables assigned by the previous script.
+     */
+    void reset() {
+        variables.clear();
+    }
+
+    private static String getLastKey(String name) {
+        if (name.length() > LAST_PREFIX.length() && name.startsWith(LAST_PREFIX)) {
+            return name.substring(LAST_PREFIX.length());
+        }
+        return null;
+    }
+
+    private static String decapitalize(String key) {
+        return Character.toLowerCase(key.charAt(0)) + key.substring(1);
+    }
+
+    private static boolean hasValue(Position position, String name) {
+        return ACCESSORS.containsKey(name) || position.getAttributes().containsKey(name);
+    }
+
+    private static Object getValue(Position position, String name) {
+        Function<Object, Object> accessor = ACCESSORS.get(name);
+        if (accessor != null) {
+            return accessor.apply(position);
+        }
+        return position.getAttributes().get(name);
+    }
+
+    private String getLastName(String name) {
+        if (last != null) {
+            String key = getLastKey(name);
+            if (key != null) {
+                String decapitalized = decapitalize(key);
+                if (hasValue(last, decapitalized)) {
+                    return decapitalized;
+                } else if (last.getAttributes().containsKey(key)) {
+                    return key;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean has(String name) {
+        return variables.containsKey(name)
+                || hasValue(position, name)
+                || getLastName(name) != null
+                || device != null && device.getAttributes().containsKey(name);
+    }
+
+    @Override
+    public Object get(String name) {
+        if (variables.containsKey(name)) {
+            return variables.get(name);
+        }
+        if (hasValue(position, name)) {
+            return getValue(position, name);
+        }
+        String lastName = getLastName(name);
+        if (lastName != null) {
+            return getValue(last, lastName);
+        }
+        if (device != null) {
+            return device.getAttributes().get(name);
+        }
+        return null;
+    }
+
+    @Override
+    public void set(String name, Object value) {
+        variables.put(name, value);
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -16,15 +16,12 @@
  */
 package org.traccar.handler;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import io.netty.channel.ChannelHandler;
 import org.apache.commons.jexl3.JexlFeatures;
@@ -32,14 +29,17 @@ import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.introspection.JexlSandbox;
 import org.apache.commons.jexl3.JexlException;
-import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.JexlScript;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
+import org.traccar.broadcast.BroadcastInterface;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.model.Attribute;
+import org.traccar.model.BaseModel;
 import org.traccar.model.Device;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
 
@@ -48,7 +48,7 @@ import jakarta.inject.Singleton;
 
 @Singleton
 @ChannelHandler.Sharable
-public class ComputedAttributesHandler extends BaseDataHandler {
+public class ComputedAttributesHandler extends BaseDataHandler implements BroadcastInterface {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ComputedAttributesHandler.class);
 
@@ -61,9 +61,25 @@ public class ComputedAttributesHandler extends BaseDataHandler {
     private final boolean includeDeviceAttributes;
     private final boolean includeLastAttributes;
 
+    private static final class CompiledExpression {
+
+        private final String expression;
+        private final JexlScript script;
+
+        private CompiledExpression(String expression, JexlScript script) {
+            this.expression = expression;
+            this.script = script;
+        }
+
+    }
+
+    private final Map<Long, CompiledExpression> scripts = new ConcurrentHashMap<>();
+    private final LongAdder compileCount = new LongAdder();
+
     @Inject
     public ComputedAttributesHandler(Config config, CacheManager cacheManager) {
         this.cacheManager = cacheManager;
+        cacheManager.registerListener(this);
         JexlSandbox sandbox = new JexlSandbox(false);
         sandbox.allow("com.safe.Functions");
         sandbox.allow(Math.class.getName());
@@ -85,52 +101,39 @@ public class ComputedAttributesHandler extends BaseDataHandler {
         includeLastAttributes = config.getBoolean(Keys.PROCESSING_COMPUTED_ATTRIBUTES_LAST_ATTRIBUTES);
     }
 
-    private MapContext prepareContext(Position position) {
-        MapContext result = new MapContext();
+    private ComputedAttributesContext prepareContext(Position position) {
+        Device device = null;
         if (includeDeviceAttributes) {
-            Device device = cacheManager.getObject(Device.class, position.getDeviceId());
-            if (device != null) {
-                for (String key : device.getAttributes().keySet()) {
-                    result.set(key, device.getAttributes().get(key));
-                }
-            }
+            device = cacheManager.getObject(Device.class, position.getDeviceId());
         }
         Position last = null;
         if (includeLastAttributes) {
             last = cacheManager.getPosition(position.getDeviceId());
         }
-        Set<Method> methods = new HashSet<>(Arrays.asList(position.getClass().getMethods()));
-        Arrays.asList(Object.class.getMethods()).forEach(methods::remove);
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+        return new ComputedAttributesContext(position, last, device);
+    }
 
-                try {
-                    if (!method.getReturnType().equals(Map.class)) {
-                        result.set(name, method.invoke(position));
-                        if (last != null) {
-                            result.set(prefixAttribute("last", name), method.invoke(last));
-                        }
-                    } else {
-                        for (Map.Entry<?, ?> entry : ((Map<?, ?>) method.invoke(position)).entrySet()) {
-                            result.set((String) entry.getKey(), entry.getValue());
-                        }
-                        if (last != null) {
-                            for (Map.Entry<?, ?> entry : ((Map<?, ?>) method.invoke(last)).entrySet()) {
-                                result.set(prefixAttribute("last", (String) entry.getKey()), entry.getValue());
-                            }
-                        }
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Attribute reflection error", error);
-                }
-            }
+    private JexlScript getScript(Attribute attribute) throws JexlException {
+        CompiledExpression compiled = scripts.get(attribute.getId());
+        if (compiled == null || !compiled.expression.equals(attribute.getExpression())) {
+            JexlScript script = engine.createScript(features, engine.createInfo(), attribute.getExpression());
+            compileCount.increment();
+            compiled = new CompiledExpression(attribute.getExpression(), script);
+            scripts.put(attribute.getId(), compiled);
         }
-        return result;
+        return compiled.script;
     }
 
-    private String prefixAttribute(String prefix, String key) {
-        return prefix + Character.toUpperCase(key.charAt(0)) + key.substring(1);
+    /**
+     * Number of expressions compiled since start. Cached scripts are reused until the attribute changes.
+     */
+    public long getCompileCount() {
+        return compileCount.sum();
+    }
+
+    private Object computeAttribute(Attribute attribute, ComputedAttributesContext context) throws JexlException {
+        context.reset();
+        return getScript(attribute).execute(context);
     }
 
     /**
@@ -138,19 +141,29 @@ public class ComputedAttributesHandler extends BaseDataHandler {
      */
     @Deprecated
     public Object computeAttribute(Attribute attribute, Position position) throws JexlException {
-        return engine
-                .createScript(features, engine.createInfo(), attribute.getExpression())
-                .execute(prepareContext(position));
+        return computeAttribute(attribute, prepareContext(position));
+    }
+
+    @Override
+    public <T extends BaseModel> void invalidateObject(
+            boolean local, Class<T> clazz, long id, ObjectOperation operation) {
+        if (clazz.equals(Attribute.class)) {
+            scripts.remove(id);
+        }
     }
 
     @Override
     protected Position handlePosition(Position position) {
         Collection<Attribute> attributes = cacheManager.getDeviceObjects(position.getDeviceId(), Attribute.class);
+        ComputedAttributesContext context = null;
         for (Attribute attribute : attributes) {
             if (attribute.getAttribute() != null) {
+                if (context == null) {
+                    context = prepareContext(position);
+                }
                 Object result = null;
                 try {
-                    result = computeAttribute(attribute, position);
+                    result = computeAttribute(attribute, context);
                 } catch (JexlException error) {
                     LOGGER.warn("Attribute computation error", error);
                 }
@@ -16,14 +16,17 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
+import org.traccar.database.PositionBatchWriter;
 import org.traccar.model.Position;
 import org.traccar.storage.Storage;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Request;
 
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
@@ -34,10 +37,21 @@ public class DefaultDataHandler extends BaseDataHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
     private final Storage storage;
+    private final PositionBatchWriter positionBatchWriter;
 
     @Inject
-    public DefaultDataHandler(Storage storage) {
+    public DefaultDataHandler(Storage storage, @Nullable PositionBatchWriter positionBatchWriter) {
         this.storage = storage;
+        this.positionBatchWriter = positionBatchWriter;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Position && positionBatchWriter != null
+                && positionBatchWriter.write(ctx, (Position) msg)) {
+            return; // writer continues the pipeline once the batch is stored
+        }
+        super.channelRead(ctx, msg);
     }
 
     @Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2021 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,31 +20,127 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.ProcessingContext;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.geocoder.Geocoder;
+import org.traccar.metrics.Histogram;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves position addresses. Geocoder responses can arrive in any order, so positions of each device are held in a
+ * queue and passed on in the order they were received. Completions from geocoder threads continue on the channel
+ * event loop.
+ */
 @ChannelHandler.Sharable
 public class GeocoderHandler extends ChannelInboundHandlerAdapter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GeocoderHandler.class);
 
+    private static final class PendingPosition {
+        private final ChannelHandlerContext ctx;
+        private final Position position;
+        private boolean done;
+
+        private PendingPosition(ChannelHandlerContext ctx, Position position) {
+            this.ctx = ctx;
+            this.position = position;
+        }
+    }
+
+    private static final class DeviceQueue {
+        private final Deque<PendingPosition> positions = new ArrayDeque<>();
+        private boolean draining;
+    }
+
     private final Geocoder geocoder;
     private final CacheManager cacheManager;
     private final boolean ignorePositions;
     private final boolean processInvalidPositions;
     private final int reuseDistance;
+    private final Histogram histogram;
 
-    public GeocoderHandler(Config config, Geocoder geocoder, CacheManager cacheManager) {
+    private final Map<Long, DeviceQueue> queues = new ConcurrentHashMap<>();
+
+    public GeocoderHandler(
+            Config config, Geocoder geocoder, CacheManager cacheManager, MetricsRegistry metricsRegistry) {
         this.geocoder = geocoder;
         this.cacheManager = cacheManager;
+        histogram = metricsRegistry.getHistogram(MetricsRegistry.REQUEST_DURATION, "service", "geocoder");
         ignorePositions = config.getBoolean(Keys.GEOCODER_IGNORE_POSITIONS);
         processInvalidPositions = config.getBoolean(Keys.GEOCODER_PROCESS_INVALID_POSITIONS);
         reuseDistance = config.getInteger(Keys.GEOCODER_REUSE_DISTANCE, 0);
     }
 
+    private DeviceQueue enqueue(PendingPosition pending) {
+        return queues.compute(pending.position.getDeviceId(), (id, queue) -> {
+            if (queue == null) {
+                queue = new DeviceQueue();
+            }
+            synchronized (queue) {
+                queue.positions.add(pending);
+            }
+            return queue;
+        });
+    }
+
+    private void complete(PendingPosition pending, DeviceQueue queue) {
+        synchronized (queue) {
+            pending.done = true;
+        }
+        if (pending.ctx instanceof ProcessingContext || pending.ctx.executor().inEventLoop()) {
+            drain(pending.position.getDeviceId(), queue);
+        } else {
+            pending.ctx.executor().execute(() -> drain(pending.position.getDeviceId(), queue));
+        }
+    }
+
+    private void drain(long deviceId, DeviceQueue queue) {
+        synchronized (queue) {
+            if (queue.draining) {
+                return;
+            }
+            queue.draining = true;
+        }
+        while (true) {
+            PendingPosition next;
+            synchronized (queue) {
+                next = queue.positions.peek();
+                if (next == null || !next.done) {
+                    queue.draining = false;
+                    break;
+                }
+                queue.positions.poll();
+            }
+            try {
+                next.ctx.fireChannelRead(next.position);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Position processing error", e);
+            }
+        }
+        queues.computeIfPresent(deviceId, (id, value) -> {
+            synchronized (value) {
+                return value.positions.isEmpty() && !value.draining ? null : value;
+            }
+        });
+    }
+
+    private void forward(ChannelHandlerContext ctx, Position position) {
+        if (queues.containsKey(position.getDeviceId())) {
+            PendingPosition pending = new PendingPosition(ctx, position);
+            complete(pending, enqueue(pending));
+        } else {
+            ctx.fireChannelRead(position);
+        }
+    }
+
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object message) {
         if (message instanceof Position && !ignorePositions) {
@@ -55,27 +151,36 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
                     if (lastPosition != null && lastPosition.getAddress() != null
                             && position.getDouble(Position.KEY_DISTANCE) <= reuseDistance) {
                         position.setAddress(lastPosition.getAddress());
-                        ctx.fireChannelRead(position);
+                        forward(ctx, position);
                         return;
                     }
                 }
 
+                PendingPosition pending = new PendingPosition(ctx, position);
+                DeviceQueue queue = enqueue(pending);
+                long startTime = histogram != null ? System.nanoTime() : 0;
                 geocoder.getAddress(position.getLatitude(), position.getLongitude(),
                         new Geocoder.ReverseGeocoderCallback() {
                     @Override
                     public void onSuccess(String address) {
+                        if (histogram != null) {
+                            histogram.recordSince(startTime);
+                        }
                         position.setAddress(address);
-                        ctx.fireChannelRead(position);
+                        complete(pending, queue);
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
+                        if (histogram != null) {
+                            histogram.recordSince(startTime);
+                        }
                         LOGGER.warn("Geocoding failed", e);
-                        ctx.fireChannelRead(position);
+                        complete(pending, queue);
                     }
                 });
             } else {
-                ctx.fireChannelRead(position);
+                forward(ctx, position);
             }
         } else {
             ctx.fireChannelRead(message);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,8 @@ import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.database.StatisticsManager;
 import org.traccar.geolocation.GeolocationProvider;
+import org.traccar.metrics.Histogram;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
 
@@ -38,13 +40,15 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
     private final boolean processInvalidPositions;
     private final boolean reuse;
     private final boolean requireWifi;
+    private final Histogram histogram;
 
     public GeolocationHandler(
             Config config, GeolocationProvider geolocationProvider, CacheManager cacheManager,
-            StatisticsManager statisticsManager) {
+            StatisticsManager statisticsManager, MetricsRegistry metricsRegistry) {
         this.geolocationProvider = geolocationProvider;
         this.cacheManager = cacheManager;
         this.statisticsManager = statisticsManager;
+        histogram = metricsRegistry.getHistogram(MetricsRegistry.REQUEST_DURATION, "service", "geolocation");
         processInvalidPositions = config.getBoolean(Keys.GEOLOCATION_PROCESS_INVALID_POSITIONS);
         reuse = config.getBoolean(Keys.GEOLOCATION_REUSE);
         requireWifi = config.getBoolean(Keys.GEOLOCATION_REQUIRE_WIFI);
@@ -72,16 +76,23 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
                     statisticsManager.registerGeolocationRequest();
                 }
 
+                long startTime = histogram != null ? System.nanoTime() : 0;
                 geolocationProvider.getLocation(position.getNetwork(),
                         new GeolocationProvider.LocationProviderCallback() {
                     @Override
                     public void onSuccess(double latitude, double longitude, double accuracy) {
+                        if (histogram != null) {
+                            histogram.recordSince(startTime);
+                        }
                         updatePosition(position, latitude, longitude, accuracy);
                         ctx.fireChannelRead(position);
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
+                        if (histogram != null) {
+                            histogram.recordSince(startTime);
+                        }
                         LOGGER.warn("Geolocation network error", e);
                         ctx.fireChannelRead(position);
                     }
@@ -19,6 +19,7 @@ package org.traccar.handler.events;
 import io.netty.channel.ChannelHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.database.DeviceStateWriter;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.helper.model.AttributeUtil;
 import org.traccar.helper.model.PositionUtil;
@@ -33,6 +34,7 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
@@ -46,6 +48,7 @@ public class MotionEventHandler extends BaseEventHandler {
 
     private final CacheManager cacheManager;
     private final Storage storage;
+    private final DeviceStateWriter deviceStateWriter;
     private Boolean inputDigitalFlagON = false;
     private Boolean inputDigitalFlagOff = false;
     private Boolean outputDigitalFlagOn = false;
@@ -56,9 +59,11 @@ public class MotionEventHandler extends BaseEventHandler {
 
 
     @Inject
-    public MotionEventHandler(CacheManager cacheManager, Storage storage) {
+    public MotionEventHandler(
+            CacheManager cacheManager, Storage storage, @Nullable DeviceStateWriter deviceStateWriter) {
         this.cacheManager = cacheManager;
         this.storage = storage;
+        this.deviceStateWriter = deviceStateWriter;
     }
 
     @Override
@@ -215,12 +220,16 @@ public class MotionEventHandler extends BaseEventHandler {
         MotionProcessor.updateState(state, position, position.getBoolean(Position.KEY_MOTION), tripsConfig);
         if (state.isChanged()) {
             state.toDevice(device);
-            try {
-                storage.updateObject(device, new Request(
-                        new Columns.Include("motionStreak", "motionState", "motionTime", "motionDistance"),
-                        new Condition.Equals("id", device.getId())));
-            } catch (StorageException e) {
-                LOGGER.warn("Update device motion error", e);
+            if (deviceStateWriter != null) {
+                deviceStateWriter.update(device, false, "motionStreak", "motionState", "motionTime", "motionDistance");
+            } else {
+                try {
+                    storage.updateObject(device, new Request(
+                            new Columns.Include("motionStreak", "motionState", "motionTime", "motionDistance"),
+                            new Condition.Equals("id", device.getId())));
+                } catch (StorageException e) {
+                    LOGGER.warn("Update device motion error", e);
+                }
             }
         }
         return state.getEvent() != null ? Collections.singletonMap(state.getEvent(), position) : null;
@@ -21,6 +21,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
+import org.traccar.database.DeviceStateWriter;
 import org.traccar.helper.model.AttributeUtil;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
@@ -36,6 +37,7 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.util.Collections;
@@ -49,6 +51,7 @@ public class OverspeedEventHandler extends BaseEventHandler {
 
     private final CacheManager cacheManager;
     private final Storage storage;
+    private final DeviceStateWriter deviceStateWriter;
 
     private final long minimalDuration;
     private final boolean preferLowest;
@@ -56,9 +59,11 @@ public class OverspeedEventHandler extends BaseEventHandler {
 
     @Inject
     public OverspeedEventHandler(
-            Config config, CacheManager cacheManager, Storage storage) {
+            Config config, CacheManager cacheManager, Storage storage,
+            @Nullable DeviceStateWriter deviceStateWriter) {
         this.cacheManager = cacheManager;
         this.storage = storage;
+        this.deviceStateWriter = deviceStateWriter;
         minimalDuration = config.getLong(Keys.EVENT_OVERSPEED_MINIMAL_DURATION) * 1000;
         preferLowest = config.getBoolean(Keys.EVENT_OVERSPEED_PREFER_LOWEST);
         multiplier = config.getDouble(Keys.EVENT_OVERSPEED_THRESHOLD_MULTIPLIER);
@@ -112,12 +117,16 @@ public class OverspeedEventHandler extends BaseEventHandler {
         OverspeedProcessor.updateState(state, position, speedLimit, multiplier, minimalDuration, overspeedGeofenceId);
         if (state.isChanged()) {
             state.toDevice(device);
-            try {
-                storage.updateObject(device, new Request(
-                        new Columns.Include("overspeedState", "overspeedTime", "overspeedGeofenceId"),
-                        new Condition.Equals("id", device.getId())));
-            } catch (StorageException e) {
-                LOGGER.warn("Update device overspeed error", e);
+            if (deviceStateWriter != null) {
+                deviceStateWriter.update(device, false, "overspeedState", "overspeedTime", "overspeedGeofenceId");
+            } else {
+                try {
+                    storage.updateObject(device, new Request(
+                            new Columns.Include("overspeedState", "overspeedTime", "overspeedGeofenceId"),
+                            new Condition.Equals("id", device.getId())));
+                } catch (StorageException e) {
+                    LOGGER.warn("Update device overspeed error", e);
+                }
             }
         }
         return state.getEvent() != null ? Collections.singletonMap(state.getEvent(), position) : null;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 - 2020 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -44,12 +44,14 @@ public final class LogAction {
     private static final String ACTION_LOGOUT = "logout";
 
     private static final String ACTION_DEVICE_ACCUMULATORS = "resetDeviceAccumulators";
+    private static final String ACTION_RELOAD_CONFIG = "reloadConfig";
 
     private static final String PATTERN_OBJECT = "user: %d, action: %s, object: %s, id: %d";
     private static final String PATTERN_LINK = "user: %d, action: %s, owner: %s, id: %d, property: %s, id: %d";
     private static final String PATTERN_LOGIN = "user: %d, action: %s, from: %s";
     private static final String PATTERN_LOGIN_FAILED = "login failed from: %s";
     private static final String PATTERN_DEVICE_ACCUMULATORS = "user: %d, action: %s, deviceId: %d";
+    private static final String PATTERN_ACTION = "user: %d, action: %s";
     private static final String PATTERN_REPORT = "user: %d, report: %s, from: %s, to: %s, devices: %s, groups: %s";
 
     public static void create(long userId, BaseModel object) {
@@ -92,6 +94,10 @@ public final class LogAction {
                 PATTERN_DEVICE_ACCUMULATORS, userId, ACTION_DEVICE_ACCUMULATORS, deviceId));
     }
 
+    public static void reloadConfig(long userId) {
+        LOGGER.info(String.format(PATTERN_ACTION, userId, ACTION_RELOAD_CONFIG));
+    }
+
     private static void logObjectAction(String action, long userId, Class<?> clazz, long objectId) {
         LOGGER.info(String.format(
                 PATTERN_OBJECT, userId, action, Introspector.decapitalize(clazz.getSimpleName()), objectId));
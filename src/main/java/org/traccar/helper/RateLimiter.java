@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls evenly to stay within the given number of calls per second. Each caller reserves the next free slot and
+ * sleeps until it comes, so waiting callers are served in the order of arrival.
+ */
+public class RateLimiter {
+
+    private final long interval;
+    private long nextSlot;
+
+    /**
+     * Create limiter for the given number of calls per second. Zero or negative rate means no limit.
+     */
+    public RateLimiter(int rate) {
+        interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+    }
+
+    public void acquire() throws InterruptedException {
+        if (interval > 0) {
+            long delay;
+            synchronized (this) {
+                long currentTime = System.nanoTime();
+                long slot = Math.max(nextSlot, currentTime);
+                nextSlot = slot + interval;
+                delay = slot - currentTime;
+            }
+            if (delay > 0) {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,8 +30,12 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import java.util.Map;
+
 public final class AttributeUtil {
 
+    private static final Object NULL_VALUE = new Object();
+
     private AttributeUtil() {
     }
 
@@ -42,12 +46,30 @@ public final class AttributeUtil {
         Config getConfig();
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T lookup(CacheManager cacheManager, ConfigKey<T> key, long deviceId) {
-        return lookup(new CacheProvider(cacheManager, deviceId), key);
+        Map<String, Object> resolved = cacheManager.getDeviceAttributes(deviceId);
+        if (resolved == null) {
+            return lookup(new CacheProvider(cacheManager, deviceId), key);
+        }
+        Object value = resolved.get(key.getKey());
+        if (value == null || value != NULL_VALUE && !key.getValueClass().isInstance(value)) {
+            T result = resolve(new CacheProvider(cacheManager, deviceId), key);
+            if (value == null) {
+                resolved.put(key.getKey(), result != null ? result : NULL_VALUE);
+            }
+            return result != null ? result : key.getDefaultValue();
+        }
+        return value != NULL_VALUE ? (T) value : key.getDefaultValue();
     }
 
-    @SuppressWarnings({ "deprecation", "unchecked" })
     public static <T> T lookup(Provider provider, ConfigKey<T> key) {
+        T result = resolve(provider, key);
+        return result != null ? result : key.getDefaultValue();
+    }
+
+    @SuppressWarnings({ "deprecation", "unchecked" })
+    private static <T> T resolve(Provider provider, ConfigKey<T> key) {
         Device device = provider.getDevice();
         Object result = device.getAttributes().get(key.getKey());
         long groupId = device.getGroupId();
@@ -89,7 +111,7 @@ public final class AttributeUtil {
                 return (T) result;
             }
         }
-        return key.getDefaultValue();
+        return null;
     }
 
     public static String getDevicePassword(
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -30,11 +30,9 @@ public final class GeofenceUtil {
 
     public static List<Long> getCurrentGeofences(Config config, CacheManager cacheManager, Position position) {
         List<Long> result = new ArrayList<>();
-        for (Geofence geofence : cacheManager.getDeviceObjects(position.getDeviceId(), Geofence.class)) {
-            if (geofence.getGeometry().containsPoint(
-                    config, geofence, position.getLatitude(), position.getLongitude())) {
-                result.add(geofence.getId());
-            }
+        for (Geofence geofence : cacheManager.getDeviceGeofences(position.getDeviceId()).getGeofences(
+                position.getLatitude(), position.getLongitude())) {
+            result.add(geofence.getId());
         }
         return result;
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,11 +15,10 @@
  */
 package org.traccar.helper.model;
 
-import org.traccar.model.BaseModel;
-import org.traccar.model.Device;
+import org.traccar.api.security.AccessGraph;
 import org.traccar.model.Position;
-import org.traccar.model.User;
 import org.traccar.session.cache.CacheManager;
+import org.traccar.session.cache.LatestPositionStore;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
@@ -29,7 +28,7 @@ import org.traccar.storage.query.Request;
 
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 public final class PositionUtil {
 
@@ -54,27 +53,28 @@ public final class PositionUtil {
         return distance;
     }
 
-    public static List<Position> getPositions(
-            Storage storage, long deviceId, Date from, Date to) throws StorageException {
-        return storage.getObjects(Position.class, new Request(
+    private static Request getPositionsRequest(long deviceId, Date from, Date to) {
+        return new Request(
                 new Columns.All(),
                 new Condition.And(
                         new Condition.Equals("deviceId", deviceId),
                         new Condition.Between("fixTime", "from", from, "to", to)),
-                new Order("fixTime")));
+                new Order("fixTime"));
     }
 
-    public static List<Position> getLatestPositions(Storage storage, long userId) throws StorageException {
-        var devices = storage.getObjects(Device.class, new Request(
-                new Columns.Include("id"),
-                new Condition.Permission(User.class, userId, Device.class)));
-        var deviceIds = devices.stream().map(BaseModel::getId).collect(Collectors.toUnmodifiableSet());
+    public static List<Position> getPositions(
+            Storage storage, long deviceId, Date from, Date to) throws StorageException {
+        return storage.getObjects(Position.class, getPositionsRequest(deviceId, from, to));
+    }
+
+    public static void streamPositions(
+            Storage storage, long deviceId, Date from, Date to, Consumer<Position> consumer) throws StorageException {
+        storage.streamObjects(Position.class, getPositionsRequest(deviceId, from, to), consumer);
+    }
 
-        var positions = storage.getObjects(Position.class, new Request(
-                new Columns.All(), new Condition.LatestPositions()));
-        return positions.stream()
-                .filter(position -> deviceIds.contains(position.getDeviceId()))
-                .collect(Collectors.toList());
+    public static List<Position> getLatestPositions(
+            AccessGraph accessGraph, LatestPositionStore latestPositionStore, long userId) throws StorageException {
+        return latestPositionStore.getPositions(accessGraph.getDeviceIds(userId));
     }
 
 }
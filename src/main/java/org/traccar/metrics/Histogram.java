@@ -0,0 +1,77 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets. Recording is lock-free, so it can be shared between event loop threads.
+ */
+public class Histogram {
+
+    /**
+     * Bucket upper bounds in nanoseconds.
+     */
+    static final long[] BOUNDS = {
+            100_000L, 500_000L, 1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L,
+            100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L, 10_000_000_000L};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder sum = new LongAdder();
+
+    public Histogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long duration) {
+        int index = 0;
+        while (index < BOUNDS.length && duration > BOUNDS[index]) {
+            index += 1;
+        }
+        buckets[index].increment();
+        sum.add(duration);
+    }
+
+    /**
+     * Record time elapsed since the start time from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startTime) {
+        record(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Cumulative counts for each bucket bound, with the last element counting all values.
+     */
+    public long[] getCounts() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            counts[i] = total;
+        }
+        return counts;
+    }
+
+    /**
+     * Sum of recorded values in nanoseconds.
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.metrics;
+
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Registry of latency histograms exported in Prometheus text format. When metrics are disabled no histograms are
+ * created and instrumented code skips timing completely.
+ */
+@Singleton
+public class MetricsRegistry {
+
+    public static final String HANDLER_DURATION = "traccar_handler_duration_seconds";
+    public static final String DECODER_DURATION = "traccar_decoder_duration_seconds";
+    public static final String STORAGE_DURATION = "traccar_storage_duration_seconds";
+    public static final String REQUEST_DURATION = "traccar_request_duration_seconds";
+
+    private static final String PREFIX = "traccar_";
+
+    private static final Map<String, String> HELP = Map.of(
+            HANDLER_DURATION, "Time spent in a pipeline handler, excluding following handlers",
+            DECODER_DURATION, "Time spent decoding a message, excluding following handlers",
+            STORAGE_DURATION, "Time spent executing a database query",
+            REQUEST_DURATION, "Time spent waiting for an external service");
+
+    private static final String[] BUCKET_LABELS = new String[Histogram.BOUNDS.length + 1];
+
+    static {
+        for (int i = 0; i < Histogram.BOUNDS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(Histogram.BOUNDS[i], 9).stripTrailingZeros().toPlainString();
+        }
+        BUCKET_LABELS[Histogram.BOUNDS.length] = "+Inf";
+    }
+
+    private static final class Family {
+
+        private final String label;
+        private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+        private Family(String label) {
+            this.label = label;
+        }
+
+    }
+
+    private final boolean enabled;
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    @Inject
+    public MetricsRegistry(Config config) {
+        enabled = config.getBoolean(Keys.METRICS_ENABLE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get histogram for the metric name and label value. Returns null if metrics are disabled.
+     */
+    public Histogram getHistogram(String name, String label, String value) {
+        if (!enabled) {
+            return null;
+        }
+        Family family = families.get(name);
+        if (family == null) {
+            family = families.computeIfAbsent(name, key -> new Family(label));
+        }
+        Histogram histogram = family.histograms.get(value);
+        if (histogram == null) {
+            histogram = family.histograms.computeIfAbsent(value, key -> new Histogram());
+        }
+        return histogram;
+    }
+
+    static String formatName(String key) {
+        StringBuilder result = new StringBuilder(PREFIX);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                result.append('_').append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c)) {
+                result.append(c);
+            } else {
+                result.append('_');
+            }
+        }
+        return result.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatSeconds(long nanoseconds) {
+        return Double.toString(nanoseconds / 1e9);
+    }
+
+    /**
+     * Format metric values and all histograms in Prometheus text exposition format. Values matching the counter
+     * predicate are exported as counters with the total suffix, others as gauges.
+     */
+    public String format(Map<String, Number> metrics, Predicate<String> counter) {
+        StringBuilder output = new StringBuilder();
+
+        for (Map.Entry<String, Number> entry : metrics.entrySet()) {
+            String name = formatName(entry.getKey());
+            if (counter.test(entry.getKey())) {
+                name += "_total";
+                output.append("# TYPE ").append(name).append(" counter\n");
+            } else {
+                output.append("# TYPE ").append(name).append(" gauge\n");
+            }
+            output.append(name).append(' ').append(entry.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, Family> familyEntry : families.entrySet()) {
+            String name = familyEntry.getKey();
+            Family family = familyEntry.getValue();
+            String help = HELP.get(name);
+            if (help != null) {
+                output.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            }
+            output.append("# TYPE ").append(name).append(" histogram\n");
+            for (Map.Entry<String, Histogram> entry : family.histograms.entrySet()) {
+                String label = family.label + "=\"" + escape(entry.getKey()) + "\"";
+                long[] counts = entry.getValue().getCounts();
+                for (int i = 0; i < counts.length; i++) {
+                    output.append(name).append("_bucket{").append(label)
+                            .append(",le=\"").append(BUCKET_LABELS[i]).append("\"} ").append(counts[i]).append('\n');
+                }
+                output.append(name).append("_sum{").append(label).append("} ")
+                        .append(formatSeconds(entry.getValue().getSum())).append('\n');
+                output.append(name).append("_count{").append(label).append("} ")
+                        .append(counts[counts.length - 1]).append('\n');
+            }
+        }
+
+        return output.toString();
+    }
+
+}
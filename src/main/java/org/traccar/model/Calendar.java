@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -23,6 +23,7 @@ import net.fortuna.ical4j.filter.Filter;
 import net.fortuna.ical4j.filter.predicate.PeriodRule;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
 import net.fortuna.ical4j.model.component.CalendarComponent;
 import net.fortuna.ical4j.model.component.VEvent;
 import org.traccar.storage.QueryIgnore;
@@ -31,14 +32,53 @@ import org.traccar.storage.StorageName;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @StorageName("tc_calendars")
 public class Calendar extends ExtendedModel {
 
+    private static final long SCHEDULE_PAST = TimeUnit.DAYS.toMillis(1);
+    private static final long SCHEDULE_FUTURE = TimeUnit.DAYS.toMillis(7);
+    private static final long SCHEDULE_REFRESH = TimeUnit.DAYS.toMillis(3);
+
+    /**
+     * Active intervals of the calendar within a time window. Intervals are merged and stored as sorted start and end
+     * pairs, so a moment is active if its insertion point falls after a start.
+     */
+    private static final class Schedule {
+
+        private final long from;
+        private final long to;
+        private final long refresh;
+        private final long[] intervals;
+
+        private Schedule(long from, long to, long refresh, long[] intervals) {
+            this.from = from;
+            this.to = to;
+            this.refresh = refresh;
+            this.intervals = intervals;
+        }
+
+        private boolean covers(long time) {
+            return time >= from && time < to;
+        }
+
+        private boolean contains(long time) {
+            int index = Arrays.binarySearch(intervals, time);
+            return index >= 0 ? index % 2 == 0 : (-index - 1) % 2 == 1;
+        }
+
+    }
+
     private String name;
 
     public String getName() {
@@ -58,11 +98,15 @@ public class Calendar extends ExtendedModel {
     public void setData(byte[] data) throws IOException, ParserException {
         CalendarBuilder builder = new CalendarBuilder();
         calendar = builder.build(new ByteArrayInputStream(data));
+        schedule = null;
         this.data = data;
     }
 
     private net.fortuna.ical4j.model.Calendar calendar;
 
+    private volatile Schedule schedule;
+    private final AtomicBoolean scheduling = new AtomicBoolean();
+
     @QueryIgnore
     @JsonIgnore
     public net.fortuna.ical4j.model.Calendar getCalendar() {
@@ -85,7 +129,66 @@ public class Calendar extends ExtendedModel {
                 .collect(Collectors.toSet());
     }
 
+    private Schedule createSchedule(long time) {
+        long from = time - SCHEDULE_PAST;
+        long to = time + SCHEDULE_FUTURE;
+        var window = new Period(new DateTime(from), new DateTime(to));
+        List<long[]> periods = new ArrayList<>();
+        for (VEvent event : calendar.<VEvent>getComponents(CalendarComponent.VEVENT)) {
+            PeriodList recurrenceSet = event.calculateRecurrenceSet(window);
+            for (Period period : recurrenceSet) {
+                long start = period.getStart().getTime();
+                long end = period.getEnd().getTime();
+                if (end > start) {
+                    periods.add(new long[] {start, end});
+                }
+            }
+        }
+        periods.sort(Comparator.comparingLong(period -> period[0]));
+
+        long[] intervals = new long[periods.size() * 2];
+        int count = 0;
+        for (long[] period : periods) {
+            if (count > 0 && period[0] <= intervals[count - 1]) {
+                intervals[count - 1] = Math.max(intervals[count - 1], period[1]);
+            } else {
+                intervals[count++] = period[0];
+                intervals[count++] = period[1];
+            }
+        }
+        return new Schedule(from, to, time + SCHEDULE_REFRESH, Arrays.copyOf(intervals, count));
+    }
+
+    private Schedule getSchedule() {
+        Schedule current = schedule;
+        long currentTime = System.currentTimeMillis();
+        if (current == null) {
+            current = createSchedule(currentTime);
+            schedule = current;
+        } else if (currentTime > current.refresh && scheduling.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                try {
+                    schedule = createSchedule(currentTime);
+                } finally {
+                    scheduling.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Check if the moment is covered by any calendar event. Moments around the current time are looked up in the
+     * precomputed schedule, others are evaluated directly.
+     */
     public boolean checkMoment(Date date) {
+        if (calendar == null) {
+            return false;
+        }
+        Schedule current = getSchedule();
+        if (current.covers(date.getTime())) {
+            return current.contains(date.getTime());
+        }
         return !findEvents(date).isEmpty();
     }
 
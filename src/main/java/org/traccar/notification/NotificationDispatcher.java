@@ -0,0 +1,302 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.notification;
+
+import io.netty.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.helper.RateLimiter;
+import org.traccar.model.Event;
+import org.traccar.model.Notification;
+import org.traccar.model.Position;
+import org.traccar.model.Typed;
+import org.traccar.model.User;
+import org.traccar.notificators.Notificator;
+import org.traccar.session.cache.CacheManager;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends notifications in the background. Each notificator type has its own bounded queue and worker pool, so a slow
+ * or unavailable delivery channel doesn't block position processing or other channels. Failed notifications are
+ * retried with exponential backoff and optional per type rate limits and duplicate suppression are applied.
+ */
+@Singleton
+public class NotificationDispatcher implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private static final int CLEANUP_SIZE = 10000;
+
+    private final Config config;
+    private final Timer timer;
+    private final CacheManager cacheManager;
+    private final NotificatorManager notificatorManager;
+
+    private final int queueSize;
+    private final int retryCount;
+    private final long retryDelay;
+
+    private final Map<String, NotificatorQueue> queues = new ConcurrentHashMap<>();
+    private volatile boolean running;
+
+    public final class NotificatorQueue {
+
+        private final String type;
+        private final ThreadPoolExecutor executor;
+        private final RateLimiter rateLimiter;
+        private final long coalesceWindow;
+
+        private final Map<String, Long> recent = new ConcurrentHashMap<>();
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder latency = new LongAdder();
+
+        private NotificatorQueue(String type) {
+            this.type = type;
+            String prefix = "notificator." + type;
+            int threads = Math.max(config.getInteger(Keys.NOTIFICATOR_THREADS.withPrefix(prefix)), 1);
+            executor = new ThreadPoolExecutor(
+                    threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+            rateLimiter = new RateLimiter(config.getInteger(Keys.NOTIFICATOR_RATE_LIMIT.withPrefix(prefix)));
+            coalesceWindow = TimeUnit.SECONDS.toMillis(
+                    config.getLong(Keys.NOTIFICATOR_COALESCE_WINDOW.withPrefix(prefix)));
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public int getQueueSize() {
+            return executor.getQueue().size();
+        }
+
+        public long getSent() {
+            return sent.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        public long getCoalesced() {
+            return coalesced.sum();
+        }
+
+        /**
+         * Total time from queueing to delivery of sent notifications in nanoseconds.
+         */
+        public long getLatency() {
+            return latency.sum();
+        }
+
+        private boolean coalesce(Task task) {
+            if (coalesceWindow <= 0) {
+                return false;
+            }
+            long currentTime = System.currentTimeMillis();
+            if (recent.size() >= CLEANUP_SIZE) {
+                recent.values().removeIf(time -> currentTime - time >= coalesceWindow);
+            }
+            String key = task.user.getId() + ":" + task.event.getDeviceId() + ":" + task.event.getType()
+                    + ":" + task.event.getGeofenceId() + ":" + task.event.getMaintenanceId();
+            boolean[] duplicate = new boolean[1];
+            recent.compute(key, (k, previous) -> {
+                if (previous != null && currentTime - previous < coalesceWindow) {
+                    duplicate[0] = true;
+                    return previous;
+                }
+                return currentTime;
+            });
+            return duplicate[0];
+        }
+
+        private void submit(Task task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                dropped.increment();
+                task.release();
+                LOGGER.warn("Notification queue full for {}", type);
+            }
+        }
+
+        private void stop() {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    LOGGER.warn("Notificator {} stopped with {} pending notifications", type, getQueueSize());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+    private final class Task implements Runnable {
+
+        private final NotificatorQueue queue;
+        private final Notification notification;
+        private final User user;
+        private final Event event;
+        private final Position position;
+        private final boolean referenced;
+        private final long queueTime = System.nanoTime();
+
+        private int retries;
+
+        private Task(
+                NotificatorQueue queue, Notification notification, User user, Event event, Position position) {
+            this.queue = queue;
+            this.notification = notification;
+            this.user = user;
+            this.event = event;
+            this.position = position;
+            boolean added = false;
+            try {
+                cacheManager.addDevice(event.getDeviceId());
+                added = true;
+            } catch (Exception e) {
+                LOGGER.warn("Notification device reference error", e);
+            }
+            referenced = added;
+        }
+
+        private void release() {
+            if (referenced) {
+                cacheManager.removeDevice(event.getDeviceId());
+            }
+        }
+
+        @Override
+        public void run() {
+            Notificator notificator;
+            try {
+                notificator = notificatorManager.getNotificator(queue.type);
+            } catch (RuntimeException e) {
+                queue.failed.increment();
+                release();
+                LOGGER.warn("Unknown notificator {}", queue.type, e);
+                return;
+            }
+            boolean pending = false;
+            try {
+                queue.rateLimiter.acquire();
+                notificator.send(notification, user, event, position);
+                queue.sent.increment();
+                queue.latency.add(System.nanoTime() - queueTime);
+            } catch (MessageException | RuntimeException e) {
+                if (running && retries < retryCount) {
+                    LOGGER.warn("Notification failed, retrying", e);
+                    timer.newTimeout(
+                            timeout -> queue.submit(this), retryDelay * (1L << retries++), TimeUnit.MILLISECONDS);
+                    pending = true;
+                } else {
+                    queue.failed.increment();
+                    LOGGER.warn("Notification failed", e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (!pending) {
+                    release();
+                }
+            }
+        }
+
+    }
+
+    @Inject
+    public NotificationDispatcher(
+            Config config, Timer timer, CacheManager cacheManager, NotificatorManager notificatorManager) {
+        this.config = config;
+        this.timer = timer;
+        this.cacheManager = cacheManager;
+        this.notificatorManager = notificatorManager;
+        queueSize = config.getInteger(Keys.NOTIFICATOR_QUEUE_SIZE);
+        retryCount = config.getInteger(Keys.NOTIFICATOR_RETRY_COUNT);
+        retryDelay = config.getLong(Keys.NOTIFICATOR_RETRY_DELAY);
+    }
+
+    public Map<String, NotificatorQueue> getQueues() {
+        return Collections.unmodifiableMap(queues);
+    }
+
+    /**
+     * Queue notification for delivery. If the dispatcher is not running, the notification is sent synchronously.
+     * Notifications for types that are not enabled in the configuration are dropped.
+     */
+    public void dispatch(
+            String type, Notification notification, User user, Event event, Position position) {
+        if (!running) {
+            try {
+                notificatorManager.getNotificator(type).send(notification, user, event, position);
+            } catch (MessageException | RuntimeException exception) {
+                LOGGER.warn("Notification failed", exception);
+            }
+            return;
+        }
+        NotificatorQueue queue = queues.get(type);
+        if (queue == null) {
+            LOGGER.warn("Unknown notificator {}", type);
+            return;
+        }
+        Task task = new Task(queue, notification, user, event, position);
+        if (queue.coalesce(task)) {
+            queue.coalesced.increment();
+            task.release();
+        } else {
+            queue.submit(task);
+        }
+    }
+
+    @Override
+    public void start() {
+        for (Typed type : notificatorManager.getAllNotificatorTypes()) {
+            queues.computeIfAbsent(type.getType(), NotificatorQueue::new);
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (NotificatorQueue queue : queues.values()) {
+            queue.stop();
+        }
+    }
+
+}
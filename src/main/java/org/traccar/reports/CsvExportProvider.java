@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,8 +22,16 @@ import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 
 import jakarta.inject.Inject;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.Objects;
@@ -42,12 +50,6 @@ public class CsvExportProvider {
     public void generate(
             OutputStream outputStream, long deviceId, Date from, Date to) throws StorageException {
 
-        var positions = PositionUtil.getPositions(storage, deviceId, from, to);
-
-        var attributes = positions.stream()
-                .flatMap((position -> position.getAttributes().keySet().stream()))
-                .collect(Collectors.toUnmodifiableSet());
-
         var properties = new LinkedHashMap<String, Function<Position, Object>>();
         properties.put("id", Position::getId);
         properties.put("deviceId", Position::getDeviceId);
@@ -63,13 +65,49 @@ public class CsvExportProvider {
         properties.put("course", Position::getCourse);
         properties.put("address", Position::getAddress);
         properties.put("accuracy", Position::getAccuracy);
-        attributes.forEach(key -> properties.put(key, position -> position.getAttributes().get(key)));
 
-        try (PrintWriter writer = new PrintWriter(outputStream)) {
-            writer.println(String.join(",", properties.keySet()));
-            positions.forEach(position -> writer.println(properties.values().stream()
-                    .map(f -> Objects.toString(f.apply(position), ""))
-                    .collect(Collectors.joining(","))));
+        // attribute columns are only known after the last row, so rows are spooled to a temporary file with their
+        // column count and padded when copied, which also releases the database connection before the client reads
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("export", ".csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(spool, StandardCharsets.UTF_8)) {
+                PositionUtil.streamPositions(storage, deviceId, from, to, position -> {
+                    for (String key : position.getAttributes().keySet()) {
+                        properties.computeIfAbsent(key, k -> p -> p.getAttributes().get(k));
+                    }
+                    try {
+                        writer.write(properties.size() + ",");
+                        writer.write(properties.values().stream()
+                                .map(f -> Objects.toString(f.apply(position), ""))
+                                .collect(Collectors.joining(",")));
+                        writer.newLine();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+
+            try (BufferedReader reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8);
+                 PrintWriter writer = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+                writer.println(String.join(",", properties.keySet()));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(',');
+                    int columns = Integer.parseInt(line.substring(0, separator));
+                    writer.print(line.substring(separator + 1));
+                    writer.println(",".repeat(properties.size() - columns));
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new StorageException(e);
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException ignored) {
+                }
+            }
         }
     }
 
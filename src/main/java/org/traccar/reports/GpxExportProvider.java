@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -43,7 +43,6 @@ public class GpxExportProvider {
 
         var device = storage.getObject(Device.class, new Request(
                 new Columns.All(), new Condition.Equals("id", deviceId)));
-        var positions = PositionUtil.getPositions(storage, deviceId, from, to);
 
         try (PrintWriter writer = new PrintWriter(outputStream)) {
             writer.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
@@ -53,7 +52,7 @@ public class GpxExportProvider {
             writer.print(device.getName());
             writer.print("</name>");
             writer.print("<trkseg>");
-            positions.forEach(position -> {
+            PositionUtil.streamPositions(storage, deviceId, from, to, position -> {
                 writer.print("<trkpt lat=\"");
                 writer.print(position.getLatitude());
                 writer.print("\" lon=\"");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2024 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -25,6 +25,7 @@ import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.model.Position;
+import org.traccar.reports.common.IgnitionAnalyzer;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.common.TripsConfig;
 import org.traccar.reports.model.DeviceReportSection;
@@ -42,9 +43,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Paths;
-import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class RouteReportProvider {
 
@@ -63,13 +64,18 @@ public class RouteReportProvider {
 
     public Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
                                            Date from, Date to) throws StorageException {
+        ArrayList<Position> result = new ArrayList<>();
+        getObjects(userId, deviceIds, groupIds, from, to, result::add);
+        return result;
+    }
+
+    public void getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+                           Date from, Date to, Consumer<Position> consumer) throws StorageException {
         reportUtils.checkPeriodLimit(from, to);
 
-        ArrayList<Position> result = new ArrayList<>();
         for (Device device : DeviceUtil.getAccessibleDevices(storage, userId, deviceIds, groupIds)) {
-            result.addAll(PositionUtil.getPositions(storage, device.getId(), from, to));
+            PositionUtil.streamPositions(storage, device.getId(), from, to, consumer);
         }
-        return result;
     }
 
 
@@ -112,58 +118,48 @@ public class RouteReportProvider {
         }
     }
 
+    /**
+     * Analyze ignition for each day of the period in a single ordered scan. Days start at the from time, and the last
+     * day is the one starting no later than the to time.
+     */
+    public List<IgnitionAnalyzer.Period> calculateIgnitionDays(
+            long deviceId, Date from, Date to, long threshold) throws StorageException {
+        List<Date> boundaries = new ArrayList<>();
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(from);
+        while (!calendar.getTime().after(to)) {
+            boundaries.add(calendar.getTime());
+            calendar.add(Calendar.DAY_OF_YEAR, 1);
+        }
+        if (boundaries.isEmpty()) {
+            return new ArrayList<>();
+        }
+        boundaries.add(calendar.getTime());
+        return calculateIgnition(deviceId, boundaries, threshold);
+    }
+
+    private List<IgnitionAnalyzer.Period> calculateIgnition(
+            long deviceId, List<Date> boundaries, long threshold) throws StorageException {
+        var analyzer = new IgnitionAnalyzer(boundaries, threshold);
+        PositionUtil.streamPositions(
+                storage, deviceId, boundaries.get(0), boundaries.get(boundaries.size() - 1), analyzer);
+        return analyzer.getPeriods();
+    }
+
     public String calculateIgnitionON(
             Long deviceId, Date from, Date to) throws StorageException {
-        long l = 0;
-        long timeStamp = 0;
-        long diffInSeconds = 0;
-        long diffInMinutes = 0;
-        long diffInHours = 0;
-
-        var positions = PositionUtil.getPositions(storage, deviceId, from, to);
-        if (!positions.isEmpty()) {
-            for (int i = 0; i < positions.size() - 1; i++) {
-                boolean Motion = positions.get(i).getBoolean(Position.KEY_MOTION);
-                if (Motion) {
-                    l = positions.get(i + 1).getFixTime().getTime() - positions.get(i).getFixTime().getTime();
-                    timeStamp += l;
-                }
-            }
-            Duration duration = Duration.ofMillis(timeStamp);
-            diffInHours = duration.toHours();
-            diffInMinutes = duration.toMinutesPart();
-            diffInSeconds = duration.toSecondsPart();
-        }
-        return String.format("%02d", diffInHours) + ":" + String.format("%02d", diffInMinutes) + ":" + String.format("%02d", diffInSeconds);
+        var period = calculateIgnition(deviceId, List.of(from, to), 0).get(0);
+        return IgnitionAnalyzer.formatDuration(period.getOnTime());
     }
 
-    public Collection<Map<Date, Long>> calculateIgnitionOff(Long deviceId, Date from, Date to, Long threshold) throws StorageException {
+    public Collection<Map<Date, Long>> calculateIgnitionOff(
+            Long deviceId, Date from, Date to, Long threshold) throws StorageException {
+        var period = calculateIgnition(deviceId, List.of(from, to), threshold != null ? threshold : 0).get(0);
         List<Map<Date, Long>> resultList = new ArrayList<>();
-        var positions = PositionUtil.getPositions(storage, deviceId, from, to);
-
-        if (!positions.isEmpty()) {
-            long totalTimeOff = 0;  // Total time ignition was off
-            Date lastTime = null;   // To track the last position's timestamp
-
-            for (int i = 0; i < positions.size() - 1; i++) {
-                boolean isMotion = positions.get(i).getBoolean(Position.KEY_MOTION);
-                if (!isMotion) {
-                    lastTime = positions.get(i).getFixTime();
-                    while (i < positions.size() - 1 && !positions.get(i).getBoolean(Position.KEY_MOTION)) {
-                        long timeDifference = positions.get(i + 1).getFixTime().getTime() - positions.get(i).getFixTime().getTime();
-                        totalTimeOff += timeDifference;
-                        i++;
-                    }
-                    long diffInMinutes = Duration.ofMillis(totalTimeOff).toMinutes();
-                    if (diffInMinutes > threshold) {
-                        Map<Date, Long> result = new HashMap<>();
-                        result.put(lastTime, diffInMinutes);
-                        resultList.add(result);
-                    }
-                    totalTimeOff = 0; // Reset time for the next period
-                }
-            }
+        for (var offPeriod : period.getOffPeriods()) {
+            resultList.add(Map.of(offPeriod.getStartTime(), offPeriod.getMinutes()));
         }
         return resultList;
     }
+
 }
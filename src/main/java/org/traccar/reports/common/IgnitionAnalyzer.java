@@ -0,0 +1,163 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.common;
+
+import org.traccar.model.Position;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Single pass ignition analytics. Positions ordered by fix time are split into consecutive periods, and for each
+ * period the time in motion and the stationary intervals longer than the threshold are calculated.
+ */
+public class IgnitionAnalyzer implements Consumer<Position> {
+
+    public static class OffPeriod {
+
+        private final Date startTime;
+        private final long minutes;
+
+        public OffPeriod(Date startTime, long minutes) {
+            this.startTime = startTime;
+            this.minutes = minutes;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        public long getMinutes() {
+            return minutes;
+        }
+
+    }
+
+    public static class Period {
+
+        private final Date startTime;
+        private long onTime;
+        private final List<OffPeriod> offPeriods = new ArrayList<>();
+
+        public Period(Date startTime) {
+            this.startTime = startTime;
+        }
+
+        public Date getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * Time in motion in milliseconds.
+         */
+        public long getOnTime() {
+            return onTime;
+        }
+
+        public List<OffPeriod> getOffPeriods() {
+            return offPeriods;
+        }
+
+    }
+
+    private final Date[] boundaries;
+    private final long threshold;
+    private final List<Period> periods = new ArrayList<>();
+
+    private int index;
+    private Position previous;
+    private Date offStart;
+    private long offTime;
+
+    /**
+     * @param boundaries start times of consecutive periods followed by the end time of the last one
+     * @param threshold minimum stationary interval in minutes to report
+     */
+    public IgnitionAnalyzer(List<Date> boundaries, long threshold) {
+        this.boundaries = boundaries.toArray(new Date[0]);
+        this.threshold = threshold;
+        for (int i = 0; i < this.boundaries.length - 1; i++) {
+            periods.add(new Period(this.boundaries[i]));
+        }
+    }
+
+    @Override
+    public void accept(Position position) {
+        long time = position.getFixTime().getTime();
+        if (time < boundaries[0].getTime()) {
+            return;
+        }
+        while (index < periods.size() && time >= boundaries[index + 1].getTime()) {
+            closePeriod();
+            index += 1;
+        }
+        if (index >= periods.size()) {
+            return;
+        }
+
+        Period period = periods.get(index);
+        if (previous != null) {
+            long interval = time - previous.getFixTime().getTime();
+            if (previous.getBoolean(Position.KEY_MOTION)) {
+                period.onTime += interval;
+            } else {
+                if (offStart == null) {
+                    offStart = previous.getFixTime();
+                }
+                offTime += interval;
+                if (position.getBoolean(Position.KEY_MOTION)) {
+                    closeOff(period);
+                }
+            }
+        }
+        previous = position;
+    }
+
+    private void closeOff(Period period) {
+        if (offStart != null) {
+            long minutes = Duration.ofMillis(offTime).toMinutes();
+            if (minutes > threshold) {
+                period.offPeriods.add(new OffPeriod(offStart, minutes));
+            }
+        }
+        offStart = null;
+        offTime = 0;
+    }
+
+    private void closePeriod() {
+        if (index < periods.size()) {
+            closeOff(periods.get(index));
+        }
+        previous = null;
+    }
+
+    /**
+     * Complete the analysis after the last position and return results for all periods.
+     */
+    public List<Period> getPeriods() {
+        closePeriod();
+        return periods;
+    }
+
+    public static String formatDuration(long milliseconds) {
+        Duration duration = Duration.ofMillis(milliseconds);
+        return String.format("%02d:%02d:%02d", duration.toHours(), duration.toMinutesPart(), duration.toSecondsPart());
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2023 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,9 +18,11 @@ package org.traccar.schedule;
 import jakarta.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.Storage;
-import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
@@ -35,10 +37,12 @@ public class TaskDeleteTemporary implements ScheduleTask {
     private static final long CHECK_PERIOD_HOURS = 1;
 
     private final Storage storage;
+    private final CacheManager cacheManager;
 
     @Inject
-    public TaskDeleteTemporary(Storage storage) {
+    public TaskDeleteTemporary(Storage storage, CacheManager cacheManager) {
         this.storage = storage;
+        this.cacheManager = cacheManager;
     }
 
     @Override
@@ -49,11 +53,17 @@ public class TaskDeleteTemporary implements ScheduleTask {
     @Override
     public void run() {
         try {
-           storage.removeObject(User.class, new Request(
-                    new Condition.And(
-                            new Condition.Equals("temporary", true),
-                            new Condition.Compare("expirationTime", "<", "time", new Date()))));
-        } catch (StorageException e) {
+            Condition condition = new Condition.And(
+                    new Condition.Equals("temporary", true),
+                    new Condition.Compare("expirationTime", "<", "time", new Date()));
+            var users = storage.getObjects(User.class, new Request(new Columns.Include("id"), condition));
+            if (!users.isEmpty()) {
+                storage.removeObject(User.class, new Request(condition));
+                for (User user : users) {
+                    cacheManager.invalidateObject(true, User.class, user.getId(), ObjectOperation.DELETE);
+                }
+            }
+        } catch (Exception e) {
             LOGGER.warn("Failed to delete temporary users", e);
         }
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2023 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,10 +21,12 @@ import com.google.inject.servlet.ServletScopes;
 import net.fortuna.ical4j.model.Period;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.broadcast.BroadcastInterface;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Calendar;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.Report;
 import org.traccar.model.User;
 import org.traccar.reports.EventsReportProvider;
@@ -33,6 +35,7 @@ import org.traccar.reports.StopsReportProvider;
 import org.traccar.reports.SummaryReportProvider;
 import org.traccar.reports.TripsReportProvider;
 import org.traccar.reports.common.ReportMailer;
+import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
@@ -43,11 +46,13 @@ import jakarta.inject.Inject;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-public class TaskReports implements ScheduleTask {
+public class TaskReports implements ScheduleTask, BroadcastInterface {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TaskReports.class);
 
@@ -56,10 +61,33 @@ public class TaskReports implements ScheduleTask {
     private final Storage storage;
     private final Injector injector;
 
+    private final Map<Long, Calendar> calendars = new ConcurrentHashMap<>();
+
     @Inject
-    public TaskReports(Storage storage, Injector injector) {
+    public TaskReports(Storage storage, Injector injector, CacheManager cacheManager) {
         this.storage = storage;
         this.injector = injector;
+        cacheManager.registerListener(this);
+    }
+
+    @Override
+    public <T extends BaseModel> void invalidateObject(
+            boolean local, Class<T> clazz, long id, ObjectOperation operation) {
+        if (clazz.equals(Calendar.class)) {
+            calendars.remove(id);
+        }
+    }
+
+    private Calendar getCalendar(long calendarId) throws StorageException {
+        Calendar calendar = calendars.get(calendarId);
+        if (calendar == null) {
+            calendar = storage.getObject(Calendar.class, new Request(
+                    new Columns.All(), new Condition.Equals("id", calendarId)));
+            if (calendar != null) {
+                calendars.put(calendarId, calendar);
+            }
+        }
+        return calendar;
     }
 
     @Override
@@ -74,8 +102,7 @@ public class TaskReports implements ScheduleTask {
 
         try {
             for (Report report : storage.getObjects(Report.class, new Request(new Columns.All()))) {
-                Calendar calendar = storage.getObject(Calendar.class, new Request(
-                        new Columns.All(), new Condition.Equals("id", report.getCalendarId())));
+                Calendar calendar = getCalendar(report.getCalendarId());
 
                 var lastEvents = calendar.findPeriods(lastCheck);
                 var currentEvents = calendar.findPeriods(currentCheck);
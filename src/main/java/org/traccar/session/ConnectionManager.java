@@ -26,11 +26,13 @@ import org.traccar.broadcast.BroadcastService;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.database.DeviceLookupService;
+import org.traccar.database.DeviceStateWriter;
 import org.traccar.database.NotificationManager;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.LogRecord;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.Position;
 import org.traccar.model.User;
 import org.traccar.session.cache.CacheManager;
@@ -40,6 +42,7 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import jakarta.annotation.Nullable;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.net.InetSocketAddress;
@@ -48,14 +51,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Singleton
 public class ConnectionManager implements BroadcastInterface {
@@ -76,19 +76,23 @@ public class ConnectionManager implements BroadcastInterface {
     private final Timer timer;
     private final BroadcastService broadcastService;
     private final DeviceLookupService deviceLookupService;
+    private final DeviceStateWriter deviceStateWriter;
 
-    private final Map<Long, Set<UpdateListener>> listeners = new HashMap<>();
-    private final Map<Long, Set<Long>> userDevices = new HashMap<>();
-    private final Map<Long, Set<Long>> deviceUsers = new HashMap<>();
+    private final Map<Long, Set<UpdateListener>> listeners = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> userDevices = new ConcurrentHashMap<>();
+    private final Map<Long, Set<UpdateListener>> deviceListeners = new ConcurrentHashMap<>();
+    private final Map<UpdateListener, UpdateSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final Map<UpdateListener, Set<Long>> outsideDevices = new ConcurrentHashMap<>();
 
 
     private final Map<Long, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Map<Long, Long> onlineTimes = new ConcurrentHashMap<>();
 
     @Inject
     public ConnectionManager(
             Config config, CacheManager cacheManager, Storage storage,
             NotificationManager notificationManager, Timer timer, BroadcastService broadcastService,
-            DeviceLookupService deviceLookupService) {
+            DeviceLookupService deviceLookupService, @Nullable DeviceStateWriter deviceStateWriter) {
         this.config = config;
         this.cacheManager = cacheManager;
         this.storage = storage;
@@ -96,6 +100,7 @@ public class ConnectionManager implements BroadcastInterface {
         this.timer = timer;
         this.broadcastService = broadcastService;
         this.deviceLookupService = deviceLookupService;
+        this.deviceStateWriter = deviceStateWriter;
         deviceTimeout = config.getLong(Keys.STATUS_TIMEOUT);
         showUnknownDevices = config.getBoolean(Keys.WEB_SHOW_UNKNOWN_DEVICES);
         broadcastService.registerListener(this);
@@ -180,11 +185,17 @@ public class ConnectionManager implements BroadcastInterface {
         try {
             device.setId(storage.addObject(device, new Request(new Columns.Exclude("id"))));
             LOGGER.info("Automatically registered " + uniqueId);
-            return device;
         } catch (StorageException e) {
             LOGGER.warn("Automatic registration failed", e);
             return null;
         }
+
+        try {
+            cacheManager.invalidateObject(true, Device.class, device.getId(), ObjectOperation.ADD);
+        } catch (Exception e) {
+            LOGGER.warn("Registered device invalidation failed", e);
+        }
+        return device;
     }
 
     public void deviceDisconnected(Channel channel, boolean supportsOffline) throws StorageException {
@@ -270,31 +281,49 @@ public class ConnectionManager implements BroadcastInterface {
             device.setLastUpdate(time);
         }
 
-        Timeout timeout = timeouts.remove(deviceId);
-        if (timeout != null) {
-            timeout.cancel();
-        }
-
         if (status.equals(Device.STATUS_ONLINE)) {
-            timeouts.put(deviceId, timer.newTimeout(timeout1 -> {
-                if (!timeout1.isCancelled()) {
-                    deviceUnknown(deviceId);
-                }
-            }, deviceTimeout, TimeUnit.SECONDS));
+            onlineTimes.put(deviceId, System.currentTimeMillis());
+            if (!timeouts.containsKey(deviceId)) {
+                scheduleTimeout(deviceId, TimeUnit.SECONDS.toMillis(deviceTimeout));
+            }
+        } else {
+            onlineTimes.remove(deviceId);
+            Timeout timeout = timeouts.remove(deviceId);
+            if (timeout != null) {
+                timeout.cancel();
+            }
         }
 
-        try {
-            storage.updateObject(device, new Request(
-                    new Columns.Include("status", "lastUpdate"),
-                    new Condition.Equals("id", deviceId)));
-        } catch (StorageException e) {
-            LOGGER.warn("Update device status error", e);
+        if (deviceStateWriter != null) {
+            deviceStateWriter.update(device, !status.equals(oldStatus), "status", "lastUpdate");
+        } else {
+            try {
+                storage.updateObject(device, new Request(
+                        new Columns.Include("status", "lastUpdate"),
+                        new Condition.Equals("id", deviceId)));
+            } catch (StorageException e) {
+                LOGGER.warn("Update device status error", e);
+            }
         }
 
         updateDevice(true, device);
     }
 
-    public synchronized void sendKeepalive() {
+    private void scheduleTimeout(long deviceId, long delay) {
+        timeouts.put(deviceId, timer.newTimeout(timeout -> {
+            if (!timeout.isCancelled() && timeouts.remove(deviceId, timeout)) {
+                long remaining = onlineTimes.getOrDefault(deviceId, 0L)
+                        + TimeUnit.SECONDS.toMillis(deviceTimeout) - System.currentTimeMillis();
+                if (remaining > 0) {
+                    scheduleTimeout(deviceId, remaining);
+                } else {
+                    deviceUnknown(deviceId);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+    }
+
+    public void sendKeepalive() {
         for (Set<UpdateListener> userListeners : listeners.values()) {
             for (UpdateListener listener : userListeners) {
                 listener.onKeepalive();
@@ -303,44 +332,37 @@ public class ConnectionManager implements BroadcastInterface {
     }
 
     @Override
-    public synchronized void updateDevice(boolean local, Device device) throws StorageException {
+    public void updateDevice(boolean local, Device device) throws StorageException {
         if (local) {
             broadcastService.updateDevice(true, device);
         } else if (Device.STATUS_ONLINE.equals(device.getStatus())) {
             timeouts.remove(device.getId());
             removeDeviceSession(device.getId());
         }
-        for (long userId : deviceUsers.getOrDefault(device.getId(), Collections.emptySet())) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
-                    storage.getPermissions(User.class,userId,Device.class,device.getId());
-                    listener.onUpdateDevice(device);
-                }
-            }
+        for (UpdateListener listener : deviceListeners.getOrDefault(device.getId(), Collections.emptySet())) {
+            listener.onUpdateDevice(device);
         }
     }
 
     @Override
-    public synchronized void updatePosition(boolean local, Position position) {
+    public void updatePosition(boolean local, Position position) {
         if (local) {
             broadcastService.updatePosition(true, position);
         }
-        for (long userId : deviceUsers.getOrDefault(position.getDeviceId(), Collections.emptySet())) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
-                    listener.onUpdatePosition(position);
-                }
+        for (UpdateListener listener : deviceListeners.getOrDefault(position.getDeviceId(), Collections.emptySet())) {
+            if (isVisible(listener, position)) {
+                listener.onUpdatePosition(position);
             }
         }
     }
 
     @Override
-    public synchronized void updateEvent(boolean local, long userId, Event event) {
+    public void updateEvent(boolean local, long userId, Event event) {
         if (local) {
             broadcastService.updateEvent(true, userId, event);
         }
-        if (listeners.containsKey(userId)) {
-            for (UpdateListener listener : listeners.get(userId)) {
+        for (UpdateListener listener : listeners.getOrDefault(userId, Collections.emptySet())) {
+            if (event.getDeviceId() == 0 || getSubscription(listener).containsDevice(event.getDeviceId())) {
                 listener.onUpdateEvent(event);
             }
         }
@@ -352,12 +374,16 @@ public class ConnectionManager implements BroadcastInterface {
         if (link && clazz1.equals(User.class) && clazz2.equals(Device.class)) {
             if (listeners.containsKey(id1)) {
                 userDevices.get(id1).add(id2);
-                deviceUsers.put(id2, new HashSet<>(List.of(id1)));
+                for (UpdateListener listener : listeners.get(id1)) {
+                    if (getSubscription(listener).containsDevice(id2)) {
+                        deviceListeners.computeIfAbsent(id2, id -> ConcurrentHashMap.newKeySet()).add(listener);
+                    }
+                }
             }
         }
     }
 
-    public synchronized void updateLog(LogRecord record) {
+    public void updateLog(LogRecord record) {
         var sessions = sessionsByEndpoint.getOrDefault(record.getAddress(), Map.of());
         if (sessions.isEmpty()) {
             String unknownUniqueId = unknownByEndpoint.get(record.getAddress());
@@ -371,10 +397,8 @@ public class ConnectionManager implements BroadcastInterface {
             var firstEntry = sessions.entrySet().iterator().next();
             record.setUniqueId(firstEntry.getKey());
             record.setDeviceId(firstEntry.getValue().getDeviceId());
-            for (long userId : deviceUsers.getOrDefault(record.getDeviceId(), Set.of())) {
-                for (UpdateListener listener : listeners.getOrDefault(userId, Set.of())) {
-                    listener.onUpdateLog(record);
-                }
+            for (UpdateListener listener : deviceListeners.getOrDefault(record.getDeviceId(), Set.of())) {
+                listener.onUpdateLog(record);
             }
         }
     }
@@ -387,30 +411,88 @@ public class ConnectionManager implements BroadcastInterface {
         void onUpdateLog(LogRecord record);
     }
 
+    private UpdateSubscription getSubscription(UpdateListener listener) {
+        return subscriptions.getOrDefault(listener, UpdateSubscription.ALL);
+    }
+
+    /**
+     * Positions outside of the subscription area are skipped, except the first one after the device leaves the area,
+     * so the client doesn't keep showing the device at its last position inside. Devices are assumed to be inside
+     * when the subscription changes, so the first position outside is always sent.
+     */
+    private boolean isVisible(UpdateListener listener, Position position) {
+        UpdateSubscription subscription = getSubscription(listener);
+        if (!subscription.hasArea()) {
+            return true;
+        }
+        Set<Long> outside = outsideDevices.get(listener);
+        if (subscription.contains(position)) {
+            if (outside != null) {
+                outside.remove(position.getDeviceId());
+            }
+            return true;
+        }
+        return outside != null && outside.add(position.getDeviceId());
+    }
+
+    private void indexListener(long userId, UpdateListener listener, UpdateSubscription subscription) {
+        for (long deviceId : userDevices.getOrDefault(userId, Set.of())) {
+            if (subscription.containsDevice(deviceId)) {
+                deviceListeners.computeIfAbsent(deviceId, id -> ConcurrentHashMap.newKeySet()).add(listener);
+            }
+        }
+    }
+
+    private void unindexListener(long userId, UpdateListener listener) {
+        for (long deviceId : userDevices.getOrDefault(userId, Set.of())) {
+            deviceListeners.computeIfPresent(deviceId, (id, deviceSet) -> {
+                deviceSet.remove(listener);
+                return deviceSet.isEmpty() ? null : deviceSet;
+            });
+        }
+    }
+
     public synchronized void addListener(long userId, UpdateListener listener) throws StorageException {
         var set = listeners.get(userId);
         if (set == null) {
-            set = new HashSet<>();
-            listeners.put(userId, set);
+            set = ConcurrentHashMap.newKeySet();
 
             var devices = storage.getObjects(Device.class, new Request(
                     new Columns.Include("id"), new Condition.Permission(User.class, userId, Device.class)));
-            userDevices.put(userId, devices.stream().map(BaseModel::getId).collect(Collectors.toSet()));
-            devices.forEach(device -> deviceUsers.computeIfAbsent(device.getId(), id -> new HashSet<>()).add(userId));
+            Set<Long> deviceIds = ConcurrentHashMap.newKeySet();
+            devices.forEach(device -> deviceIds.add(device.getId()));
+            userDevices.put(userId, deviceIds);
+            listeners.put(userId, set);
         }
         set.add(listener);
+        indexListener(userId, listener, getSubscription(listener));
+    }
+
+    /**
+     * Limit updates sent to the listener. Only devices matching the subscription are indexed for the listener, so
+     * other updates are not delivered to it at all.
+     */
+    public synchronized void updateSubscription(long userId, UpdateListener listener, UpdateSubscription subscription) {
+        subscriptions.put(listener, subscription);
+        outsideDevices.put(listener, ConcurrentHashMap.newKeySet());
+        if (listeners.getOrDefault(userId, Set.of()).contains(listener)) {
+            unindexListener(userId, listener);
+            indexListener(userId, listener, subscription);
+        }
     }
 
     public synchronized void removeListener(long userId, UpdateListener listener) {
         var set = listeners.get(userId);
+        if (set == null) {
+            return;
+        }
         set.remove(listener);
+        unindexListener(userId, listener);
+        subscriptions.remove(listener);
+        outsideDevices.remove(listener);
         if (set.isEmpty()) {
             listeners.remove(userId);
-
-            userDevices.remove(userId).forEach(deviceId -> deviceUsers.computeIfPresent(deviceId, (x, userIds) -> {
-                userIds.remove(userId);
-                return userIds.isEmpty() ? null : userIds;
-            }));
+            userDevices.remove(userId);
         }
     }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.session;
+
+import org.traccar.model.Position;
+
+import java.util.Set;
+
+/**
+ * Live updates requested by a client connection. Unset device ids or area match every device accessible to the user.
+ * Instances are immutable, so they can be shared between threads.
+ */
+public final class UpdateSubscription {
+
+    public static final UpdateSubscription ALL = new UpdateSubscription(null, 0);
+
+    private final Set<Long> deviceIds;
+    private final long interval;
+
+    private final boolean area;
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    public UpdateSubscription(Set<Long> deviceIds, long interval) {
+        this(deviceIds, interval, false, 0, 0, 0, 0);
+    }
+
+    /**
+     * Create subscription limited to bounding box of the map view. Minimum longitude greater than maximum means the
+     * box crosses 180th meridian.
+     */
+    public UpdateSubscription(
+            Set<Long> deviceIds, long interval,
+            double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this(deviceIds, interval, true, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    private UpdateSubscription(
+            Set<Long> deviceIds, long interval, boolean area,
+            double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        this.deviceIds = deviceIds != null ? Set.copyOf(deviceIds) : null;
+        this.interval = interval;
+        this.area = area;
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    public Set<Long> getDeviceIds() {
+        return deviceIds;
+    }
+
+    public boolean hasArea() {
+        return area;
+    }
+
+    /**
+     * Minimum interval between position updates of the same device in milliseconds.
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    public boolean containsDevice(long deviceId) {
+        return deviceIds == null || deviceIds.contains(deviceId);
+    }
+
+    public boolean contains(Position position) {
+        if (!area) {
+            return true;
+        }
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        if (minLongitude <= maxLongitude) {
+            return longitude >= minLongitude && longitude <= maxLongitude;
+        } else {
+            return longitude >= minLongitude || longitude <= maxLongitude;
+        }
+    }
+
+}
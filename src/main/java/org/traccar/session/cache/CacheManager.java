@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 - 2023 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,7 @@ import jakarta.inject.Singleton;
 import org.traccar.broadcast.BroadcastInterface;
 import org.traccar.broadcast.BroadcastService;
 import org.traccar.config.Config;
+import org.traccar.geofence.GeofenceIndex;
 import org.traccar.model.Attribute;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Calendar;
@@ -42,12 +43,12 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -59,135 +60,206 @@ public class CacheManager implements BroadcastInterface {
     private final Config config;
     private final Storage storage;
     private final BroadcastService broadcastService;
+    private final LatestPositionStore latestPositionStore;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock lock = new ReentrantLock();
 
     private final CacheGraph graph = new CacheGraph();
 
-    private Server server;
-    private final Map<Long, Position> devicePositions = new HashMap<>();
-    private final Map<Long, AtomicInteger> deviceReferences = new HashMap<>();
+    private volatile Server server;
+    private final Map<Long, Position> devicePositions = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> deviceReferences = new ConcurrentHashMap<>();
+
+    private final Map<Long, Map<Class<? extends BaseModel>, Set<? extends BaseModel>>> deviceObjects =
+            new ConcurrentHashMap<>();
+    private final Map<Long, Set<Notification>> deviceNotifications = new ConcurrentHashMap<>();
+    private final Map<Long, GeofenceIndex> deviceGeofences = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Object>> deviceAttributes = new ConcurrentHashMap<>();
+
+    private final Set<BroadcastInterface> listeners = ConcurrentHashMap.newKeySet();
 
     @Inject
-    public CacheManager(Config config, Storage storage, BroadcastService broadcastService) throws StorageException {
+    public CacheManager(
+            Config config, Storage storage, BroadcastService broadcastService,
+            LatestPositionStore latestPositionStore) throws StorageException {
         this.config = config;
         this.storage = storage;
         this.broadcastService = broadcastService;
+        this.latestPositionStore = latestPositionStore;
         server = storage.getObject(Server.class, new Request(new Columns.All()));
         broadcastService.registerListener(this);
     }
 
     @Override
     public String toString() {
-        return graph.toString();
+        try {
+            lock.lock();
+            return graph.toString();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public Config getConfig() {
         return config;
     }
 
+    /**
+     * Register a listener notified about object and permission changes after the cache is updated.
+     */
+    public void registerListener(BroadcastInterface listener) {
+        listeners.add(listener);
+    }
+
     public <T extends BaseModel> T getObject(Class<T> clazz, long id) {
-        try {
-            lock.readLock().lock();
-            return graph.getObject(clazz, id);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return graph.getObject(clazz, id);
     }
 
+    @SuppressWarnings("unchecked")
     public <T extends BaseModel> Set<T> getDeviceObjects(long deviceId, Class<T> clazz) {
-        try {
-            lock.readLock().lock();
-            return graph.getObjects(Device.class, deviceId, clazz, Set.of(Group.class), true)
-                    .collect(Collectors.toUnmodifiableSet());
-        } finally {
-            lock.readLock().unlock();
+        var objects = deviceObjects.get(deviceId);
+        Set<T> result = objects != null ? (Set<T>) objects.get(clazz) : null;
+        if (result == null) {
+            try {
+                lock.lock();
+                result = graph.getObjects(Device.class, deviceId, clazz, Set.of(Group.class), true)
+                        .collect(Collectors.toUnmodifiableSet());
+                if (graph.getObject(Device.class, deviceId) != null) {
+                    deviceObjects.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>()).put(clazz, result);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
+        return result;
     }
 
-    public Position getPosition(long deviceId) {
-        try {
-            lock.readLock().lock();
-            return devicePositions.get(deviceId);
-        } finally {
-            lock.readLock().unlock();
+    public GeofenceIndex getDeviceGeofences(long deviceId) {
+        GeofenceIndex index = deviceGeofences.get(deviceId);
+        if (index == null) {
+            try {
+                lock.lock();
+                index = new GeofenceIndex(config, getDeviceObjects(deviceId, Geofence.class));
+                if (graph.getObject(Device.class, deviceId) != null) {
+                    deviceGeofences.put(deviceId, index);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
+        return index;
+    }
+
+    public Position getPosition(long deviceId) {
+        return devicePositions.get(deviceId);
     }
 
     public Server getServer() {
-        try {
-            lock.readLock().lock();
-            return server;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return server;
     }
 
     public Set<User> getNotificationUsers(long notificationId, long deviceId) {
+        Set<User> deviceUsers = getDeviceObjects(deviceId, User.class);
         try {
-            lock.readLock().lock();
-            Set<User> deviceUsers = getDeviceObjects(deviceId, User.class);
+            lock.lock();
             return graph.getObjects(Notification.class, notificationId, User.class, Set.of(), false)
                     .filter(deviceUsers::contains)
                     .collect(Collectors.toUnmodifiableSet());
         } finally {
-            lock.readLock().unlock();
+            lock.unlock();
         }
     }
 
     public Set<Notification> getDeviceNotifications(long deviceId) {
-        try {
-            lock.readLock().lock();
-            var direct = graph.getObjects(Device.class, deviceId, Notification.class, Set.of(Group.class), true)
-                    .map(BaseModel::getId)
-                    .collect(Collectors.toUnmodifiableSet());
-            return graph.getObjects(Device.class, deviceId, Notification.class, Set.of(Group.class, User.class), true)
-                    .filter(notification -> notification.getAlways() || direct.contains(notification.getId()))
-                    .collect(Collectors.toUnmodifiableSet());
-        } finally {
-            lock.readLock().unlock();
+        Set<Notification> result = deviceNotifications.get(deviceId);
+        if (result == null) {
+            try {
+                lock.lock();
+                var direct = graph.getObjects(Device.class, deviceId, Notification.class, Set.of(Group.class), true)
+                        .map(BaseModel::getId)
+                        .collect(Collectors.toUnmodifiableSet());
+                result = graph.getObjects(
+                        Device.class, deviceId, Notification.class, Set.of(Group.class, User.class), true)
+                        .filter(notification -> notification.getAlways() || direct.contains(notification.getId()))
+                        .collect(Collectors.toUnmodifiableSet());
+                if (graph.getObject(Device.class, deviceId) != null) {
+                    deviceNotifications.put(deviceId, result);
+                }
+            } finally {
+                lock.unlock();
+            }
         }
+        return result;
+    }
+
+    /**
+     * Resolved attribute values for the device, keyed by attribute name. The map is populated lazily by
+     * {@link org.traccar.helper.model.AttributeUtil} and dropped whenever device, group or server changes. Returns
+     * null if the device is not cached.
+     */
+    public Map<String, Object> getDeviceAttributes(long deviceId) {
+        Map<String, Object> result = deviceAttributes.get(deviceId);
+        if (result == null && graph.getObject(Device.class, deviceId) != null) {
+            result = deviceAttributes.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>());
+        }
+        return result;
+    }
+
+    private void invalidateResolved(long deviceId) {
+        deviceObjects.remove(deviceId);
+        deviceNotifications.remove(deviceId);
+        deviceGeofences.remove(deviceId);
+        deviceAttributes.remove(deviceId);
+    }
+
+    private void invalidateResolved() {
+        deviceObjects.clear();
+        deviceNotifications.clear();
+        deviceGeofences.clear();
+        deviceAttributes.clear();
     }
 
     public void addDevice(long deviceId) throws Exception {
         try {
-            lock.writeLock().lock();
+            lock.lock();
             if (deviceReferences.computeIfAbsent(deviceId, k -> new AtomicInteger()).getAndIncrement() <= 0) {
                 Device device = storage.getObject(Device.class, new Request(
                         new Columns.All(), new Condition.Equals("id", deviceId)));
                 graph.addObject(device);
                 initializeCache(device);
+                invalidateResolved(deviceId);
                 if (device.getPositionId() > 0) {
                     devicePositions.put(deviceId, storage.getObject(Position.class, new Request(
                             new Columns.All(), new Condition.Equals("id", device.getPositionId()))));
                 }
             }
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
     public void removeDevice(long deviceId) {
         try {
-            lock.writeLock().lock();
+            lock.lock();
             if (deviceReferences.computeIfAbsent(deviceId, k -> new AtomicInteger()).incrementAndGet() <= 0) {
                 graph.removeObject(Device.class, deviceId);
-                devicePositions.remove(deviceId);
+                invalidateResolved(deviceId);
                 deviceReferences.remove(deviceId);
+                devicePositions.remove(deviceId);
             }
         } finally {
-            lock.writeLock().unlock();
+            lock.unlock();
         }
     }
 
     public void updatePosition(Position position) {
-        try {
-            lock.writeLock().lock();
-            if (deviceReferences.containsKey(position.getDeviceId())) {
-                devicePositions.put(position.getDeviceId(), position);
+        latestPositionStore.update(position);
+        long deviceId = position.getDeviceId();
+        if (deviceReferences.containsKey(deviceId)) {
+            devicePositions.put(deviceId, position);
+            if (!deviceReferences.containsKey(deviceId)) {
+                devicePositions.remove(deviceId, position);
             }
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
@@ -198,53 +270,76 @@ public class CacheManager implements BroadcastInterface {
             broadcastService.invalidateObject(true, clazz, id, operation);
         }
 
-        if (operation == ObjectOperation.DELETE) {
-            graph.removeObject(clazz, id);
-        }
-        if (operation != ObjectOperation.UPDATE) {
-            return;
+        try {
+            invalidateCache(clazz, id, operation);
+        } finally {
+            for (BroadcastInterface listener : listeners) {
+                listener.invalidateObject(false, clazz, id, operation);
+            }
         }
+    }
 
-        if (clazz.equals(Server.class)) {
-            server = storage.getObject(Server.class, new Request(new Columns.All()));
-            return;
-        }
+    private <T extends BaseModel> void invalidateCache(
+            Class<T> clazz, long id, ObjectOperation operation) throws Exception {
 
-        var after = storage.getObject(clazz, new Request(new Columns.All(), new Condition.Equals("id", id)));
-        if (after == null) {
-            return;
-        }
-        var before = getObject(after.getClass(), after.getId());
-        if (before == null) {
+        if (operation == ObjectOperation.UPDATE && clazz.equals(Server.class)) {
+            server = storage.getObject(Server.class, new Request(new Columns.All()));
+            deviceAttributes.clear();
             return;
         }
 
-        if (after instanceof GroupedModel) {
-            long beforeGroupId = ((GroupedModel) before).getGroupId();
-            long afterGroupId = ((GroupedModel) after).getGroupId();
-            if (beforeGroupId != afterGroupId) {
-                if (beforeGroupId > 0) {
-                    invalidatePermission(clazz, id, Group.class, beforeGroupId, false);
-                }
-                if (afterGroupId > 0) {
-                    invalidatePermission(clazz, id, Group.class, afterGroupId, true);
+        try {
+            lock.lock();
+            if (operation == ObjectOperation.DELETE) {
+                graph.removeObject(clazz, id);
+                if (clazz.equals(Device.class)) {
+                    latestPositionStore.remove(id);
                 }
+                invalidateResolved();
+            }
+            if (operation != ObjectOperation.UPDATE) {
+                return;
+            }
+
+            var after = storage.getObject(clazz, new Request(new Columns.All(), new Condition.Equals("id", id)));
+            if (after == null) {
+                return;
+            }
+            var before = getObject(after.getClass(), after.getId());
+            if (before == null) {
+                return;
             }
-        } else if (after instanceof Schedulable) {
-            long beforeCalendarId = ((Schedulable) before).getCalendarId();
-            long afterCalendarId = ((Schedulable) after).getCalendarId();
-            if (beforeCalendarId != afterCalendarId) {
-                if (beforeCalendarId > 0) {
-                    invalidatePermission(clazz, id, Calendar.class, beforeCalendarId, false);
+
+            if (after instanceof GroupedModel) {
+                long beforeGroupId = ((GroupedModel) before).getGroupId();
+                long afterGroupId = ((GroupedModel) after).getGroupId();
+                if (beforeGroupId != afterGroupId) {
+                    if (beforeGroupId > 0) {
+                        invalidatePermission(clazz, id, Group.class, beforeGroupId, false);
+                    }
+                    if (afterGroupId > 0) {
+                        invalidatePermission(clazz, id, Group.class, afterGroupId, true);
+                    }
                 }
-                if (afterCalendarId > 0) {
-                    invalidatePermission(clazz, id, Calendar.class, afterCalendarId, true);
+            } else if (after instanceof Schedulable) {
+                long beforeCalendarId = ((Schedulable) before).getCalendarId();
+                long afterCalendarId = ((Schedulable) after).getCalendarId();
+                if (beforeCalendarId != afterCalendarId) {
+                    if (beforeCalendarId > 0) {
+                        invalidatePermission(clazz, id, Calendar.class, beforeCalendarId, false);
+                    }
+                    if (afterCalendarId > 0) {
+                        invalidatePermission(clazz, id, Calendar.class, afterCalendarId, true);
+                    }
                 }
+                // TODO handle notification always change
             }
-            // TODO handle notification always change
-        }
 
-        graph.updateObject(after);
+            graph.updateObject(after);
+            invalidateResolved();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -254,10 +349,19 @@ public class CacheManager implements BroadcastInterface {
             broadcastService.invalidatePermission(true, clazz1, id1, clazz2, id2, link);
         }
 
-        if (clazz1.equals(User.class) && GroupedModel.class.isAssignableFrom(clazz2)) {
-            invalidatePermission(clazz2, id2, clazz1, id1, link);
-        } else {
-            invalidatePermission(clazz1, id1, clazz2, id2, link);
+        try {
+            lock.lock();
+            if (clazz1.equals(User.class) && GroupedModel.class.isAssignableFrom(clazz2)) {
+                invalidatePermission(clazz2, id2, clazz1, id1, link);
+            } else {
+                invalidatePermission(clazz1, id1, clazz2, id2, link);
+            }
+            invalidateResolved();
+        } finally {
+            lock.unlock();
+        }
+        for (BroadcastInterface listener : listeners) {
+            listener.invalidatePermission(false, clazz1, id1, clazz2, id2, link);
         }
     }
 
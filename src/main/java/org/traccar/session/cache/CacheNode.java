@@ -10,7 +10,7 @@ import java.util.stream.Stream;
 
 public class CacheNode {
 
-    private BaseModel value;
+    private volatile BaseModel value;
 
     private final Map<Class<? extends BaseModel>, Set<CacheNode>> links = new HashMap<>();
     private final Map<Class<? extends BaseModel>, Set<CacheNode>> backlinks = new HashMap<>();
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.session.cache;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.traccar.broadcast.BroadcastInterface;
+import org.traccar.broadcast.BroadcastService;
+import org.traccar.model.BaseModel;
+import org.traccar.model.Device;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest position of every device, not only the ones with active sessions. Loaded from the database on first use and
+ * kept current by local position updates and position broadcasts from other nodes.
+ */
+@Singleton
+public class LatestPositionStore implements BroadcastInterface {
+
+    private final Storage storage;
+    private final BroadcastService broadcastService;
+
+    private final Map<Long, Position> positions = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Inject
+    public LatestPositionStore(Storage storage, BroadcastService broadcastService) {
+        this.storage = storage;
+        this.broadcastService = broadcastService;
+        broadcastService.registerListener(this);
+    }
+
+    private void load() throws StorageException {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    for (Position position : storage.getObjects(Position.class, new Request(
+                            new Columns.All(), new Condition.LatestPositions()))) {
+                        update(position);
+                    }
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    public Position getPosition(long deviceId) throws StorageException {
+        load();
+        return positions.get(deviceId);
+    }
+
+    public List<Position> getPositions(Collection<Long> deviceIds) throws StorageException {
+        load();
+        List<Position> result = new ArrayList<>();
+        for (long deviceId : deviceIds) {
+            Position position = positions.get(deviceId);
+            if (position != null) {
+                result.add(position);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Store the position unless a newer one is already known for the device.
+     */
+    public void update(Position position) {
+        positions.merge(position.getDeviceId(), position, (current, updated) ->
+                updated.getFixTime().compareTo(current.getFixTime()) >= 0 ? updated : current);
+    }
+
+    public void remove(long deviceId) {
+        positions.remove(deviceId);
+    }
+
+    private void reload(long deviceId) throws StorageException {
+        Position position = storage.getObject(Position.class, new Request(
+                new Columns.All(), new Condition.Equals("deviceId", deviceId), new Order("fixTime", true, 1)));
+        positions.remove(deviceId);
+        if (position != null) {
+            update(position);
+        }
+    }
+
+    /**
+     * Replace the latest position of the device with the newest one left in the database, for example after
+     * positions were deleted, and ask other nodes to do the same.
+     */
+    public void refresh(long deviceId) throws StorageException {
+        reload(deviceId);
+        try {
+            broadcastService.invalidateObject(true, Device.class, deviceId, ObjectOperation.UPDATE);
+        } catch (Exception e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public void updatePosition(boolean local, Position position) {
+        if (!local) {
+            update(position);
+        }
+    }
+
+    @Override
+    public <T extends BaseModel> void invalidateObject(
+            boolean local, Class<T> clazz, long id, ObjectOperation operation) throws Exception {
+        if (!local && loaded && clazz.equals(Device.class) && operation == ObjectOperation.UPDATE) {
+            reload(id);
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2022 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@ package org.traccar.storage;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.metrics.MetricsRegistry;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
@@ -30,10 +32,13 @@ import org.traccar.storage.query.Request;
 import jakarta.inject.Inject;
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -42,13 +47,16 @@ public class DatabaseStorage extends Storage {
     private final Config config;
     private final DataSource dataSource;
     private final ObjectMapper objectMapper;
+    private final MetricsRegistry metricsRegistry;
     private final String databaseType;
 
     @Inject
-    public DatabaseStorage(Config config, DataSource dataSource, ObjectMapper objectMapper) {
+    public DatabaseStorage(
+            Config config, DataSource dataSource, ObjectMapper objectMapper, MetricsRegistry metricsRegistry) {
         this.config = config;
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
+        this.metricsRegistry = metricsRegistry;
 
         try {
             databaseType = dataSource.getConnection().getMetaData().getDatabaseProductName();
@@ -57,8 +65,17 @@ public class DatabaseStorage extends Storage {
         }
     }
 
-    @Override
-    public <T> List<T> getObjects(Class<T> clazz, Request request) throws StorageException {
+    private QueryBuilder createQuery(String query, boolean returnGeneratedKeys) throws SQLException {
+        QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query, returnGeneratedKeys);
+        if (metricsRegistry.isEnabled()) {
+            String operation = query.trim().split("\\s", 2)[0].toLowerCase();
+            builder.setHistogram(
+                    metricsRegistry.getHistogram(MetricsRegistry.STORAGE_DURATION, "operation", operation));
+        }
+        return builder;
+    }
+
+    private <T> QueryBuilder createSelect(Class<T> clazz, Request request) throws SQLException {
         StringBuilder query = new StringBuilder("SELECT ");
         if (request.getColumns() instanceof Columns.All) {
             query.append('*');
@@ -68,12 +85,29 @@ public class DatabaseStorage extends Storage {
         query.append(" FROM ").append(getStorageName(clazz));
         query.append(formatCondition(request.getCondition()));
         query.append(formatOrder(request.getOrder()));
+        QueryBuilder builder = createQuery(query.toString(), false);
+        for (Map.Entry<String, Object> variable : getConditionVariables(request.getCondition()).entrySet()) {
+            builder.setValue(variable.getKey(), variable.getValue());
+        }
+        return builder;
+    }
+
+    @Override
+    public <T> List<T> getObjects(Class<T> clazz, Request request) throws StorageException {
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString());
-            for (Map.Entry<String, Object> variable : getConditionVariables(request.getCondition()).entrySet()) {
-                builder.setValue(variable.getKey(), variable.getValue());
-            }
-            return builder.executeQuery(clazz);
+            return createSelect(clazz, request).executeQuery(clazz);
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    @Override
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) throws StorageException {
+        // MySQL driver only streams rows with minimum fetch size, other drivers use a cursor
+        int fetchSize = databaseType.equals("MySQL") ? Integer.MIN_VALUE : config.getInteger(Keys.DATABASE_FETCH_SIZE);
+        try {
+            createSelect(clazz, request).executeQuery(clazz, consumer, fetchSize,
+                    TimeUnit.SECONDS.toMillis(config.getInteger(Keys.DATABASE_STREAM_TIMEOUT)));
         } catch (SQLException e) {
             throw new StorageException(e);
         }
@@ -82,7 +116,7 @@ public class DatabaseStorage extends Storage {
     @Override
     public <T> List<T> getobjectByQueryAndCondition(Class<T> clazz, String query, Condition condition) throws StorageException {
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query);
+            QueryBuilder builder = createQuery(query, false);
             for (Map.Entry<String, Object> variable : getConditionVariables(condition).entrySet()) {
                 builder.setValue(variable.getKey(), variable.getValue());
             }
@@ -103,13 +137,42 @@ public class DatabaseStorage extends Storage {
         query.append(formatColumns(columns, c -> ':' + c));
         query.append(")");
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString(), true);
+            QueryBuilder builder = createQuery(query.toString(), true);
             builder.setObject(entity, columns);
             return builder.executeUpdate();
         } catch (SQLException e) {
             throw new StorageException(e);
         }
     }
+
+    @Override
+    public <T> long[] addObjectBatch(List<T> entities, Request request) throws StorageException {
+        if (entities.isEmpty()) {
+            return new long[0];
+        }
+        if (databaseType.equals("Microsoft SQL Server")) {
+            return super.addObjectBatch(entities, request); // no generated keys for batches
+        }
+        List<String> columns = request.getColumns().getColumns(entities.get(0).getClass(), "get");
+        StringBuilder query = new StringBuilder("INSERT INTO ");
+        query.append(getStorageName(entities.get(0).getClass()));
+        query.append("(");
+        query.append(formatColumns(columns, c -> c));
+        query.append(") VALUES (");
+        query.append(formatColumns(columns, c -> ':' + c));
+        query.append(")");
+        try {
+            QueryBuilder builder = createQuery(query.toString(), true);
+            for (T entity : entities) {
+                builder.setObject(entity, columns);
+                builder.addBatch();
+            }
+            return builder.executeBatch();
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
     public <T> long addObjects(T entity, Request request) throws StorageException {
         List<String> columns = request.getColumns().getColumns(entity.getClass(), "get");
         StringBuilder query = new StringBuilder("INSERT INTO ");
@@ -120,7 +183,7 @@ public class DatabaseStorage extends Storage {
         query.append(formatColumns(columns, c -> ':' + c));
         query.append(")");
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString(), true);
+            QueryBuilder builder = createQuery(query.toString(), true);
             builder.setObject(entity, columns);
             return builder.executeUpdate();
         } catch (SQLException e) {
@@ -138,7 +201,7 @@ public class DatabaseStorage extends Storage {
         query.append(formatColumns(columns, c -> c + " = :" + c));
         query.append(formatCondition(request.getCondition()));
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString());
+            QueryBuilder builder = createQuery(query.toString(), false);
             builder.setObject(entity, columns);
             for (Map.Entry<String, Object> variable : getConditionVariables(request.getCondition()).entrySet()) {
                 builder.setValue(variable.getKey(), variable.getValue());
@@ -149,13 +212,38 @@ public class DatabaseStorage extends Storage {
         }
     }
 
+    @Override
+    public <T extends BaseModel> void updateObjectBatch(List<T> entities, Columns columns) throws StorageException {
+        if (entities.isEmpty()) {
+            return;
+        }
+        List<String> updateColumns = columns.getColumns(entities.get(0).getClass(), "get");
+        StringBuilder query = new StringBuilder("UPDATE ");
+        query.append(getStorageName(entities.get(0).getClass()));
+        query.append(" SET ");
+        query.append(formatColumns(updateColumns, c -> c + " = :" + c));
+        query.append(" WHERE id = :id");
+        List<String> bindColumns = new ArrayList<>(updateColumns);
+        bindColumns.add("id");
+        try {
+            QueryBuilder builder = createQuery(query.toString(), false);
+            for (T entity : entities) {
+                builder.setObject(entity, bindColumns);
+                builder.addBatch();
+            }
+            builder.executeBatch();
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
     @Override
     public void removeObject(Class<?> clazz, Request request) throws StorageException {
         StringBuilder query = new StringBuilder("DELETE FROM ");
         query.append(getStorageName(clazz));
         query.append(formatCondition(request.getCondition()));
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString());
+            QueryBuilder builder = createQuery(query.toString(), false);
             for (Map.Entry<String, Object> variable : getConditionVariables(request.getCondition()).entrySet()) {
                 builder.setValue(variable.getKey(), variable.getValue());
             }
@@ -181,7 +269,7 @@ public class DatabaseStorage extends Storage {
         Condition combinedCondition = Condition.merge(conditions);
         query.append(formatCondition(combinedCondition));
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString());
+            QueryBuilder builder = createQuery(query.toString(), false);
             for (Map.Entry<String, Object> variable : getConditionVariables(combinedCondition).entrySet()) {
                 builder.setValue(variable.getKey(), variable.getValue());
             }
@@ -199,7 +287,7 @@ public class DatabaseStorage extends Storage {
         query.append(permission.get().keySet().stream().map(key -> ':' + key).collect(Collectors.joining(", ")));
         query.append(")");
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString(), true);
+            QueryBuilder builder = createQuery(query.toString(), true);
             for (var entry : permission.get().entrySet()) {
                 builder.setLong(entry.getKey(), entry.getValue());
             }
@@ -217,7 +305,7 @@ public class DatabaseStorage extends Storage {
         query.append(permission
                 .get().keySet().stream().map(key -> key + " = :" + key).collect(Collectors.joining(" AND ")));
         try {
-            QueryBuilder builder = QueryBuilder.create(config, dataSource, objectMapper, query.toString(), true);
+            QueryBuilder builder = createQuery(query.toString(), true);
             for (var entry : permission.get().entrySet()) {
                 builder.setLong(entry.getKey(), entry.getValue());
             }
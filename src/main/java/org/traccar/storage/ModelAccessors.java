@@ -0,0 +1,399 @@
+/*
+ * Copyright 2024 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cached accessors for mapping model objects to and from database rows. Getters and setters are resolved once per
+ * class and compiled into lambdas, so mapping a row doesn't require reflection lookups or boxing of primitive values.
+ */
+public final class ModelAccessors {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelAccessors.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private ModelAccessors() {
+    }
+
+    interface BooleanSetter {
+        void accept(Object object, boolean value);
+    }
+
+    interface ColumnReader {
+        void read(Object object, ResultSet resultSet, int index, ObjectMapper objectMapper) throws SQLException;
+    }
+
+    interface ColumnWriter {
+        void write(QueryBuilder builder, Object object, String column) throws SQLException, JsonProcessingException;
+    }
+
+    static final class RowMapper<T> {
+
+        private final Supplier<T> constructor;
+        private final ColumnReader[] readers;
+        private final int[] indexes;
+
+        private RowMapper(Supplier<T> constructor, ColumnReader[] readers, int[] indexes) {
+            this.constructor = constructor;
+            this.readers = readers;
+            this.indexes = indexes;
+        }
+
+        T map(ResultSet resultSet, ObjectMapper objectMapper) throws SQLException {
+            T object = constructor.get();
+            for (int i = 0; i < readers.length; i++) {
+                readers[i].read(object, resultSet, indexes[i], objectMapper);
+            }
+            return object;
+        }
+
+    }
+
+    private static final Map<Class<?>, Map<List<String>, RowMapper<?>>> ROW_MAPPERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, ColumnWriter>> COLUMN_WRITERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, BiConsumer<Object, Object>>> PROPERTY_COPIERS =
+            new ConcurrentHashMap<>();
+    private static final Map<Class<?>, List<BiConsumer<Object, Object>>> OBJECT_COPIERS = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> getRowMapper(Class<T> clazz, ResultSetMetaData metaData) throws SQLException {
+        List<String> labels = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            labels.add(metaData.getColumnLabel(i));
+        }
+        return (RowMapper<T>) ROW_MAPPERS
+                .computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(labels, key -> createRowMapper(clazz, key));
+    }
+
+    static ColumnWriter getColumnWriter(Class<?> clazz, String column) throws NoSuchMethodException {
+        ColumnWriter writer = COLUMN_WRITERS
+                .computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(column, key -> createColumnWriter(clazz, key));
+        if (writer == null) {
+            throw new NoSuchMethodException(clazz.getName() + ".get" + capitalize(column));
+        }
+        return writer;
+    }
+
+    /**
+     * Get a function that copies the property value from the first object to the second one.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BiConsumer<T, T> getPropertyCopier(Class<T> clazz, String property) {
+        BiConsumer<Object, Object> copier = PROPERTY_COPIERS
+                .computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(property, key -> createPropertyCopier(clazz, key));
+        if (copier == null) {
+            throw new IllegalArgumentException("Unknown property " + clazz.getSimpleName() + "." + property);
+        }
+        return (BiConsumer<T, T>) copier;
+    }
+
+    /**
+     * Copy all properties that have both a getter and a setter. Property values are not copied deeply.
+     */
+    public static <T> void copyProperties(Class<T> clazz, T source, T target) {
+        List<BiConsumer<Object, Object>> copiers = OBJECT_COPIERS.computeIfAbsent(clazz, key -> {
+            List<BiConsumer<Object, Object>> result = new ArrayList<>();
+            for (Method method : key.getMethods()) {
+                if (method.getName().startsWith("get") && method.getName().length() > 3
+                        && method.getParameterCount() == 0 && !method.getDeclaringClass().equals(Object.class)) {
+                    String name = method.getName().substring(3);
+                    BiConsumer<Object, Object> copier = PROPERTY_COPIERS
+                            .computeIfAbsent(key, k -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(
+                                    Character.toLowerCase(name.charAt(0)) + name.substring(1),
+                                    property -> createPropertyCopier(key, property));
+                    if (copier != null) {
+                        result.add(copier);
+                    }
+                }
+            }
+            return result;
+        });
+        for (BiConsumer<Object, Object> copier : copiers) {
+            copier.accept(source, target);
+        }
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static <T> RowMapper<T> createRowMapper(Class<T> clazz, List<String> labels) {
+        List<ColumnReader> readers = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
+                String name = method.getName().substring(3);
+                for (int i = 0; i < labels.size(); i++) {
+                    if (name.equalsIgnoreCase(labels.get(i))) {
+                        readers.add(createColumnReader(method));
+                        indexes.add(i + 1);
+                        break;
+                    }
+                }
+            }
+        }
+        return new RowMapper<>(
+                createConstructor(clazz),
+                readers.toArray(new ColumnReader[0]),
+                indexes.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> createConstructor(Class<T> clazz) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(clazz, MethodType.methodType(void.class));
+            return compile(Supplier.class, "get", MethodType.methodType(Object.class), handle, handle.type());
+        } catch (Throwable error) {
+            return () -> {
+                try {
+                    return clazz.getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            };
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I> I compile(
+            Class<?> interfaceClass, String name, MethodType erased, MethodHandle handle, MethodType instantiated)
+            throws Throwable {
+        CallSite site = LambdaMetafactory.metafactory(
+                LOOKUP, name, MethodType.methodType(interfaceClass), erased, handle, instantiated);
+        return (I) site.getTarget().invoke();
+    }
+
+    private static <I> I compileSetter(Class<?> interfaceClass, MethodHandle handle, Class<?> type) throws Throwable {
+        MethodType erased = MethodType.methodType(void.class, Object.class, type.isPrimitive() ? type : Object.class);
+        return compile(interfaceClass, "accept", erased, handle, handle.type().changeReturnType(void.class));
+    }
+
+    private static <I> I compileGetter(Class<?> interfaceClass, String name, MethodHandle handle, Class<?> type)
+            throws Throwable {
+        MethodType erased = MethodType.methodType(type.isPrimitive() ? type : Object.class, Object.class);
+        return compile(interfaceClass, name, erased, handle, handle.type());
+    }
+
+    private static ColumnReader createColumnReader(Method method) {
+        Class<?> type = method.getParameterTypes()[0];
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (type.equals(boolean.class)) {
+                BooleanSetter setter = compileSetter(BooleanSetter.class, handle, type);
+                return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getBoolean(index));
+            } else if (type.equals(int.class)) {
+                ObjIntConsumer<Object> setter = compileSetter(ObjIntConsumer.class, handle, type);
+                return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getInt(index));
+            } else if (type.equals(long.class)) {
+                ObjLongConsumer<Object> setter = compileSetter(ObjLongConsumer.class, handle, type);
+                return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getLong(index));
+            } else if (type.equals(double.class)) {
+                ObjDoubleConsumer<Object> setter = compileSetter(ObjDoubleConsumer.class, handle, type);
+                return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getDouble(index));
+            } else if (!type.isPrimitive()) {
+                BiConsumer<Object, Object> setter = compileSetter(BiConsumer.class, handle, type);
+                return createObjectReader(type, setter);
+            }
+        } catch (Throwable error) {
+            LOGGER.debug("Accessor compilation failed for {}", method, error);
+        }
+        return createObjectReader(type, (object, value) -> {
+            try {
+                method.invoke(object, value);
+            } catch (ReflectiveOperationException error) {
+                LOGGER.warn("Set property error", error);
+            }
+        });
+    }
+
+    private static ColumnReader createObjectReader(Class<?> type, BiConsumer<Object, Object> setter) {
+        if (type.equals(boolean.class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getBoolean(index));
+        } else if (type.equals(int.class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getInt(index));
+        } else if (type.equals(long.class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getLong(index));
+        } else if (type.equals(double.class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getDouble(index));
+        } else if (type.equals(String.class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getString(index));
+        } else if (type.equals(Date.class)) {
+            return (object, resultSet, index, objectMapper) -> {
+                Timestamp timestamp = resultSet.getTimestamp(index);
+                if (timestamp != null) {
+                    setter.accept(object, new Date(timestamp.getTime()));
+                }
+            };
+        } else if (type.equals(byte[].class)) {
+            return (object, resultSet, index, objectMapper) -> setter.accept(object, resultSet.getBytes(index));
+        } else {
+            return (object, resultSet, index, objectMapper) -> {
+                String value = resultSet.getString(index);
+                if (value != null && !value.isEmpty()) {
+                    try {
+                        setter.accept(object, objectMapper.readValue(value, type));
+                    } catch (IOException error) {
+                        LOGGER.warn("Set property error", error);
+                    }
+                }
+            };
+        }
+    }
+
+    private static ColumnWriter createColumnWriter(Class<?> clazz, String column) {
+        Method method;
+        try {
+            method = clazz.getMethod("get" + capitalize(column));
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        Class<?> type = method.getReturnType();
+        boolean nullIfZero = column.endsWith("Id");
+        try {
+            MethodHandle handle = LOOKUP.unreflect(method);
+            if (type.equals(boolean.class)) {
+                Predicate<Object> getter = compileGetter(Predicate.class, "test", handle, type);
+                return (builder, object, name) -> builder.setBoolean(name, getter.test(object));
+            } else if (type.equals(int.class)) {
+                ToIntFunction<Object> getter = compileGetter(ToIntFunction.class, "applyAsInt", handle, type);
+                return (builder, object, name) -> builder.setInteger(name, getter.applyAsInt(object));
+            } else if (type.equals(long.class)) {
+                ToLongFunction<Object> getter = compileGetter(ToLongFunction.class, "applyAsLong", handle, type);
+                return (builder, object, name) -> builder.setLong(name, getter.applyAsLong(object), nullIfZero);
+            } else if (type.equals(double.class)) {
+                ToDoubleFunction<Object> getter = compileGetter(ToDoubleFunction.class, "applyAsDouble", handle, type);
+                return (builder, object, name) -> builder.setDouble(name, getter.applyAsDouble(object));
+            } else if (!type.isPrimitive()) {
+                Function<Object, Object> getter = compileGetter(Function.class, "apply", handle, type);
+                return createObjectWriter(type, getter, nullIfZero);
+            }
+        } catch (Throwable error) {
+            LOGGER.debug("Accessor compilation failed for {}", method, error);
+        }
+        return createObjectWriter(type, object -> {
+            try {
+                return method.invoke(object);
+            } catch (ReflectiveOperationException error) {
+                throw new IllegalArgumentException(error);
+            }
+        }, nullIfZero);
+    }
+
+    private static BiConsumer<Object, Object> createPropertyCopier(Class<?> clazz, String property) {
+        Method getMethod;
+        Method setMethod;
+        try {
+            getMethod = clazz.getMethod("get" + capitalize(property));
+            setMethod = clazz.getMethod("set" + capitalize(property), getMethod.getReturnType());
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        Class<?> type = getMethod.getReturnType();
+        try {
+            MethodHandle getHandle = LOOKUP.unreflect(getMethod);
+            MethodHandle setHandle = LOOKUP.unreflect(setMethod);
+            if (type.equals(boolean.class)) {
+                Predicate<Object> getter = compileGetter(Predicate.class, "test", getHandle, type);
+                BooleanSetter setter = compileSetter(BooleanSetter.class, setHandle, type);
+                return (source, target) -> setter.accept(target, getter.test(source));
+            } else if (type.equals(int.class)) {
+                ToIntFunction<Object> getter = compileGetter(ToIntFunction.class, "applyAsInt", getHandle, type);
+                ObjIntConsumer<Object> setter = compileSetter(ObjIntConsumer.class, setHandle, type);
+                return (source, target) -> setter.accept(target, getter.applyAsInt(source));
+            } else if (type.equals(long.class)) {
+                ToLongFunction<Object> getter = compileGetter(ToLongFunction.class, "applyAsLong", getHandle, type);
+                ObjLongConsumer<Object> setter = compileSetter(ObjLongConsumer.class, setHandle, type);
+                return (source, target) -> setter.accept(target, getter.applyAsLong(source));
+            } else if (type.equals(double.class)) {
+                ToDoubleFunction<Object> getter = compileGetter(
+                        ToDoubleFunction.class, "applyAsDouble", getHandle, type);
+                ObjDoubleConsumer<Object> setter = compileSetter(ObjDoubleConsumer.class, setHandle, type);
+                return (source, target) -> setter.accept(target, getter.applyAsDouble(source));
+            } else if (!type.isPrimitive()) {
+                Function<Object, Object> getter = compileGetter(Function.class, "apply", getHandle, type);
+                BiConsumer<Object, Object> setter = compileSetter(BiConsumer.class, setHandle, type);
+                return (source, target) -> setter.accept(target, getter.apply(source));
+            }
+        } catch (Throwable error) {
+            LOGGER.debug("Accessor compilation failed for {}", getMethod, error);
+        }
+        return (source, target) -> {
+            try {
+                setMethod.invoke(target, getMethod.invoke(source));
+            } catch (ReflectiveOperationException error) {
+                throw new IllegalArgumentException(error);
+            }
+        };
+    }
+
+    private static ColumnWriter createObjectWriter(
+            Class<?> type, Function<Object, Object> getter, boolean nullIfZero) {
+        if (type.equals(boolean.class)) {
+            return (builder, object, name) -> builder.setBoolean(name, (Boolean) getter.apply(object));
+        } else if (type.equals(int.class)) {
+            return (builder, object, name) -> builder.setInteger(name, (Integer) getter.apply(object));
+        } else if (type.equals(long.class)) {
+            return (builder, object, name) -> builder.setLong(name, (Long) getter.apply(object), nullIfZero);
+        } else if (type.equals(double.class)) {
+            return (builder, object, name) -> builder.setDouble(name, (Double) getter.apply(object));
+        } else if (type.equals(String.class)) {
+            return (builder, object, name) -> builder.setString(name, (String) getter.apply(object));
+        } else if (type.equals(Date.class)) {
+            return (builder, object, name) -> builder.setDate(name, (Date) getter.apply(object));
+        } else if (type.equals(byte[].class)) {
+            return (builder, object, name) -> builder.setBlob(name, (byte[]) getter.apply(object));
+        } else {
+            return (builder, object, name) -> builder.setString(name, builder.writeJson(getter.apply(object)));
+        }
+    }
+
+}
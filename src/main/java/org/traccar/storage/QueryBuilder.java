@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2022 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2024 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,12 +21,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
+import org.traccar.metrics.Histogram;
 import org.traccar.model.Permission;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -35,12 +33,14 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @SuppressWarnings("UnusedReturnValue")
 public final class QueryBuilder {
@@ -55,6 +55,7 @@ public final class QueryBuilder {
     private PreparedStatement statement;
     private final String query;
     private final boolean returnGeneratedKeys;
+    private Histogram histogram;
 
     private QueryBuilder(
             Config config, DataSource dataSource, ObjectMapper objectMapper,
@@ -146,6 +147,14 @@ public final class QueryBuilder {
         return new QueryBuilder(config, dataSource, objectMapper, query, returnGeneratedKeys);
     }
 
+    /**
+     * Record query execution time in the histogram.
+     */
+    public QueryBuilder setHistogram(Histogram histogram) {
+        this.histogram = histogram;
+        return this;
+    }
+
     private List<Integer> indexes(String name) {
         name = name.toLowerCase();
         List<Integer> result = indexMap.get(name);
@@ -287,25 +296,7 @@ public final class QueryBuilder {
 
         try {
             for (String column : columns) {
-                Method method = object.getClass().getMethod(
-                        "get" + Character.toUpperCase(column.charAt(0)) + column.substring(1));
-                if (method.getReturnType().equals(boolean.class)) {
-                    setBoolean(column, (Boolean) method.invoke(object));
-                } else if (method.getReturnType().equals(int.class)) {
-                    setInteger(column, (Integer) method.invoke(object));
-                } else if (method.getReturnType().equals(long.class)) {
-                    setLong(column, (Long) method.invoke(object), column.endsWith("Id"));
-                } else if (method.getReturnType().equals(double.class)) {
-                    setDouble(column, (Double) method.invoke(object));
-                } else if (method.getReturnType().equals(String.class)) {
-                    setString(column, (String) method.invoke(object));
-                } else if (method.getReturnType().equals(Date.class)) {
-                    setDate(column, (Date) method.invoke(object));
-                } else if (method.getReturnType().equals(byte[].class)) {
-                    setBlob(column, (byte[]) method.invoke(object));
-                } else {
-                    setString(column, objectMapper.writeValueAsString(method.invoke(object)));
-                }
+                ModelAccessors.getColumnWriter(object.getClass(), column).write(this, object, column);
             }
         } catch (ReflectiveOperationException | JsonProcessingException e) {
             LOGGER.warn("Set object error", e);
@@ -314,158 +305,99 @@ public final class QueryBuilder {
         return this;
     }
 
-    private interface ResultSetProcessor<T> {
-        void process(T object, ResultSet resultSet) throws SQLException;
+    String writeJson(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
     }
 
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
-
-        if (parameterType.equals(boolean.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBoolean(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(int.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getInt(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(long.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getLong(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(double.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getDouble(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(String.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getString(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(Date.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    Timestamp timestamp = resultSet.getTimestamp(name);
-                    if (timestamp != null) {
-                        method.invoke(object, new Date(timestamp.getTime()));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(byte[].class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBytes(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else {
-            processors.add((object, resultSet) -> {
-                String value = resultSet.getString(name);
-                if (value != null && !value.isEmpty()) {
-                    try {
-                        method.invoke(object, objectMapper.readValue(value, parameterType));
-                    } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+    /**
+     * Log query if enabled and return start time for metrics.
+     */
+    private long startQuery() {
+        if (config.getBoolean(Keys.LOGGER_QUERIES)) {
+            LOGGER.info(query);
         }
+        return histogram != null ? System.nanoTime() : 0;
     }
 
-    private void logQuery() {
-        if (config.getBoolean(Keys.LOGGER_QUERIES)) {
-            LOGGER.info(query);
+    private void close(long startTime) throws SQLException {
+        statement.close();
+        connection.close();
+        if (histogram != null) {
+            histogram.recordSince(startTime);
         }
     }
 
     public <T> List<T> executeQuery(Class<T> clazz) throws SQLException {
-        List<T> result = new LinkedList<>();
+        List<T> result = new ArrayList<>();
 
         if (query != null) {
 
+            long startTime = startQuery();
             try {
 
-                logQuery();
-
                 try (ResultSet resultSet = statement.executeQuery()) {
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
-
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
+                    ModelAccessors.RowMapper<T> mapper = ModelAccessors.getRowMapper(clazz, resultSet.getMetaData());
+                    while (resultSet.next()) {
+                        result.add(mapper.map(resultSet, objectMapper));
+                    }
+                }
 
-                    Method[] methods = clazz.getMethods();
+            } finally {
+                close(startTime);
+            }
+        }
 
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
+        return result;
+    }
 
-                            final String name = method.getName().substring(3);
+    /**
+     * Pass rows to the consumer as they are read. The query fails if it takes longer than the timeout in
+     * milliseconds, so a slow consumer can't hold the connection indefinitely. Zero means no limit.
+     */
+    public <T> void executeQuery(
+            Class<T> clazz, Consumer<T> consumer, int fetchSize, long timeout) throws SQLException {
 
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
+        if (query != null) {
 
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
-                    }
+            long startTime = startQuery();
+            long deadline = System.currentTimeMillis() + timeout;
+            try {
 
-                    while (resultSet.next()) {
-                        try {
-                            T object = clazz.getDeclaredConstructor().newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
-                                processor.process(object, resultSet);
+                // some drivers only use a cursor inside a transaction
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    statement.setFetchSize(fetchSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        ModelAccessors.RowMapper<T> mapper = ModelAccessors.getRowMapper(
+                                clazz, resultSet.getMetaData());
+                        while (resultSet.next()) {
+                            if (timeout > 0 && System.currentTimeMillis() > deadline) {
+                                throw new SQLException("Streaming query timeout");
                             }
-                            result.add(object);
-                        } catch (ReflectiveOperationException e) {
-                            throw new IllegalArgumentException();
+                            consumer.accept(mapper.map(resultSet, objectMapper));
                         }
                     }
+                    connection.commit();
+                } catch (SQLException | RuntimeException error) {
+                    connection.rollback();
+                    throw error;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
                 }
 
             } finally {
-                statement.close();
-                connection.close();
+                close(startTime);
             }
         }
-
-        return result;
     }
 
     public long executeUpdate() throws SQLException {
 
         if (query != null) {
+            long startTime = startQuery();
             try {
-                logQuery();
                 statement.execute();
                 if (returnGeneratedKeys) {
                     ResultSet resultSet = statement.getGeneratedKeys();
@@ -474,18 +406,64 @@ public final class QueryBuilder {
                     }
                 }
             } finally {
-                statement.close();
-                connection.close();
+                close(startTime);
             }
         }
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        try {
+            statement.addBatch();
+        } catch (SQLException error) {
+            statement.close();
+            connection.close();
+            throw error;
+        }
+        return this;
+    }
+
+    public long[] executeBatch() throws SQLException {
+        if (query != null) {
+            long startTime = startQuery();
+            try {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    int[] counts = statement.executeBatch();
+                    long[] keys = new long[counts.length];
+                    if (returnGeneratedKeys) {
+                        int count = 0;
+                        try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                            while (count < keys.length && resultSet.next()) {
+                                keys[count++] = resultSet.getLong(1);
+                            }
+                        }
+                        if (count < keys.length) {
+                            throw new SQLException(
+                                    "Batch returned " + count + " generated keys for " + keys.length + " rows");
+                        }
+                    }
+                    connection.commit();
+                    return keys;
+                } catch (SQLException error) {
+                    connection.rollback();
+                    throw error;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            } finally {
+                close(startTime);
+            }
+        }
+        return new long[0];
+    }
+
     public List<Permission> executePermissionsQuery() throws SQLException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
+            long startTime = startQuery();
             try {
-                logQuery();
                 try (ResultSet resultSet = statement.executeQuery()) {
                     ResultSetMetaData resultMetaData = resultSet.getMetaData();
                     while (resultSet.next()) {
@@ -498,8 +476,7 @@ public final class QueryBuilder {
                     }
                 }
             } finally {
-                statement.close();
-                connection.close();
+                close(startTime);
             }
         }
 
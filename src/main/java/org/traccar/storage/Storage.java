@@ -17,10 +17,12 @@ package org.traccar.storage;
 
 import org.traccar.model.BaseModel;
 import org.traccar.model.Permission;
+import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public abstract class Storage {
 
@@ -47,6 +49,27 @@ public abstract class Storage {
         return getPermissions(ownerClass, 0, propertyClass, 0);
     }
 
+    public <T> long[] addObjectBatch(List<T> entities, Request request) throws StorageException {
+        long[] keys = new long[entities.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = addObject(entities.get(i), request);
+        }
+        return keys;
+    }
+
+    /**
+     * Pass matching objects to the consumer one at a time, without keeping the whole result in memory.
+     */
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) throws StorageException {
+        getObjects(clazz, request).forEach(consumer);
+    }
+
+    public <T extends BaseModel> void updateObjectBatch(List<T> entities, Columns columns) throws StorageException {
+        for (T entity : entities) {
+            updateObject(entity, new Request(columns, new Condition.Equals("id", entity.getId())));
+        }
+    }
+
     public <T> T getObject(Class<T> clazz, Request request) throws StorageException {
         var objects = getObjects(clazz, request);
         return objects.isEmpty() ? null : objects.get(0);
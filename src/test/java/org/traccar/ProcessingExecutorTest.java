@@ -0,0 +1,111 @@
+package org.traccar;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProcessingExecutorTest {
+
+    @Test
+    public void testDeviceOrder() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.PROCESSING_EXECUTOR_THREADS, "4");
+
+        var executor = new ProcessingExecutor(config);
+        executor.start();
+
+        List<Integer> result = new ArrayList<>();
+        CountDownLatch latch = new CountDownLatch(100);
+        for (int i = 0; i < 100; i++) {
+            int value = i;
+            executor.execute(1, () -> {
+                assertTrue(executor.inShard(1));
+                result.add(value);
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        executor.stop();
+
+        assertFalse(executor.inShard(1));
+        assertEquals(100, result.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, result.get(i));
+        }
+        assertEquals(100, executor.getTaskCount());
+
+    }
+
+    @Test
+    public void testStopped() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.PROCESSING_EXECUTOR_THREADS, "2");
+
+        var executor = new ProcessingExecutor(config);
+        executor.start();
+        executor.stop();
+
+        List<Thread> threads = new ArrayList<>();
+        executor.execute(1, () -> threads.add(Thread.currentThread()));
+
+        assertEquals(List.of(Thread.currentThread()), threads);
+        assertEquals(1, executor.getTaskCount());
+
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.PROCESSING_EXECUTOR_THREADS, "1");
+        config.setString(Keys.PROCESSING_EXECUTOR_QUEUE_SIZE, "8");
+
+        var executor = new ProcessingExecutor(config);
+        executor.start();
+
+        var channelConfig = mock(ChannelConfig.class);
+        var channel = mock(Channel.class);
+        when(channel.config()).thenReturn(channelConfig);
+
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute(channel, 1, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        CountDownLatch completed = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(channel, 1, completed::countDown);
+        }
+        verify(channelConfig).setAutoRead(false);
+        assertEquals(8, executor.getQueueSizes()[0]);
+
+        blocker.countDown();
+        assertTrue(completed.await(1, TimeUnit.SECONDS));
+        verify(channelConfig, timeout(1000)).setAutoRead(true);
+        executor.stop();
+        assertEquals(9, executor.getTaskCount());
+
+    }
+
+}
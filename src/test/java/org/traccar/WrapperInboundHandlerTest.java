@@ -0,0 +1,43 @@
+package org.traccar;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import org.junit.jupiter.api.Test;
+import org.traccar.metrics.Histogram;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class WrapperInboundHandlerTest {
+
+    @Test
+    public void testExcludeDownstream() throws Exception {
+
+        var ctx = mock(ChannelHandlerContext.class);
+        doAnswer(invocation -> {
+            Thread.sleep(100);
+            return ctx;
+        }).when(ctx).fireChannelRead(any());
+
+        var handler = mock(ChannelInboundHandler.class);
+        doAnswer(invocation -> {
+            ChannelHandlerContext context = invocation.getArgument(0);
+            context.fireChannelRead(invocation.getArgument(1));
+            return null;
+        }).when(handler).channelRead(any(), any());
+
+        var histogram = new Histogram();
+        new WrapperInboundHandler(handler, histogram).channelRead(ctx, "message");
+
+        verify(ctx).fireChannelRead("message");
+        long[] counts = histogram.getCounts();
+        assertEquals(1, counts[counts.length - 1]);
+        assertTrue(histogram.getSum() < 50_000_000);
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package org.traccar.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.traccar.api.security.AccessGraph;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+import org.traccar.session.ConnectionManager;
+import org.traccar.session.cache.LatestPositionStore;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncSocketTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Position createPosition(long id, long deviceId) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId(deviceId);
+        return position;
+    }
+
+    @Test
+    public void testBatching() throws Exception {
+
+        var dispatcher = new AsyncSocketDispatcher(new Config(), objectMapper);
+        var socket = new AsyncSocket(
+                objectMapper, mock(ConnectionManager.class), dispatcher,
+                mock(AccessGraph.class), mock(LatestPositionStore.class), 1);
+
+        var session = mock(Session.class);
+        var remote = mock(RemoteEndpoint.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemote()).thenReturn(remote);
+        socket.onWebSocketConnect(session);
+        verify(remote, times(1)).sendString(anyString(), any());
+
+        socket.onUpdatePosition(createPosition(1, 1));
+        socket.onUpdatePosition(createPosition(2, 1));
+        socket.onUpdatePosition(createPosition(3, 2));
+        socket.onUpdateEvent(new Event(Event.TYPE_ALARM, 1));
+        verify(remote, times(1)).sendString(anyString(), any());
+
+        dispatcher.flush();
+        var captor = ArgumentCaptor.forClass(String.class);
+        verify(remote, times(2)).sendString(captor.capture(), any());
+
+        var data = objectMapper.readTree(captor.getValue());
+        assertEquals(2, data.get("positions").size());
+        assertEquals(2, data.get("positions").get(0).get("id").asLong());
+        assertEquals(3, data.get("positions").get(1).get("id").asLong());
+        assertEquals(1, data.get("events").size());
+
+        dispatcher.flush();
+        verify(remote, times(2)).sendString(anyString(), any());
+
+    }
+
+    @Test
+    public void testSlowConsumer() {
+
+        var config = new Config();
+        config.setString(Keys.WEB_SOCKET_MAX_PENDING, "2");
+        var dispatcher = new AsyncSocketDispatcher(config, objectMapper);
+        var socket = new AsyncSocket(
+                objectMapper, mock(ConnectionManager.class), dispatcher,
+                mock(AccessGraph.class), mock(LatestPositionStore.class), 1);
+
+        var session = mock(Session.class);
+        var remote = mock(RemoteEndpoint.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemote()).thenReturn(remote);
+        socket.onWebSocketConnect(session);
+
+        socket.onUpdatePosition(createPosition(1, 1));
+        dispatcher.flush();
+        socket.onUpdatePosition(createPosition(2, 1));
+        dispatcher.flush();
+
+        verify(remote, times(2)).sendString(anyString(), any());
+        verify(session).close(eq(StatusCode.POLICY_VIOLATION), anyString());
+        assertEquals(1, dispatcher.getDropped());
+
+    }
+
+    @Test
+    public void testDeferredFlush() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.WEB_SOCKET_FLUSH_INTERVAL, "0");
+        var dispatcher = new AsyncSocketDispatcher(config, objectMapper);
+        dispatcher.start();
+        var socket = new AsyncSocket(
+                objectMapper, mock(ConnectionManager.class), dispatcher,
+                mock(AccessGraph.class), mock(LatestPositionStore.class), 1);
+
+        var session = mock(Session.class);
+        var remote = mock(RemoteEndpoint.class);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemote()).thenReturn(remote);
+        socket.onWebSocketConnect(session);
+        socket.onWebSocketText("{\"interval\":100}");
+        verify(remote, times(2)).sendString(anyString(), any());
+
+        socket.onUpdatePosition(createPosition(1, 1));
+        socket.onUpdatePosition(createPosition(2, 1));
+        verify(remote, times(3)).sendString(anyString(), any());
+
+        var captor = ArgumentCaptor.forClass(String.class);
+        verify(remote, timeout(1000).times(4)).sendString(captor.capture(), any());
+        var data = objectMapper.readTree(captor.getValue());
+        assertEquals(2, data.get("positions").get(0).get("id").asLong());
+
+        dispatcher.stop();
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.traccar.api.resource;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.api.BaseResource;
+import org.traccar.api.security.AuthenticationCache;
+import org.traccar.api.security.LoginResult;
+import org.traccar.api.signature.TokenManager;
+import org.traccar.config.Config;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PasswordResourceTest {
+
+    private static void inject(Object target, Class<?> clazz, String name, Object value) throws Exception {
+        Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @Test
+    public void testUpdateInvalidatesCredentials() throws Exception {
+
+        var user = new User();
+        user.setId(1);
+        user.setPassword("old");
+
+        var storage = mock(Storage.class);
+        when(storage.getObject(eq(User.class), any(Request.class))).thenReturn(user);
+
+        var tokenData = mock(TokenManager.TokenData.class);
+        when(tokenData.getUserId()).thenReturn(1L);
+        var tokenManager = mock(TokenManager.class);
+        when(tokenManager.verifyToken("token")).thenReturn(tokenData);
+
+        var cacheManager = mock(CacheManager.class);
+        var authenticationCache = new AuthenticationCache(new Config(), cacheManager);
+        doAnswer(invocation -> {
+            authenticationCache.invalidateObject(false, User.class, 1, ObjectOperation.UPDATE);
+            return null;
+        }).when(cacheManager).invalidateObject(true, User.class, 1, ObjectOperation.UPDATE);
+
+        String oldHeader = "Basic dXNlcjpvbGQ=";
+        authenticationCache.put(oldHeader, new LoginResult(user));
+        assertNotNull(authenticationCache.get(oldHeader));
+
+        var resource = new PasswordResource();
+        inject(resource, BaseResource.class, "storage", storage);
+        inject(resource, PasswordResource.class, "tokenManager", tokenManager);
+        inject(resource, PasswordResource.class, "cacheManager", cacheManager);
+        resource.update("token", "new");
+
+        assertNull(authenticationCache.get(oldHeader));
+        assertTrue(user.isPasswordValid("new"));
+
+    }
+
+}
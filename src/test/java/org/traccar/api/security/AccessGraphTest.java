@@ -0,0 +1,121 @@
+package org.traccar.api.security;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.model.Device;
+import org.traccar.model.Geofence;
+import org.traccar.model.Group;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.Permission;
+import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Request;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AccessGraphTest {
+
+    private static Group createGroup(long id, long parentId) {
+        var group = new Group();
+        group.setId(id);
+        group.setGroupId(parentId);
+        return group;
+    }
+
+    private static Device createDevice(long id, long groupId) {
+        var device = new Device();
+        device.setId(id);
+        device.setGroupId(groupId);
+        return device;
+    }
+
+    private Storage createStorage() throws StorageException {
+        var storage = mock(Storage.class);
+        when(storage.getPermissions(User.class, Device.class)).thenReturn(List.of(
+                new Permission(User.class, 1, Device.class, 10)));
+        when(storage.getPermissions(User.class, Group.class)).thenReturn(List.of(
+                new Permission(User.class, 2, Group.class, 100)));
+        when(storage.getObjects(eq(Group.class), any(Request.class))).thenReturn(List.of(
+                createGroup(100, 0), createGroup(101, 100), createGroup(102, 101), createGroup(103, 102)));
+        when(storage.getObjects(eq(Device.class), any(Request.class))).thenReturn(List.of(
+                createDevice(10, 0), createDevice(11, 101), createDevice(12, 102), createDevice(13, 103)));
+        return storage;
+    }
+
+    @Test
+    public void testDirectPermission() throws StorageException {
+        var accessGraph = new AccessGraph(createStorage(), mock(CacheManager.class));
+
+        assertTrue(accessGraph.checkPermission(1, Device.class, 10));
+        assertFalse(accessGraph.checkPermission(1, Device.class, 11));
+        assertFalse(accessGraph.checkPermission(1, Geofence.class, 10));
+
+        accessGraph.invalidatePermission(false, User.class, 1, Device.class, 11, true);
+        assertTrue(accessGraph.checkPermission(1, Device.class, 11));
+
+        accessGraph.invalidatePermission(false, User.class, 1, Device.class, 10, false);
+        assertFalse(accessGraph.checkPermission(1, Device.class, 10));
+
+        accessGraph.invalidateObject(false, Device.class, 11, ObjectOperation.DELETE);
+        assertFalse(accessGraph.checkPermission(1, Device.class, 11));
+    }
+
+    @Test
+    public void testGroupPermission() throws StorageException {
+        var accessGraph = new AccessGraph(createStorage(), mock(CacheManager.class));
+
+        assertTrue(accessGraph.checkPermission(2, Group.class, 100));
+        assertTrue(accessGraph.checkPermission(2, Group.class, 101));
+        assertTrue(accessGraph.checkPermission(2, Group.class, 102));
+        assertFalse(accessGraph.checkPermission(2, Group.class, 103));
+
+        assertFalse(accessGraph.checkPermission(2, Device.class, 10));
+        assertTrue(accessGraph.checkPermission(2, Device.class, 11));
+        assertTrue(accessGraph.checkPermission(2, Device.class, 12));
+        assertFalse(accessGraph.checkPermission(2, Device.class, 13));
+        assertEquals(Set.of(11L, 12L), accessGraph.getDeviceIds(2));
+        assertEquals(Set.of(10L), accessGraph.getDeviceIds(1));
+
+        accessGraph.invalidatePermission(false, User.class, 2, Group.class, 100, false);
+        assertFalse(accessGraph.checkPermission(2, Device.class, 11));
+        assertTrue(accessGraph.getDeviceIds(2).isEmpty());
+    }
+
+    @Test
+    public void testUser() throws StorageException {
+        var storage = createStorage();
+        var before = new User();
+        before.setAdministrator(true);
+        var after = new User();
+        when(storage.getObject(eq(User.class), any(Request.class))).thenReturn(before, after, null);
+        var accessGraph = new AccessGraph(storage, mock(CacheManager.class));
+
+        var user = accessGraph.getUser(1);
+        assertNotSame(before, user);
+        assertTrue(user.getAdministrator());
+        user.setAdministrator(false);
+        assertTrue(accessGraph.getUser(1).getAdministrator());
+        verify(storage, times(1)).getObject(eq(User.class), any(Request.class));
+
+        accessGraph.invalidateObject(false, User.class, 1, ObjectOperation.UPDATE);
+        assertFalse(accessGraph.getUser(1).getAdministrator());
+
+        accessGraph.invalidateObject(false, User.class, 1, ObjectOperation.DELETE);
+        assertNull(accessGraph.getUser(1));
+    }
+
+}
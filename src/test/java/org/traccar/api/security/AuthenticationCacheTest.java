@@ -0,0 +1,58 @@
+package org.traccar.api.security;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.User;
+import org.traccar.session.cache.CacheManager;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class AuthenticationCacheTest {
+
+    @Test
+    public void testCache() {
+
+        var cache = new AuthenticationCache(new Config(), mock(CacheManager.class));
+
+        var user = new User();
+        user.setId(1);
+        var result = new LoginResult(user);
+
+        assertNull(cache.get("Basic dXNlcjpwYXNzd29yZA=="));
+        cache.put("Basic dXNlcjpwYXNzd29yZA==", result);
+        assertSame(result, cache.get("Basic dXNlcjpwYXNzd29yZA=="));
+        assertNull(cache.get("Basic dXNlcjpvdGhlcg=="));
+
+        cache.invalidateObject(false, Device.class, 1, ObjectOperation.UPDATE);
+        assertSame(result, cache.get("Basic dXNlcjpwYXNzd29yZA=="));
+
+        cache.invalidateObject(false, User.class, 1, ObjectOperation.UPDATE);
+        assertNull(cache.get("Basic dXNlcjpwYXNzd29yZA=="));
+
+        cache.put("Bearer token", new LoginResult(user, new Date(System.currentTimeMillis() - 1000)));
+        assertNull(cache.get("Bearer token"));
+
+    }
+
+    @Test
+    public void testDisabled() {
+
+        var config = new Config();
+        config.setString(Keys.WEB_AUTHENTICATION_CACHE_TIMEOUT, "0");
+        var cache = new AuthenticationCache(config, mock(CacheManager.class));
+
+        var user = new User();
+        user.setId(1);
+        cache.put("Bearer token", new LoginResult(user));
+        assertNull(cache.get("Bearer token"));
+
+    }
+
+}
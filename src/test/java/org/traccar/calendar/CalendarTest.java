@@ -9,6 +9,9 @@ import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -54,4 +57,39 @@ public class CalendarTest {
         var periods = calendar.findPeriods(format.parse("2016-12-13 06:59:59+05"));
         assertFalse(periods.isEmpty());
     }
+
+    @Test
+    public void testSchedule() throws IOException, ParserException {
+        String calendarString = "BEGIN:VCALENDAR\n" +
+                "PRODID:-//Mozilla.org/NONSGML Mozilla Calendar V1.1//EN\n" +
+                "VERSION:2.0\n" +
+                "BEGIN:VTIMEZONE\n" +
+                "TZID:Asia/Yekaterinburg\n" +
+                "BEGIN:STANDARD\n" +
+                "TZOFFSETFROM:+0500\n" +
+                "TZOFFSETTO:+0500\n" +
+                "TZNAME:YEKT\n" +
+                "DTSTART:19700101T000000\n" +
+                "END:STANDARD\n" +
+                "END:VTIMEZONE\n" +
+                "BEGIN:VEVENT\n" +
+                "UID:9d000df0-6354-479d-a407-218dac62c7c9\n" +
+                "SUMMARY:Every night\n" +
+                "RRULE:FREQ=DAILY\n" +
+                "DTSTART;TZID=Asia/Yekaterinburg:20161130T230000\n" +
+                "DTEND;TZID=Asia/Yekaterinburg:20161201T070000\n" +
+                "END:VEVENT\n" +
+                "END:VCALENDAR";
+        Calendar calendar = new Calendar();
+        calendar.setData(calendarString.getBytes());
+        ZonedDateTime night = ZonedDateTime.now(ZoneOffset.ofHours(5)).truncatedTo(ChronoUnit.DAYS).plusHours(23);
+
+        assertFalse(calendar.checkMoment(Date.from(night.minusSeconds(1).toInstant())));
+        assertTrue(calendar.checkMoment(Date.from(night.plusSeconds(1).toInstant())));
+        assertTrue(calendar.checkMoment(Date.from(night.plusHours(8).minusSeconds(1).toInstant())));
+        assertFalse(calendar.checkMoment(Date.from(night.plusHours(8).plusSeconds(1).toInstant())));
+        assertTrue(calendar.checkMoment(Date.from(night.plusDays(3).toInstant())));
+        assertFalse(calendar.checkMoment(Date.from(night.plusDays(30).minusHours(12).toInstant())));
+    }
+
 }
@@ -1,11 +1,22 @@
 package org.traccar.config;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ConfigTest {
 
+    @TempDir
+    Path directory;
+
     @Test
     public void testFormat() {
         assertEquals("DATABASE_URL", Config.getEnvironmentVariableName("database.url"));
@@ -16,4 +27,43 @@ public class ConfigTest {
         assertEquals("STATUS_TIMEOUT", Config.getEnvironmentVariableName("status.timeout"));
     }
 
+    @Test
+    public void testValues() {
+        var config = new Config();
+        assertFalse(config.hasKey(Keys.SERVER_TIMEOUT));
+        assertEquals(0, config.getInteger(Keys.SERVER_TIMEOUT));
+        assertEquals(1000, config.getInteger(Keys.NOTIFICATOR_QUEUE_SIZE));
+        assertTrue(config.getBoolean(Keys.KAFKA_IDEMPOTENCE.withPrefix("forward")));
+        assertNull(config.getString(Keys.FORWARD_URL));
+
+        config.setString(Keys.SERVER_TIMEOUT, "60");
+        config.setString(Keys.METRICS_ENABLE, "true");
+        assertTrue(config.hasKey(Keys.SERVER_TIMEOUT));
+        assertEquals(60, config.getInteger(Keys.SERVER_TIMEOUT));
+        assertEquals(60L, config.getLong(new LongConfigKey("server.timeout", List.of(KeyType.CONFIG))));
+        assertTrue(config.getBoolean(Keys.METRICS_ENABLE));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        Path file = directory.resolve("traccar.xml");
+        Files.writeString(file, createFile("60"));
+
+        var config = new Config(file.toString());
+        assertEquals(60, config.getInteger(Keys.SERVER_TIMEOUT));
+
+        Files.writeString(file, createFile("120"));
+        config.reload();
+        assertEquals(120, config.getInteger(Keys.SERVER_TIMEOUT));
+    }
+
+    private static String createFile(String timeout) {
+        return "<?xml version='1.0' encoding='UTF-8'?>\n"
+                + "<!DOCTYPE properties SYSTEM 'http://java.sun.com/dtd/properties.dtd'>\n"
+                + "<properties>\n"
+                + "<entry key='server.timeout'>" + timeout + "</entry>\n"
+                + "<entry key='logger.console'>true</entry>\n"
+                + "</properties>\n";
+    }
+
 }
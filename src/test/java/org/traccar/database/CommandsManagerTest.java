@@ -0,0 +1,54 @@
+package org.traccar.database;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.ServerManager;
+import org.traccar.broadcast.BroadcastService;
+import org.traccar.model.Command;
+import org.traccar.model.QueuedCommand;
+import org.traccar.session.ConnectionManager;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CommandsManagerTest {
+
+    @Test
+    public void testQueuedCommandIndex() throws Exception {
+
+        var storage = mock(Storage.class);
+        var queuedCommand = new QueuedCommand();
+        queuedCommand.setId(1);
+        queuedCommand.setDeviceId(2);
+        queuedCommand.setType(Command.TYPE_CUSTOM);
+        when(storage.getObjects(eq(QueuedCommand.class), any(Request.class)))
+                .thenReturn(new LinkedList<>(List.of(queuedCommand)));
+
+        var commandsManager = new CommandsManager(
+                storage, mock(ServerManager.class), null, mock(ConnectionManager.class),
+                mock(BroadcastService.class), mock(NotificationManager.class));
+
+        assertTrue(commandsManager.readQueuedCommands(1).isEmpty());
+        assertEquals(1, commandsManager.readQueuedCommands(2).size());
+        assertTrue(commandsManager.readQueuedCommands(2).isEmpty());
+
+        verify(storage, times(2)).getObjects(eq(QueuedCommand.class), any(Request.class));
+
+        commandsManager.updateCommand(false, 3);
+        commandsManager.readQueuedCommands(3);
+
+        verify(storage, times(3)).getObjects(eq(QueuedCommand.class), any(Request.class));
+
+    }
+
+}
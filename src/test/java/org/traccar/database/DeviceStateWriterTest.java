@@ -0,0 +1,128 @@
+package org.traccar.database;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Request;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DeviceStateWriterTest {
+
+    @Test
+    public void testCoalesce() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.DATABASE_DEVICE_UPDATE_DELAY, "60000");
+
+        var storage = mock(Storage.class);
+        var writer = new DeviceStateWriter(config, storage);
+        writer.start();
+
+        for (long id = 1; id <= 2; id++) {
+            Device device = new Device();
+            device.setId(id);
+            device.setLastUpdate(new Date());
+            writer.update(device, false, "lastUpdate");
+            device.setPositionId(10);
+            writer.update(device, false, "positionId");
+        }
+
+        assertEquals(2, writer.getPendingCount());
+        verify(storage, never()).updateObject(any(), any(Request.class));
+
+        writer.stop();
+
+        verify(storage, times(1)).updateObjectBatch(anyList(), any(Columns.class));
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(4, writer.getUpdateCount());
+        assertEquals(2, writer.getWriteCount());
+
+    }
+
+    @Test
+    public void testImmediate() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.DATABASE_DEVICE_UPDATE_DELAY, "60000");
+
+        var storage = mock(Storage.class);
+        var writer = new DeviceStateWriter(config, storage);
+        writer.start();
+
+        Device device = new Device();
+        device.setId(1);
+        writer.update(device, false, "positionId");
+        writer.update(device, true, "status", "lastUpdate");
+
+        verify(storage, times(1)).updateObject(any(), any(Request.class));
+        assertEquals(0, writer.getPendingCount());
+
+        writer.stop();
+
+    }
+
+    @Test
+    public void testImmediateAfterFlush() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.DATABASE_DEVICE_UPDATE_DELAY, "60000");
+
+        var flushing = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var storage = mock(Storage.class);
+        doAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return null;
+        }).when(storage).updateObjectBatch(anyList(), any(Columns.class));
+        var writer = new DeviceStateWriter(config, storage);
+        writer.start();
+
+        for (long id = 1; id <= 2; id++) {
+            Device device = new Device();
+            device.setId(id);
+            device.setStatus(Device.STATUS_ONLINE);
+            writer.update(device, false, "status");
+        }
+        var stop = CompletableFuture.runAsync(() -> {
+            try {
+                writer.stop();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        flushing.await();
+
+        Device device = new Device();
+        device.setId(1);
+        device.setStatus(Device.STATUS_OFFLINE);
+        var immediate = CompletableFuture.runAsync(() -> writer.update(device, true, "status"));
+        Thread.sleep(50);
+        assertFalse(immediate.isDone());
+        verify(storage, never()).updateObject(any(), any(Request.class));
+
+        release.countDown();
+        immediate.get(1, TimeUnit.SECONDS);
+        verify(storage, times(1)).updateObject(any(), any(Request.class));
+        stop.get(1, TimeUnit.SECONDS);
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.traccar.database;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramChannel;
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PositionBatchWriterTest {
+
+    @Test
+    public void testBatchWrite() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.DATABASE_BATCH_SIZE, "2");
+        config.setString(Keys.DATABASE_BATCH_DELAY, "1000");
+        config.setString(Keys.DATABASE_BATCH_QUEUE_SIZE, "100");
+
+        var storage = mock(Storage.class);
+        when(storage.addObjectBatch(anyList(), any())).thenReturn(new long[] {10, 11});
+
+        var channel = mock(Channel.class);
+        when(channel.config()).thenReturn(mock(ChannelConfig.class));
+        var context = mock(ChannelHandlerContext.class);
+        when(context.channel()).thenReturn(channel);
+
+        var writer = new PositionBatchWriter(config, storage);
+        writer.start();
+
+        Position first = new Position();
+        Position second = new Position();
+        assertTrue(writer.write(context, first));
+        assertTrue(writer.write(context, second));
+
+        verify(context, timeout(1000)).fireChannelRead(second);
+        writer.stop();
+
+        verify(storage).addObjectBatch(eq(List.of(first, second)), any());
+        assertEquals(10, first.getId());
+        assertEquals(11, second.getId());
+        assertEquals(1, writer.getBatchCount());
+        assertEquals(2, writer.getBatchPositions());
+
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.DATABASE_BATCH_SIZE, "1");
+        config.setString(Keys.DATABASE_BATCH_DELAY, "10");
+        config.setString(Keys.DATABASE_BATCH_QUEUE_SIZE, "2");
+
+        CountDownLatch release = new CountDownLatch(1);
+        List<Position> stored = new ArrayList<>();
+        var storage = mock(Storage.class);
+        when(storage.addObjectBatch(anyList(), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            stored.addAll(invocation.getArgument(0));
+            return new long[] {1};
+        });
+
+        var channelConfig = mock(ChannelConfig.class);
+        var channel = mock(DatagramChannel.class);
+        when(channel.config()).thenReturn(channelConfig);
+        var context = mock(ChannelHandlerContext.class);
+        when(context.channel()).thenReturn(channel);
+
+        var writer = new PositionBatchWriter(config, storage);
+        writer.start();
+
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            positions.add(new Position());
+        }
+
+        assertTrue(writer.write(context, positions.get(0)));
+        verify(storage, timeout(1000)).addObjectBatch(anyList(), any());
+        assertTrue(writer.write(context, positions.get(1)));
+        assertTrue(writer.write(context, positions.get(2)));
+
+        long startTime = System.currentTimeMillis();
+        assertFalse(writer.write(context, positions.get(3)));
+        assertTrue(System.currentTimeMillis() - startTime < 1000);
+        assertEquals(1, writer.getOverflowCount());
+
+        release.countDown();
+        verify(context, timeout(1000)).fireChannelRead(positions.get(2));
+        writer.stop();
+
+        assertEquals(positions.subList(0, 3), stored);
+        verify(channelConfig, never()).setAutoRead(anyBoolean());
+
+    }
+
+}
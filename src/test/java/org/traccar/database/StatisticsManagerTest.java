@@ -0,0 +1,53 @@
+package org.traccar.database;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.client.Client;
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class StatisticsManagerTest {
+
+    @Test
+    public void testConcurrentCounters() throws Exception {
+
+        var statisticsManager = new StatisticsManager(
+                new Config(), mock(Storage.class), mock(Client.class), new ObjectMapper());
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            long userId = i + 1;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    statisticsManager.registerMessageReceived();
+                    statisticsManager.registerMessageStored(j % 2 + 1, j % 2 == 0 ? "osmand" : "gt06");
+                    statisticsManager.registerRequest(userId);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        var statistics = statisticsManager.getStatistics();
+        assertEquals(4000, statistics.getMessagesReceived());
+        assertEquals(4000, statistics.getMessagesStored());
+        assertEquals(4000, statistics.getRequests());
+        assertEquals(4, statistics.getActiveUsers());
+        assertEquals(2, statistics.getActiveDevices());
+        assertEquals(1, statistics.getProtocols().get("osmand"));
+        assertEquals(2000, statisticsManager.messageStoredCount(1));
+        assertEquals(0, statisticsManager.messageStoredCount(3));
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.traccar.forward;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.traccar.model.Position;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ForwardSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSegmentLog() throws Exception {
+
+        var log = new SegmentLog(directory, 100, 1000);
+        for (int i = 0; i < 30; i++) {
+            log.append(("record" + i).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        var records = log.read(0, 100);
+        assertEquals(30, records.size());
+        assertEquals("record0", new String(records.get(0).getData(), StandardCharsets.US_ASCII));
+        log.ack(records.get(9).getNextOffset());
+
+        log = new SegmentLog(directory, 100, 1000);
+        records = log.read(0, 100);
+        assertEquals(20, records.size());
+        assertEquals("record10", new String(records.get(0).getData(), StandardCharsets.US_ASCII));
+
+        for (int i = 30; i < 200; i++) {
+            log.append(("record" + i).getBytes(StandardCharsets.US_ASCII));
+        }
+        records = log.read(0, 1000);
+        assertTrue(records.size() < 170);
+        assertEquals("record199", new String(records.get(records.size() - 1).getData(), StandardCharsets.US_ASCII));
+
+    }
+
+    @Test
+    public void testDelivery() throws Exception {
+
+        var objectMapper = new ObjectMapper();
+        var log = new SegmentLog(directory, 4096, 1024 * 1024);
+
+        List<PositionData> delivered = new ArrayList<>();
+        int[] attempts = new int[1];
+        var spool = new ForwardSpool<>("positions", log, objectMapper, PositionData.class, (data, resultHandler) -> {
+            if (attempts[0]++ == 0) {
+                resultHandler.onResult(false, null);
+            } else {
+                delivered.add(data);
+                resultHandler.onResult(true, null);
+            }
+        }, 10, 1, 0);
+
+        for (int i = 1; i <= 3; i++) {
+            var position = new Position();
+            position.setDeviceId(i);
+            var positionData = new PositionData();
+            positionData.setPosition(position);
+            spool.write(positionData, (success, throwable) -> assertTrue(success));
+        }
+
+        long offset = spool.deliverBatch(log.getAckOffset());
+        assertEquals(2, delivered.size());
+        assertEquals(offset, log.getAckOffset());
+        assertTrue(spool.getPendingSize() > 0);
+
+        offset = spool.deliverBatch(offset);
+        assertEquals(5, delivered.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, delivered.get(2 + i).getPosition().getDeviceId());
+        }
+        assertEquals(offset, log.getAckOffset());
+        assertEquals(0, spool.getPendingSize());
+
+    }
+
+    @Test
+    public void testLifecycle() throws Exception {
+
+        var objectMapper = new ObjectMapper();
+        var log = new SegmentLog(directory, 4096, 1024 * 1024);
+
+        List<PositionData> delivered = new CopyOnWriteArrayList<>();
+        var spool = new ForwardSpool<>("positions", log, objectMapper, PositionData.class, (data, resultHandler) -> {
+            delivered.add(data);
+            resultHandler.onResult(true, null);
+        }, 10, 1, 10);
+        spool.start();
+
+        for (int i = 1; i <= 3; i++) {
+            var position = new Position();
+            position.setDeviceId(i);
+            var positionData = new PositionData();
+            positionData.setPosition(position);
+            spool.write(positionData, (success, throwable) -> assertTrue(success));
+        }
+
+        for (int i = 0; i < 100 && spool.getPendingSize() > 0; i++) {
+            Thread.sleep(10);
+        }
+        spool.stop();
+
+        assertEquals(3, delivered.size());
+        log = new SegmentLog(directory, 4096, 1024 * 1024);
+        assertTrue(log.read(log.getAckOffset(), 10).isEmpty());
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.traccar.forward;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.protobuf.forward.PositionDataOuterClass;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PositionForwarderKafkaTest {
+
+    private PositionData createPositionData() {
+        var device = new Device();
+        device.setId(1);
+        device.setUniqueId("123456789012345");
+        var position = new Position("test");
+        position.setDeviceId(1);
+        position.setFixTime(new Date(1000));
+        position.setLatitude(10.5);
+        position.set(Position.KEY_IGNITION, true);
+        position.set(Position.KEY_ODOMETER, 1000L);
+        position.set(Position.KEY_DRIVER_UNIQUE_ID, "driver");
+        var positionData = new PositionData();
+        positionData.setDevice(device);
+        positionData.setPosition(position);
+        return positionData;
+    }
+
+    @Test
+    public void testAcknowledgement() {
+
+        var producer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        var forwarder = new PositionForwarderKafka(producer, new ObjectMapper(), "positions", false);
+
+        List<Boolean> results = new ArrayList<>();
+        forwarder.forward(createPositionData(), (success, throwable) -> results.add(success));
+        forwarder.forward(createPositionData(), (success, throwable) -> results.add(success));
+        assertTrue(results.isEmpty());
+
+        producer.completeNext();
+        producer.errorNext(new RuntimeException());
+        assertEquals(List.of(true, false), results);
+        assertEquals("1", producer.history().get(0).key());
+
+    }
+
+    @Test
+    public void testProtobuf() throws Exception {
+
+        var producer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        var forwarder = new PositionForwarderKafka(producer, new ObjectMapper(), "positions", true);
+        forwarder.forward(createPositionData(), (success, throwable) -> assertTrue(success));
+
+        var decoded = PositionDataOuterClass.PositionData.parseFrom(producer.history().get(0).value());
+        assertEquals("123456789012345", decoded.getDevice().getUniqueId());
+        assertEquals("test", decoded.getPosition().getProtocol());
+        assertEquals(1000, decoded.getPosition().getFixTime());
+        assertEquals(10.5, decoded.getPosition().getLatitude());
+        assertTrue(decoded.getPosition().getAttributesOrThrow(Position.KEY_IGNITION).getBoolValue());
+        assertEquals(1000, decoded.getPosition().getAttributesOrThrow(Position.KEY_ODOMETER).getLongValue());
+        assertEquals("driver",
+                decoded.getPosition().getAttributesOrThrow(Position.KEY_DRIVER_UNIQUE_ID).getStringValue());
+        assertFalse(decoded.getPosition().getOutdated());
+
+    }
+
+}
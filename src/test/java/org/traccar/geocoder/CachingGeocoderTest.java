@@ -0,0 +1,171 @@
+package org.traccar.geocoder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CachingGeocoderTest {
+
+    @TempDir
+    Path directory;
+
+    private static class CountingGeocoder implements Geocoder {
+
+        private final List<ReverseGeocoderCallback> callbacks = new ArrayList<>();
+        private int count;
+
+        @Override
+        public String getAddress(double latitude, double longitude, ReverseGeocoderCallback callback) {
+            count += 1;
+            if (callback != null) {
+                callbacks.add(callback);
+                return null;
+            }
+            return "address" + count;
+        }
+
+        @Override
+        public void setStatisticsManager(StatisticsManager statisticsManager) {
+        }
+    }
+
+    private Config createConfig() {
+        var config = new Config();
+        config.setString(Keys.GEOCODER_CACHE_SIZE, "100");
+        return config;
+    }
+
+    @Test
+    public void testGrid() {
+
+        var cache = new GeocoderCache(createConfig());
+        var delegate = new CountingGeocoder();
+        var geocoder = new CachingGeocoder(delegate, cache, 1000);
+
+        assertEquals("address1", geocoder.getAddress(10.00001, 20.00001, null));
+        assertEquals("address1", geocoder.getAddress(10.00002, 20.00003, null));
+        assertEquals("address2", geocoder.getAddress(10.001, 20.00001, null));
+        assertEquals(2, delegate.count);
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+    }
+
+    @Test
+    public void testCoalescing() {
+
+        var cache = new GeocoderCache(createConfig());
+        var delegate = new CountingGeocoder();
+        var geocoder = new CachingGeocoder(delegate, cache, 1000);
+
+        List<String> results = new ArrayList<>();
+        Geocoder.ReverseGeocoderCallback callback = new Geocoder.ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+                results.add(address);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+            }
+        };
+
+        assertNull(geocoder.getAddress(10, 20, callback));
+        assertNull(geocoder.getAddress(10, 20, callback));
+        assertEquals(1, delegate.count);
+        assertEquals(1, cache.getCoalesced());
+
+        delegate.callbacks.get(0).onSuccess("address");
+        assertEquals(List.of("address", "address"), results);
+        assertEquals("address", geocoder.getAddress(10, 20, null));
+        assertEquals(1, delegate.count);
+
+    }
+
+    @Test
+    public void testTimeout() {
+
+        var cache = new GeocoderCache(createConfig());
+        var delegate = new CountingGeocoder();
+        var geocoder = new CachingGeocoder(delegate, cache, 10);
+
+        assertNull(geocoder.getAddress(10, 20, new Geocoder.ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+            }
+        }));
+        assertNull(geocoder.getAddress(10, 20, null));
+        assertEquals(1, delegate.count);
+
+    }
+
+    @Test
+    public void testSynchronousFailure() {
+
+        var cache = new GeocoderCache(createConfig());
+        int[] count = new int[1];
+        var geocoder = new CachingGeocoder(new Geocoder() {
+            @Override
+            public String getAddress(double latitude, double longitude, ReverseGeocoderCallback callback) {
+                if (count[0]++ == 0) {
+                    throw new IllegalStateException();
+                }
+                return "address";
+            }
+
+            @Override
+            public void setStatisticsManager(StatisticsManager statisticsManager) {
+            }
+        }, cache, 1000);
+
+        List<Throwable> errors = new ArrayList<>();
+        assertNull(geocoder.getAddress(10, 20, new Geocoder.ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                errors.add(e);
+            }
+        }));
+        assertEquals(1, errors.size());
+        assertEquals("address", geocoder.getAddress(10, 20, null));
+        assertEquals(0, cache.getCoalesced());
+
+    }
+
+    @Test
+    public void testPersistence() {
+
+        var config = createConfig();
+        config.setString(Keys.GEOCODER_CACHE_FILE, directory.resolve("geocoder.db").toString());
+
+        var cache = new GeocoderCache(config);
+        cache.start();
+        cache.put(cache.getKey(10, 20), "address");
+        cache.stop();
+
+        cache = new GeocoderCache(config);
+        cache.start();
+        assertEquals("address", cache.get(cache.getKey(10, 20)));
+        assertNull(cache.get(cache.getKey(20, 10)));
+        cache.stop();
+
+    }
+
+}
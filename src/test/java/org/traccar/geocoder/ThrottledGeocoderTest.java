@@ -0,0 +1,143 @@
+package org.traccar.geocoder;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.StatisticsManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThrottledGeocoderTest {
+
+    private static class RecordingGeocoder implements Geocoder {
+
+        private final List<Double> requests = new CopyOnWriteArrayList<>();
+        private final CountDownLatch latch;
+        private final String address;
+
+        RecordingGeocoder(CountDownLatch latch, String address) {
+            this.latch = latch;
+            this.address = address;
+        }
+
+        @Override
+        public String getAddress(double latitude, double longitude, ReverseGeocoderCallback callback) {
+            requests.add(latitude);
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return address;
+        }
+
+        @Override
+        public void setStatisticsManager(StatisticsManager statisticsManager) {
+        }
+    }
+
+    private static Geocoder.ReverseGeocoderCallback createCallback(CompletableFuture<String> future) {
+        return new Geocoder.ReverseGeocoderCallback() {
+            @Override
+            public void onSuccess(String address) {
+                future.complete(address);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+    }
+
+    @Test
+    public void testFallback() {
+
+        var primary = new RecordingGeocoder(new CountDownLatch(0), null);
+        var fallback = new RecordingGeocoder(new CountDownLatch(0), "address");
+        Map<String, Geocoder> providers = new LinkedHashMap<>();
+        providers.put("geocoder", primary);
+        providers.put("geocoder.test", fallback);
+        var geocoder = new ThrottledGeocoder(new Config(), providers);
+
+        assertEquals("address", geocoder.getAddress(1, 2, null));
+        assertEquals(1, primary.requests.size());
+        assertEquals(1, fallback.requests.size());
+
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.GEOCODER_THREADS, "1");
+        var latch = new CountDownLatch(1);
+        var provider = new RecordingGeocoder(latch, "address");
+        var geocoder = new ThrottledGeocoder(config, Map.of("geocoder", provider));
+
+        var first = new CompletableFuture<String>();
+        geocoder.getAddress(1, 0, createCallback(first));
+
+        var request = CompletableFuture.supplyAsync(() -> geocoder.getAddress(2, 0, null));
+        while (geocoder.getQueueSize() < 1) {
+            Thread.sleep(1);
+        }
+        var live = new CompletableFuture<String>();
+        geocoder.getAddress(3, 0, createCallback(live));
+
+        latch.countDown();
+        assertEquals("address", first.get(1, TimeUnit.SECONDS));
+        assertEquals("address", live.get(1, TimeUnit.SECONDS));
+        assertEquals("address", request.get(1, TimeUnit.SECONDS));
+        assertEquals(List.of(1.0, 3.0, 2.0), provider.requests);
+
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.GEOCODER_THREADS, "1");
+        config.setString(Keys.GEOCODER_QUEUE_SIZE, "1");
+        var latch = new CountDownLatch(1);
+        var geocoder = new ThrottledGeocoder(config, Map.of("geocoder", new RecordingGeocoder(latch, "address")));
+
+        geocoder.getAddress(1, 0, createCallback(new CompletableFuture<>()));
+        geocoder.getAddress(2, 0, createCallback(new CompletableFuture<>()));
+        var rejected = new CompletableFuture<String>();
+        geocoder.getAddress(3, 0, createCallback(rejected));
+        assertTrue(rejected.isCompletedExceptionally());
+        latch.countDown();
+
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.GEOCODER_THREADS, "1");
+        config.setString(Keys.GEOCODER_TIMEOUT, "1");
+        var latch = new CountDownLatch(1);
+        var provider = new RecordingGeocoder(latch, "address");
+        var geocoder = new ThrottledGeocoder(config, Map.of("geocoder", provider));
+
+        geocoder.getAddress(1, 0, createCallback(new CompletableFuture<>()));
+        assertNull(geocoder.getAddress(2, 0, null));
+        assertEquals(0, geocoder.getQueueSize());
+
+        latch.countDown();
+        assertEquals(List.of(1.0), provider.requests);
+
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.traccar.geofence;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Geofence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GeofenceIndexTest {
+
+    private Geofence createGeofence(long id, String area) throws Exception {
+        var geofence = new Geofence();
+        geofence.setId(id);
+        geofence.setArea(area);
+        return geofence;
+    }
+
+    private List<Long> getIds(GeofenceIndex index, double latitude, double longitude) {
+        return index.getGeofences(latitude, longitude).stream()
+                .map(Geofence::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void testIndex() throws Exception {
+
+        Config config = mock(Config.class);
+        when(config.getDouble(Keys.GEOFENCE_POLYLINE_DISTANCE)).thenReturn(25.0);
+
+        List<Geofence> geofences = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            geofences.add(createGeofence(i, "CIRCLE (" + (50 + i * 0.01) + " 30, 100)"));
+        }
+        geofences.add(createGeofence(100, "POLYGON ((50 29.9, 50 30.1, 51 30.1, 51 29.9))"));
+        geofences.add(createGeofence(101, "POLYGON ((-17.1 179.9, -17.1 -179.9, -16.9 -179.9, -16.9 179.9))"));
+        geofences.add(createGeofence(102, "LINESTRING (66.9494 179.838, 66.9508 -179.8496)"));
+
+        var index = new GeofenceIndex(config, geofences);
+        assertEquals(103, index.size());
+
+        assertEquals(List.of(10L, 100L), getIds(index, 50.1, 30));
+        assertEquals(List.of(100L), getIds(index, 50.105, 30));
+        assertTrue(getIds(index, 52, 30).isEmpty());
+
+        assertEquals(List.of(101L), getIds(index, -17, 180));
+        assertEquals(List.of(101L), getIds(index, -17, -179.95));
+        assertTrue(getIds(index, -17, 179.8).isEmpty());
+
+        assertEquals(List.of(102L), getIds(index, 66.95, 180));
+        assertTrue(getIds(index, 66.96, 180).isEmpty());
+
+    }
+
+    @Test
+    public void testBoundingBox() throws Exception {
+
+        var circle = new GeofenceCircle(55.75414, 37.6204, 100);
+        var box = circle.getBoundingBox(null, null);
+        assertTrue(box.contains(55.75414, 37.6204));
+        assertTrue(box.getMaxLatitude() - box.getMinLatitude() < 0.002);
+        assertTrue(box.getMaxLongitude() - box.getMinLongitude() < 0.004);
+
+        var polygon = new GeofencePolygon("POLYGON ((-17.1 179.9, -17.1 -179.9, -16.9 -179.9, -16.9 179.9))");
+        box = polygon.getBoundingBox(null, null);
+        assertTrue(box.contains(-17, 180));
+        assertTrue(box.contains(-17, -179.95));
+        assertFalse(box.contains(-17, 0));
+
+    }
+
+}
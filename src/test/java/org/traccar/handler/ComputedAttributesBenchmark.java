@@ -0,0 +1,66 @@
+package org.traccar.handler;
+
+import org.traccar.config.Config;
+import org.traccar.model.Attribute;
+import org.traccar.model.Position;
+import org.traccar.session.cache.CacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures computed attributes throughput in expressions per second. It is not a unit test; run it manually with
+ * the test classpath, optionally passing the number of positions as an argument.
+ */
+public final class ComputedAttributesBenchmark {
+
+    private static final int ATTRIBUTES = 10;
+    private static final int ROUNDS = 5;
+
+    private ComputedAttributesBenchmark() {
+    }
+
+    private static long run(ComputedAttributesHandler handler, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            var position = new Position();
+            position.setDeviceId(1);
+            position.setSpeed(i % 100);
+            position.set("adc1", i);
+            handler.handlePosition(position);
+        }
+        return Math.max(System.nanoTime() - start, 1);
+    }
+
+    public static void main(String[] args) {
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+        var cacheManager = mock(CacheManager.class);
+        var handler = new ComputedAttributesHandler(new Config(), cacheManager);
+
+        List<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < ATTRIBUTES; i++) {
+            var attribute = new Attribute();
+            attribute.setId(i + 1);
+            attribute.setAttribute("io" + i);
+            attribute.setType("number");
+            attribute.setExpression("(adc1 & " + (1 << i) + ") != 0 ? speed * " + i + " : adc1 / 2");
+            attributes.add(attribute);
+        }
+        when(cacheManager.getDeviceObjects(1, Attribute.class)).thenReturn(attributes);
+
+        run(handler, count); // warm up
+        for (int round = 1; round <= ROUNDS; round++) {
+            long elapsed = run(handler, count);
+            long rate = count * (long) ATTRIBUTES * 1_000_000_000L / elapsed;
+            System.out.println("Round " + round + ": " + rate + " expressions/second");
+        }
+        System.out.println("Compiled scripts: " + handler.getCompileCount());
+
+    }
+
+}
@@ -2,19 +2,26 @@ package org.traccar.handler;
 
 import org.junit.jupiter.api.Test;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.model.Attribute;
+import org.traccar.model.Device;
+import org.traccar.model.ObjectOperation;
 import org.traccar.model.Position;
+import org.traccar.session.cache.CacheManager;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class ComputedAttributesTest {
 
     @Test
     public void testComputedAttributes() {
 
-        ComputedAttributesHandler handler = new ComputedAttributesHandler(new Config(), null);
+        ComputedAttributesHandler handler = new ComputedAttributesHandler(new Config(), mock(CacheManager.class));
 
         Date date = new Date();
         Position position = new Position();
@@ -68,4 +75,95 @@ public class ComputedAttributesTest {
 
     }
 
+    @Test
+    public void testContextAttributes() {
+
+        var config = new Config();
+        config.setString(Keys.PROCESSING_COMPUTED_ATTRIBUTES_DEVICE_ATTRIBUTES, "true");
+        config.setString(Keys.PROCESSING_COMPUTED_ATTRIBUTES_LAST_ATTRIBUTES, "true");
+
+        var device = new Device();
+        device.setId(1);
+        device.set("ratio", 2);
+        device.set("adc1", 0);
+
+        var last = new Position();
+        last.setDeviceId(1);
+        last.setSpeed(20);
+        last.set("adc1", 100);
+
+        var cacheManager = mock(CacheManager.class);
+        when(cacheManager.getObject(Device.class, 1)).thenReturn(device);
+        when(cacheManager.getPosition(1)).thenReturn(last);
+
+        var handler = new ComputedAttributesHandler(config, cacheManager);
+
+        var position = new Position();
+        position.setDeviceId(1);
+        position.setSpeed(30);
+        position.set("adc1", 128);
+
+        var attribute = new Attribute();
+        attribute.setExpression("(adc1 - lastAdc1) * ratio");
+        assertEquals(56, handler.computeAttribute(attribute, position));
+
+        attribute.setExpression("speed - lastSpeed");
+        assertEquals(10.0, handler.computeAttribute(attribute, position));
+
+    }
+
+    @Test
+    public void testScriptCache() {
+
+        var cacheManager = mock(CacheManager.class);
+        var handler = new ComputedAttributesHandler(new Config(), cacheManager);
+
+        var attribute = new Attribute();
+        attribute.setId(1);
+        attribute.setAttribute("output");
+        attribute.setType("number");
+        attribute.setExpression("adc1 * 2");
+
+        var dependent = new Attribute();
+        dependent.setId(2);
+        dependent.setAttribute("total");
+        dependent.setType("number");
+        dependent.setExpression("output + 1");
+
+        when(cacheManager.getDeviceObjects(1, Attribute.class)).thenReturn(List.of(attribute, dependent));
+
+        var position = new Position();
+        position.setDeviceId(1);
+        position.set("adc1", 10);
+        handler.handlePosition(position);
+        assertEquals(20, position.getInteger("output"));
+        assertEquals(21, position.getInteger("total"));
+        assertEquals(2, handler.getCompileCount());
+
+        position = new Position();
+        position.setDeviceId(1);
+        position.set("adc1", 10);
+        handler.handlePosition(position);
+        assertEquals(2, handler.getCompileCount());
+
+        handler.invalidateObject(false, Attribute.class, 1, ObjectOperation.UPDATE);
+        position = new Position();
+        position.setDeviceId(1);
+        position.set("adc1", 10);
+        handler.handlePosition(position);
+        assertEquals(20, position.getInteger("output"));
+        assertEquals(3, handler.getCompileCount());
+
+        attribute.setExpression("adc1 * 3");
+        handler.invalidateObject(false, Attribute.class, 1, ObjectOperation.UPDATE);
+        position = new Position();
+        position.setDeviceId(1);
+        position.set("adc1", 10);
+        handler.handlePosition(position);
+        assertEquals(30, position.getInteger("output"));
+        assertEquals(31, position.getInteger("total"));
+        assertEquals(4, handler.getCompileCount());
+
+    }
+
 }
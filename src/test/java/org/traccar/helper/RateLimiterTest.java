@@ -0,0 +1,30 @@
+package org.traccar.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    @Test
+    public void testAcquire() throws Exception {
+
+        var unlimited = new RateLimiter(0);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            unlimited.acquire();
+        }
+        assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(1));
+
+        var limited = new RateLimiter(20);
+        startTime = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            limited.acquire();
+        }
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(200));
+
+    }
+
+}
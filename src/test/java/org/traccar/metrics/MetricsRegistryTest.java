@@ -0,0 +1,61 @@
+package org.traccar.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testDisabled() {
+        var registry = new MetricsRegistry(new Config());
+        assertNull(registry.getHistogram(MetricsRegistry.HANDLER_DURATION, "handler", "FilterHandler"));
+    }
+
+    @Test
+    public void testHistogram() {
+        var histogram = new Histogram();
+        histogram.record(50_000);
+        histogram.record(2_000_000);
+        histogram.record(20_000_000_000L);
+        long[] counts = histogram.getCounts();
+        assertEquals(1, counts[0]);
+        assertEquals(2, counts[3]);
+        assertEquals(2, counts[counts.length - 2]);
+        assertEquals(3, counts[counts.length - 1]);
+        assertEquals(20_002_050_000L, histogram.getSum());
+    }
+
+    @Test
+    public void testFormat() {
+        var config = new Config();
+        config.setString(Keys.METRICS_ENABLE, "true");
+        var registry = new MetricsRegistry(config);
+
+        var histogram = registry.getHistogram(MetricsRegistry.DECODER_DURATION, "protocol", "osmand");
+        assertSame(histogram, registry.getHistogram(MetricsRegistry.DECODER_DURATION, "protocol", "osmand"));
+        histogram.record(1_000_000);
+
+        String output = registry.format(
+                Map.of("positionBatch.queueSize", 5, "positionBatch.batches", 7), "positionBatch.batches"::equals);
+        assertTrue(output.contains("# TYPE traccar_position_batch_queue_size gauge\n"));
+        assertTrue(output.contains("traccar_position_batch_queue_size 5\n"));
+        assertTrue(output.contains("# TYPE traccar_position_batch_batches_total counter\n"));
+        assertTrue(output.contains("traccar_position_batch_batches_total 7\n"));
+        assertTrue(output.contains("# HELP traccar_decoder_duration_seconds "));
+        assertTrue(output.contains("# TYPE traccar_decoder_duration_seconds histogram\n"));
+        assertTrue(output.contains("traccar_decoder_duration_seconds_bucket{protocol=\"osmand\",le=\"0.0005\"} 0\n"));
+        assertTrue(output.contains("traccar_decoder_duration_seconds_bucket{protocol=\"osmand\",le=\"0.001\"} 1\n"));
+        assertTrue(output.contains("traccar_decoder_duration_seconds_bucket{protocol=\"osmand\",le=\"+Inf\"} 1\n"));
+        assertTrue(output.contains("traccar_decoder_duration_seconds_sum{protocol=\"osmand\"} 0.001\n"));
+        assertTrue(output.contains("traccar_decoder_duration_seconds_count{protocol=\"osmand\"} 1\n"));
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.traccar.notification;
+
+import io.netty.util.HashedWheelTimer;
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Event;
+import org.traccar.model.Notification;
+import org.traccar.model.Typed;
+import org.traccar.model.User;
+import org.traccar.notificators.Notificator;
+import org.traccar.session.cache.CacheManager;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationDispatcherTest {
+
+    private static User createUser(long id) {
+        var user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static NotificatorManager createNotificatorManager(Notificator notificator) {
+        var notificatorManager = mock(NotificatorManager.class);
+        when(notificatorManager.getNotificator("mail")).thenReturn(notificator);
+        when(notificatorManager.getAllNotificatorTypes()).thenReturn(Set.of(new Typed("mail")));
+        return notificatorManager;
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.NOTIFICATOR_COALESCE_WINDOW.withPrefix("notificator.mail"), "60");
+
+        var notificator = mock(Notificator.class);
+        var timer = new HashedWheelTimer();
+        var dispatcher = new NotificationDispatcher(
+                config, timer, mock(CacheManager.class), createNotificatorManager(notificator));
+        dispatcher.start();
+
+        var notification = new Notification();
+        var event = new Event(Event.TYPE_DEVICE_OVERSPEED, 1);
+
+        dispatcher.dispatch("mail", notification, createUser(1), event, null);
+        dispatcher.dispatch("mail", notification, createUser(1), event, null);
+        dispatcher.dispatch("mail", notification, createUser(2), event, null);
+
+        verify(notificator, timeout(1000).times(2)).send(any(), any(), any(), any());
+        dispatcher.stop();
+        timer.stop();
+
+        var queue = dispatcher.getQueues().get("mail");
+        assertEquals(2, queue.getSent());
+        assertEquals(1, queue.getCoalesced());
+
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+
+        var config = new Config();
+        config.setString(Keys.NOTIFICATOR_RETRY_DELAY, "10");
+
+        var notificator = mock(Notificator.class);
+        doThrow(new MessageException("failed")).doNothing()
+                .when(notificator).send(any(), any(), any(), any());
+
+        var timer = new HashedWheelTimer();
+        var dispatcher = new NotificationDispatcher(
+                config, timer, mock(CacheManager.class), createNotificatorManager(notificator));
+        dispatcher.start();
+
+        dispatcher.dispatch("mail", new Notification(), createUser(1), new Event(Event.TYPE_ALARM, 1), null);
+
+        verify(notificator, timeout(1000).times(2)).send(any(), any(), any(), any());
+        dispatcher.stop();
+        timer.stop();
+
+        var queue = dispatcher.getQueues().get("mail");
+        assertEquals(1, queue.getSent());
+        assertEquals(0, queue.getFailed());
+
+    }
+
+    @Test
+    public void testUnknownType() throws Exception {
+
+        var notificator = mock(Notificator.class);
+        var notificatorManager = createNotificatorManager(notificator);
+        var timer = new HashedWheelTimer();
+        var dispatcher = new NotificationDispatcher(new Config(), timer, mock(CacheManager.class), notificatorManager);
+        dispatcher.start();
+
+        dispatcher.dispatch("unknown", new Notification(), createUser(1), new Event(Event.TYPE_ALARM, 1), null);
+
+        dispatcher.stop();
+        timer.stop();
+
+        assertNull(dispatcher.getQueues().get("unknown"));
+        assertEquals(1, dispatcher.getQueues().size());
+        verify(notificatorManager, never()).getNotificator("unknown");
+
+    }
+
+}
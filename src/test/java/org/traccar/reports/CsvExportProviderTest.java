@@ -0,0 +1,65 @@
+package org.traccar.reports;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CsvExportProviderTest {
+
+    private Position createPosition(long id, String key, Object value) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId(1);
+        position.setServerTime(new Date());
+        position.setTime(new Date());
+        position.set(key, value.toString());
+        return position;
+    }
+
+    @Test
+    public void testGenerate() throws Exception {
+
+        var positions = List.of(createPosition(1, "fuel", 10), createPosition(2, "driver", "abc"));
+
+        var storage = mock(Storage.class);
+        doAnswer(invocation -> {
+            Consumer<Position> consumer = invocation.getArgument(2);
+            positions.forEach(consumer);
+            return null;
+        }).when(storage).streamObjects(eq(Position.class), any(Request.class), any());
+
+        var outputStream = new ByteArrayOutputStream();
+        new CsvExportProvider(storage).generate(outputStream, 1, new Date(0), new Date());
+
+        var lines = outputStream.toString(StandardCharsets.UTF_8).split("\\R");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("id,deviceId,"));
+        assertTrue(lines[0].endsWith(",fuel,driver"));
+        assertTrue(lines[1].startsWith("1,1,"));
+        assertTrue(lines[1].endsWith(",10,"));
+        assertTrue(lines[2].startsWith("2,1,"));
+        assertTrue(lines[2].endsWith(",,abc"));
+
+        verify(storage, never()).getObjects(eq(Position.class), any(Request.class));
+        verify(storage, times(1)).streamObjects(eq(Position.class), any(Request.class), any());
+
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.traccar.reports;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.model.Position;
+import org.traccar.reports.common.IgnitionAnalyzer;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IgnitionAnalyzerTest {
+
+    private Position position(long minutes, boolean motion) {
+        Position position = new Position();
+        position.setTime(new Date(TimeUnit.MINUTES.toMillis(minutes)));
+        position.set(Position.KEY_MOTION, motion);
+        return position;
+    }
+
+    @Test
+    public void testDays() {
+
+        long day = TimeUnit.DAYS.toMinutes(1);
+        var analyzer = new IgnitionAnalyzer(List.of(
+                new Date(0), new Date(TimeUnit.MINUTES.toMillis(day)), new Date(TimeUnit.MINUTES.toMillis(2 * day))),
+                5);
+
+        analyzer.accept(position(0, true));
+        analyzer.accept(position(10, false));
+        analyzer.accept(position(20, false));
+        analyzer.accept(position(30, true));
+        analyzer.accept(position(40, false));
+        analyzer.accept(position(42, true));
+        analyzer.accept(position(50, false));
+
+        analyzer.accept(position(day + 10, false));
+        analyzer.accept(position(day + 30, false));
+
+        var periods = analyzer.getPeriods();
+        assertEquals(2, periods.size());
+
+        assertEquals(TimeUnit.MINUTES.toMillis(10 + 10 + 8), periods.get(0).getOnTime());
+        assertEquals(1, periods.get(0).getOffPeriods().size());
+        assertEquals(20, periods.get(0).getOffPeriods().get(0).getMinutes());
+
+        assertEquals(0, periods.get(1).getOnTime());
+        assertEquals(1, periods.get(1).getOffPeriods().size());
+        assertEquals(20, periods.get(1).getOffPeriods().get(0).getMinutes());
+
+        assertEquals("00:28:00", IgnitionAnalyzer.formatDuration(periods.get(0).getOnTime()));
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.traccar.session;
+
+import io.netty.util.Timer;
+import org.junit.jupiter.api.Test;
+import org.traccar.broadcast.BroadcastService;
+import org.traccar.config.Config;
+import org.traccar.database.DeviceLookupService;
+import org.traccar.database.NotificationManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.session.cache.CacheManager;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionManagerTest {
+
+    private Device createDevice(long id) {
+        Device device = new Device();
+        device.setId(id);
+        return device;
+    }
+
+    private Position createPosition(long deviceId, double latitude, double longitude) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        return position;
+    }
+
+    @Test
+    public void testSubscription() throws Exception {
+
+        var storage = mock(Storage.class);
+        when(storage.getObjects(eq(Device.class), any(Request.class)))
+                .thenReturn(List.of(createDevice(1), createDevice(2)));
+
+        var connectionManager = new ConnectionManager(
+                mock(Config.class), mock(CacheManager.class), storage, mock(NotificationManager.class),
+                mock(Timer.class), mock(BroadcastService.class), mock(DeviceLookupService.class), null);
+
+        var allListener = mock(ConnectionManager.UpdateListener.class);
+        var deviceListener = mock(ConnectionManager.UpdateListener.class);
+        var areaListener = mock(ConnectionManager.UpdateListener.class);
+        connectionManager.addListener(1, allListener);
+        connectionManager.addListener(1, deviceListener);
+        connectionManager.addListener(1, areaListener);
+
+        var deviceSubscription = new UpdateSubscription(Set.of(1L), 0);
+        connectionManager.updateSubscription(1, deviceListener, deviceSubscription);
+
+        var areaSubscription = new UpdateSubscription(null, 0, 10, 170, 20, -170);
+        connectionManager.updateSubscription(1, areaListener, areaSubscription);
+
+        var inside = createPosition(2, 15, 175);
+        connectionManager.updatePosition(false, inside);
+        verify(allListener).onUpdatePosition(inside);
+        verify(deviceListener, never()).onUpdatePosition(inside);
+        verify(areaListener).onUpdatePosition(inside);
+
+        var outside = createPosition(1, 15, 0);
+        connectionManager.updatePosition(false, outside);
+        verify(allListener).onUpdatePosition(outside);
+        verify(deviceListener).onUpdatePosition(outside);
+        verify(areaListener).onUpdatePosition(outside);
+
+        var stillOutside = createPosition(1, 16, 0);
+        connectionManager.updatePosition(false, stillOutside);
+        verify(allListener).onUpdatePosition(stillOutside);
+        verify(areaListener, never()).onUpdatePosition(stillOutside);
+
+        var exit = createPosition(2, 15, 0);
+        connectionManager.updatePosition(false, exit);
+        verify(areaListener).onUpdatePosition(exit);
+        var away = createPosition(2, 16, 0);
+        connectionManager.updatePosition(false, away);
+        verify(areaListener, never()).onUpdatePosition(away);
+        var back = createPosition(2, 15, 179);
+        connectionManager.updatePosition(false, back);
+        verify(areaListener).onUpdatePosition(back);
+
+        var device = createDevice(2);
+        connectionManager.updateDevice(false, device);
+        verify(allListener).onUpdateDevice(device);
+        verify(deviceListener, never()).onUpdateDevice(device);
+
+        connectionManager.updateSubscription(1, deviceListener, UpdateSubscription.ALL);
+        connectionManager.updateDevice(false, device);
+        verify(deviceListener).onUpdateDevice(device);
+
+        connectionManager.removeListener(1, allListener);
+        connectionManager.updatePosition(false, outside);
+        verify(allListener).onUpdatePosition(outside);
+
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.traccar.session.cache;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.broadcast.BroadcastService;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.helper.model.AttributeUtil;
+import org.traccar.model.Device;
+import org.traccar.model.Geofence;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.Position;
+import org.traccar.model.Server;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheManagerTest {
+
+    @Test
+    public void testDeviceObjects() throws Exception {
+
+        var storage = mock(Storage.class);
+        var device = new Device();
+        device.setId(1);
+        var geofence = new Geofence();
+        geofence.setId(2);
+        geofence.setArea("CIRCLE (55.75414 37.6204, 100)");
+        when(storage.getObject(eq(Server.class), any(Request.class))).thenReturn(new Server());
+        when(storage.getObject(eq(Device.class), any(Request.class))).thenReturn(device);
+        when(storage.getObject(eq(Geofence.class), any(Request.class))).thenReturn(geofence);
+
+        var broadcastService = mock(BroadcastService.class);
+        var cacheManager = new CacheManager(
+                new Config(), storage, broadcastService, new LatestPositionStore(storage, broadcastService));
+
+        cacheManager.addDevice(1);
+        assertSame(device, cacheManager.getObject(Device.class, 1));
+
+        var geofences = cacheManager.getDeviceObjects(1, Geofence.class);
+        assertTrue(geofences.isEmpty());
+        assertSame(geofences, cacheManager.getDeviceObjects(1, Geofence.class));
+        assertEquals(0, cacheManager.getDeviceGeofences(1).size());
+
+        cacheManager.invalidatePermission(false, Device.class, 1, Geofence.class, 2, true);
+        assertEquals(1, cacheManager.getDeviceObjects(1, Geofence.class).size());
+        assertEquals(1, cacheManager.getDeviceGeofences(1).getGeofences(55.75414, 37.6204).size());
+
+        cacheManager.invalidatePermission(false, Device.class, 1, Geofence.class, 2, false);
+        assertTrue(cacheManager.getDeviceObjects(1, Geofence.class).isEmpty());
+
+        var position = new Position();
+        position.setDeviceId(1);
+        position.setFixTime(new Date());
+        cacheManager.updatePosition(position);
+        assertSame(position, cacheManager.getPosition(1));
+
+        position = new Position();
+        position.setDeviceId(3);
+        position.setFixTime(new Date());
+        cacheManager.updatePosition(position);
+        assertNull(cacheManager.getPosition(3));
+
+    }
+
+    @Test
+    public void testDeviceAttributes() throws Exception {
+
+        var storage = mock(Storage.class);
+        var device = new Device();
+        device.setId(1);
+        var server = new Server();
+        server.set(Keys.EVENT_OVERSPEED_LIMIT.getKey(), "30");
+        when(storage.getObject(eq(Server.class), any(Request.class))).thenReturn(server);
+        when(storage.getObject(eq(Device.class), any(Request.class))).thenReturn(device);
+
+        var broadcastService = mock(BroadcastService.class);
+        var cacheManager = new CacheManager(
+                new Config(), storage, broadcastService, new LatestPositionStore(storage, broadcastService));
+
+        assertNull(cacheManager.getDeviceAttributes(1));
+
+        cacheManager.addDevice(1);
+        var speedLimit = AttributeUtil.lookup(cacheManager, Keys.EVENT_OVERSPEED_LIMIT, 1);
+        assertEquals(30.0, speedLimit);
+        assertSame(speedLimit, AttributeUtil.lookup(cacheManager, Keys.EVENT_OVERSPEED_LIMIT, 1));
+        assertNull(AttributeUtil.lookup(cacheManager, Keys.DECODER_TIMEZONE, 1));
+        assertEquals(2, cacheManager.getDeviceAttributes(1).size());
+
+        server = new Server();
+        server.set(Keys.EVENT_OVERSPEED_LIMIT.getKey(), 40.0);
+        when(storage.getObject(eq(Server.class), any(Request.class))).thenReturn(server);
+        cacheManager.invalidateObject(false, Server.class, 1, ObjectOperation.UPDATE);
+        assertEquals(40.0, AttributeUtil.lookup(cacheManager, Keys.EVENT_OVERSPEED_LIMIT, 1));
+
+        var updatedDevice = new Device();
+        updatedDevice.setId(1);
+        updatedDevice.set(Keys.DECODER_TIMEZONE.getKey(), "Europe/London");
+        when(storage.getObject(eq(Device.class), any(Request.class))).thenReturn(updatedDevice);
+        cacheManager.invalidateObject(false, Device.class, 1, ObjectOperation.UPDATE);
+        assertEquals("Europe/London", AttributeUtil.lookup(cacheManager, Keys.DECODER_TIMEZONE, 1));
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.traccar.session.cache;
+
+import org.junit.jupiter.api.Test;
+import org.traccar.broadcast.BroadcastService;
+import org.traccar.model.Device;
+import org.traccar.model.ObjectOperation;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.query.Request;
+
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LatestPositionStoreTest {
+
+    private Position createPosition(long deviceId, long time) {
+        var position = new Position();
+        position.setDeviceId(deviceId);
+        position.setFixTime(new Date(time));
+        return position;
+    }
+
+    @Test
+    public void testLatestPositions() throws Exception {
+
+        var storage = mock(Storage.class);
+        when(storage.getObjects(eq(Position.class), any(Request.class)))
+                .thenReturn(new LinkedList<>(List.of(createPosition(1, 1000), createPosition(2, 1000))));
+
+        var store = new LatestPositionStore(storage, mock(BroadcastService.class));
+
+        assertEquals(2, store.getPositions(List.of(1L, 2L, 3L)).size());
+        assertEquals(1, store.getPositions(List.of(2L)).size());
+
+        store.update(createPosition(1, 2000));
+        assertEquals(2000, store.getPosition(1).getFixTime().getTime());
+
+        store.update(createPosition(1, 1500));
+        assertEquals(2000, store.getPosition(1).getFixTime().getTime());
+
+        store.updatePosition(false, createPosition(3, 1000));
+        assertEquals(3, store.getPositions(List.of(1L, 2L, 3L)).size());
+
+        store.remove(2);
+        assertNull(store.getPosition(2));
+
+        verify(storage, times(1)).getObjects(eq(Position.class), any(Request.class));
+
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+
+        var storage = mock(Storage.class);
+        when(storage.getObjects(eq(Position.class), any(Request.class)))
+                .thenReturn(new LinkedList<>(List.of(createPosition(1, 2000))));
+        when(storage.getObject(eq(Position.class), any(Request.class)))
+                .thenReturn(createPosition(1, 1000));
+
+        var broadcastService = mock(BroadcastService.class);
+        var store = new LatestPositionStore(storage, broadcastService);
+        assertEquals(2000, store.getPosition(1).getFixTime().getTime());
+
+        store.refresh(1);
+        assertEquals(1000, store.getPosition(1).getFixTime().getTime());
+        verify(broadcastService).invalidateObject(true, Device.class, 1, ObjectOperation.UPDATE);
+
+        when(storage.getObject(eq(Position.class), any(Request.class))).thenReturn(null);
+        store.invalidateObject(false, Device.class, 1, ObjectOperation.UPDATE);
+        assertNull(store.getPosition(1));
+
+    }
+
+}
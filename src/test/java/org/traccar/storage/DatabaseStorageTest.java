@@ -0,0 +1,144 @@
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.traccar.config.Config;
+import org.traccar.metrics.MetricsRegistry;
+import org.traccar.model.Position;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DatabaseStorageTest {
+
+    private final Config config = new Config();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JdbcDataSource dataSource;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        QueryBuilder.create(config, dataSource, objectMapper,
+                "CREATE TABLE tc_positions (id BIGINT, deviceid BIGINT, attributes VARCHAR(4000))").executeUpdate();
+        for (int i = 1; i <= 5; i++) {
+            QueryBuilder.create(config, dataSource, objectMapper,
+                    "INSERT INTO tc_positions VALUES (:id, :deviceId, :attributes)")
+                    .setLong("id", i)
+                    .setLong("deviceId", i % 2)
+                    .setString("attributes", "{\"index\":" + i + "}")
+                    .executeUpdate();
+        }
+    }
+
+    @Test
+    public void testExecuteQueryStream() throws Exception {
+
+        List<Position> positions = new ArrayList<>();
+        QueryBuilder.create(config, dataSource, objectMapper, "SELECT * FROM tc_positions ORDER BY id")
+                .executeQuery(Position.class, positions::add, 2, 0);
+
+        assertEquals(5, positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            assertEquals(i + 1, positions.get(i).getId());
+            assertEquals(i + 1, positions.get(i).getInteger("index"));
+        }
+
+        assertThrows(IllegalStateException.class, () -> QueryBuilder.create(
+                config, dataSource, objectMapper, "SELECT * FROM tc_positions").executeQuery(
+                        Position.class, position -> {
+                            throw new IllegalStateException();
+                        }, 2, 0));
+
+        List<Position> partial = new ArrayList<>();
+        assertThrows(SQLException.class, () -> QueryBuilder.create(
+                config, dataSource, objectMapper, "SELECT * FROM tc_positions ORDER BY id").executeQuery(
+                        Position.class, position -> {
+                            partial.add(position);
+                            try {
+                                Thread.sleep(20);
+                            } catch (InterruptedException e) {
+                                throw new RuntimeException(e);
+                            }
+                        }, 2, 10));
+        assertTrue(partial.size() < 5);
+
+    }
+
+    @Test
+    public void testExecuteBatchKeys() throws Exception {
+
+        var resultSet = mock(ResultSet.class);
+        when(resultSet.next()).thenReturn(true, false);
+        when(resultSet.getLong(1)).thenReturn(1L);
+        var statement = mock(PreparedStatement.class);
+        when(statement.executeBatch()).thenReturn(new int[] {1, 1});
+        when(statement.getGeneratedKeys()).thenReturn(resultSet);
+        var connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString(), anyInt())).thenReturn(statement);
+        var mockDataSource = mock(DataSource.class);
+        when(mockDataSource.getConnection()).thenReturn(connection);
+
+        var builder = QueryBuilder.create(
+                config, mockDataSource, objectMapper, "INSERT INTO tc_positions (id) VALUES (:id)", true);
+        builder.setLong("id", 1).addBatch();
+        builder.setLong("id", 2).addBatch();
+        assertThrows(SQLException.class, builder::executeBatch);
+        verify(connection).rollback();
+
+    }
+
+    @Test
+    public void testStreamObjects() throws Exception {
+
+        var storage = new DatabaseStorage(config, dataSource, objectMapper, new MetricsRegistry(config));
+
+        List<Long> ids = new ArrayList<>();
+        storage.streamObjects(Position.class, new Request(
+                new Columns.All(), new Condition.Equals("deviceId", 1L), new Order("id")),
+                position -> ids.add(position.getId()));
+
+        assertEquals(List.of(1L, 3L, 5L), ids);
+        assertEquals(
+                storage.getObjects(Position.class, new Request(
+                        new Columns.All(), new Condition.Equals("deviceId", 1L), new Order("id"))).size(),
+                ids.size());
+
+    }
+
+    @Test
+    public void testMemoryStorage() throws Exception {
+
+        var storage = new MemoryStorage();
+        var position = new Position();
+        position.setDeviceId(1);
+        storage.addObject(position, new Request(new Columns.Exclude("id")));
+
+        List<Position> positions = new ArrayList<>();
+        storage.streamObjects(Position.class, new Request(new Columns.All()), positions::add);
+        assertEquals(1, positions.size());
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.traccar.storage;
+
+import org.traccar.model.Position;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Compares copying model properties through reflective Method.invoke with the accessors compiled through
+ * LambdaMetafactory. It is not a unit test; run it manually with the test classpath, optionally passing the number
+ * of iterations as an argument.
+ */
+public final class ModelAccessorsBenchmark {
+
+    private static final String[] PROPERTIES = {
+            "deviceId", "valid", "latitude", "longitude", "altitude", "speed", "course", "protocol", "fixTime"};
+    private static final int ROUNDS = 5;
+
+    private ModelAccessorsBenchmark() {
+    }
+
+    private interface Copier {
+        void copy(Position source, Position target) throws ReflectiveOperationException;
+    }
+
+    private static long run(Copier copier, Position source, int count) throws ReflectiveOperationException {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            copier.copy(source, new Position());
+        }
+        return Math.max(System.nanoTime() - start, 1);
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        var source = new Position();
+        source.setDeviceId(1);
+        source.setValid(true);
+        source.setLatitude(10);
+        source.setLongitude(20);
+        source.setSpeed(30);
+        source.setProtocol("test");
+
+        List<Method[]> methods = new ArrayList<>();
+        List<BiConsumer<Position, Position>> copiers = new ArrayList<>();
+        for (String property : PROPERTIES) {
+            String name = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            Method getter = Position.class.getMethod("get" + name);
+            methods.add(new Method[] {getter, Position.class.getMethod("set" + name, getter.getReturnType())});
+            copiers.add(ModelAccessors.getPropertyCopier(Position.class, property));
+        }
+
+        Copier reflective = (from, to) -> {
+            for (Method[] pair : methods) {
+                pair[1].invoke(to, pair[0].invoke(from));
+            }
+        };
+        Copier compiled = (from, to) -> {
+            for (BiConsumer<Position, Position> copier : copiers) {
+                copier.accept(from, to);
+            }
+        };
+
+        run(reflective, source, count); // warm up
+        run(compiled, source, count);
+        for (int round = 1; round <= ROUNDS; round++) {
+            long reflectiveTime = run(reflective, source, count);
+            long compiledTime = run(compiled, source, count);
+            System.out.printf(
+                    "Round %d: reflection %d ns/object, lambda %d ns/object%n",
+                    round, reflectiveTime / count, compiledTime / count);
+        }
+
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.traccar.model.Position;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ModelAccessorsTest {
+
+    @Test
+    public void testRowMapper() throws Exception {
+
+        var metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(5);
+        when(metaData.getColumnLabel(1)).thenReturn("ID");
+        when(metaData.getColumnLabel(2)).thenReturn("deviceid");
+        when(metaData.getColumnLabel(3)).thenReturn("valid");
+        when(metaData.getColumnLabel(4)).thenReturn("fixtime");
+        when(metaData.getColumnLabel(5)).thenReturn("attributes");
+
+        var resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn(10L);
+        when(resultSet.getLong(2)).thenReturn(20L);
+        when(resultSet.getBoolean(3)).thenReturn(true);
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(1000));
+        when(resultSet.getString(5)).thenReturn("{\"ignition\":true}");
+
+        var mapper = ModelAccessors.getRowMapper(Position.class, metaData);
+        assertSame(mapper, ModelAccessors.getRowMapper(Position.class, metaData));
+
+        Position position = mapper.map(resultSet, new ObjectMapper());
+        assertEquals(10, position.getId());
+        assertEquals(20, position.getDeviceId());
+        assertTrue(position.getValid());
+        assertEquals(1000, position.getFixTime().getTime());
+        assertTrue(position.getBoolean(Position.KEY_IGNITION));
+
+    }
+
+    @Test
+    public void testColumnWriter() throws Exception {
+        assertSame(
+                ModelAccessors.getColumnWriter(Position.class, "deviceId"),
+                ModelAccessors.getColumnWriter(Position.class, "deviceId"));
+        assertThrows(NoSuchMethodException.class, () -> ModelAccessors.getColumnWriter(Position.class, "unknown"));
+    }
+
+    @Test
+    public void testPropertyCopier() {
+        var source = new Position();
+        source.setDeviceId(20);
+        source.setValid(true);
+        source.setLatitude(10.5);
+        source.setProtocol("test");
+        var target = new Position();
+        for (String property : new String[] {"deviceId", "valid", "latitude", "protocol"}) {
+            ModelAccessors.getPropertyCopier(Position.class, property).accept(source, target);
+        }
+        assertEquals(20, target.getDeviceId());
+        assertTrue(target.getValid());
+        assertEquals(10.5, target.getLatitude());
+        assertEquals("test", target.getProtocol());
+        assertThrows(IllegalArgumentException.class, () -> ModelAccessors.getPropertyCopier(Position.class, "unknown"));
+    }
+
+}